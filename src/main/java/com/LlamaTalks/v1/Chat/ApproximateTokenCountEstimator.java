@@ -0,0 +1,55 @@
+package com.LlamaTalks.v1.chat;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.TextContent;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.TokenCountEstimator;
+
+// Token counts without the model's vocabulary: about charsPerToken characters per token, which
+// holds well enough for English prose with Llama/Qwen style BPE vocabularies. Every message adds
+// a few tokens for the chat template's role markers. Any other TokenCountEstimator bean, an
+// exact tokenizer for the configured model for instance, replaces this one.
+public class ApproximateTokenCountEstimator implements TokenCountEstimator {
+    private static final int TOKENS_PER_MESSAGE = 4;
+
+    private final double charsPerToken;
+
+    public ApproximateTokenCountEstimator(double charsPerToken){
+        if (charsPerToken <= 0) {
+            throw new IllegalArgumentException("Characters per token must be positive");
+        }
+        this.charsPerToken = charsPerToken;
+    }
+
+    @Override
+    public int estimateTokenCountInText(String text) {
+        return text == null ? 0 : (int) Math.ceil(text.length() / this.charsPerToken);
+    }
+
+    @Override
+    public int estimateTokenCountInMessage(ChatMessage message) {
+        String text = switch (message) {
+            case SystemMessage system -> system.text();
+            case UserMessage user -> user.contents().stream()
+                                        .filter(TextContent.class::isInstance)
+                                        .map(content -> ((TextContent) content).text())
+                                        .reduce("", String::concat);
+            case AiMessage ai -> ai.text();
+            case ToolExecutionResultMessage result -> result.text();
+            default -> "";
+        };
+        return TOKENS_PER_MESSAGE + estimateTokenCountInText(text);
+    }
+
+    @Override
+    public int estimateTokenCountInMessages(Iterable<ChatMessage> messages) {
+        int tokens = 0;
+        for (ChatMessage message : messages) {
+            tokens += estimateTokenCountInMessage(message);
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,254 @@
+package com.LlamaTalks.v1.chat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import com.LlamaTalks.v1.chat.GenerationScheduler.Permit;
+import com.LlamaTalks.v1.models.Conversation;
+import com.LlamaTalks.v1.models.MessageRole;
+import com.LlamaTalks.v1.records.MessageDTO;
+import com.LlamaTalks.v1.repository.ConverstaionRepository;
+import com.LlamaTalks.v1.repository.MessageRepository;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.model.ollama.OllamaChatModel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+// Folds the turns that have slid out of the chat memory window into a rolling summary on the
+// Conversation, so a prompt is summary + recent window however long the conversation gets.
+// Only messages older than the newest windowMessages are summarized, windowMessages being the
+// fewest ConversationMemoryCache keeps after trimming a block, so nothing falls between the
+// summary and the window; until the next trim up to trimBlock - 1 messages are in both. A run starts once triggerMessages of them or triggerTokens
+// worth have piled up, and covers at most maxBatchMessages; a long backlog takes several runs.
+// Everything happens on one low priority thread after the answer went out, and Ollama is only
+// asked while no chat request is generating or waiting for a slot.
+@Component
+public class ConversationCompactor {
+    private static final String INSTRUCTIONS = """
+        You maintain the running summary of a conversation between a user and an assistant.
+        Merge the previous summary and the new messages into one updated summary. Keep facts,
+        names, numbers, decisions, open questions and the user's preferences; leave out
+        greetings and repetition. Answer with the summary only, in at most %d words.""";
+
+    private final ConverstaionRepository conversationRepository;
+    private final MessageRepository messageRepository;
+    private final OllamaChatModel ollama;
+    private final GenerationScheduler generationScheduler;
+    private final TokenCountEstimator tokenizer;
+    private final boolean enabled;
+    private final int windowMessages;
+    private final int triggerMessages;
+    private final int triggerTokens;
+    private final int maxBatchMessages;
+    private final int summaryTokens;
+    private final Duration idlePoll;
+    private final Duration maxWait;
+    private final ThreadPoolExecutor executor;
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+    private final Counter compacted;
+    private final Counter summarizedMessages;
+    private final Counter dropped;
+    private final Counter gaveUp;
+    private final Timer duration;
+    private final Logger logger = LoggerFactory.getLogger(ConversationCompactor.class);
+
+    public ConversationCompactor(ConverstaionRepository conversationRepository,
+                                MessageRepository messageRepository,
+                                OllamaChatModel ollama,
+                                GenerationScheduler generationScheduler,
+                                TokenCountEstimator tokenizer,
+                                @Value("${chat.compaction.enabled}") boolean enabled,
+                                @Value("${chat.memory.max-messages}") int maxMessages,
+                                @Value("${chat.memory.trim-block}") int trimBlock,
+                                @Value("${chat.compaction.trigger-messages}") int triggerMessages,
+                                @Value("${chat.compaction.trigger-tokens}") int triggerTokens,
+                                @Value("${chat.compaction.max-batch-messages}") int maxBatchMessages,
+                                @Value("${chat.compaction.summary-tokens}") int summaryTokens,
+                                @Value("${chat.compaction.queue-capacity}") int queueCapacity,
+                                @Value("${chat.compaction.idle-poll}") Duration idlePoll,
+                                @Value("${chat.compaction.max-wait}") Duration maxWait,
+                                MeterRegistry meterRegistry){
+        this.conversationRepository = conversationRepository;
+        this.messageRepository = messageRepository;
+        this.ollama = ollama;
+        this.generationScheduler = generationScheduler;
+        this.tokenizer = tokenizer;
+        this.enabled = enabled;
+        this.windowMessages = ConversationMemoryCache.retainedMessages(Math.max(1, maxMessages), trimBlock);
+        this.triggerMessages = Math.max(1, triggerMessages);
+        this.triggerTokens = Math.max(1, triggerTokens);
+        this.maxBatchMessages = Math.max(this.triggerMessages, maxBatchMessages);
+        this.summaryTokens = Math.max(1, summaryTokens);
+        this.idlePoll = idlePoll;
+        this.maxWait = maxWait;
+        // Waits on Ollama most of the time, the low priority only matters while it builds a prompt
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                            new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                            Thread.ofPlatform().name("conversation-compactor").daemon().priority(Thread.MIN_PRIORITY).factory());
+
+        this.compacted = Counter.builder("chat.compaction.runs")
+                                .tag("result", "compacted")
+                                .description("Conversation summaries written")
+                                .register(meterRegistry);
+        this.dropped = Counter.builder("chat.compaction.runs")
+                                .tag("result", "dropped")
+                                .description("Compactions not scheduled because the queue was full")
+                                .register(meterRegistry);
+        this.gaveUp = Counter.builder("chat.compaction.runs")
+                                .tag("result", "no-idle-slot")
+                                .description("Compactions abandoned because Ollama never became idle within max-wait")
+                                .register(meterRegistry);
+        this.summarizedMessages = Counter.builder("chat.compaction.messages")
+                                .description("Messages folded into conversation summaries")
+                                .register(meterRegistry);
+        this.duration = Timer.builder("chat.compaction.duration")
+                                .description("Time Ollama spent writing a conversation summary")
+                                .register(meterRegistry);
+        meterRegistry.gauge("chat.compaction.pending", this.pending, Set::size);
+    }
+
+    // Called after every answer, never blocks. A conversation is queued at most once at a time.
+    public void schedule(Conversation conversation){
+        Long id = conversation.getId();
+        if (!this.enabled || id == null || !this.pending.add(id)) {
+            return;
+        }
+        try {
+            this.executor.execute(() -> run(id));
+        } catch (RejectedExecutionException e) {
+            this.pending.remove(id);
+            this.dropped.increment();
+        }
+    }
+
+    // One compaction step, on the caller's thread. True when a new summary was written.
+    public boolean compact(long conversationId){
+        Conversation conversation = this.conversationRepository.findById(conversationId).orElse(null);
+        if (conversation == null) {
+            return false;
+        }
+        long after = conversation.getSummarizedThrough() != null ? conversation.getSummarizedThrough() : 0L;
+        long outsideWindow = this.messageRepository.countAfter(conversationId, after) - this.windowMessages;
+        if (outsideWindow <= 0) {
+            return false;
+        }
+        List<MessageDTO> older = this.messageRepository.findAfter(conversationId, after,
+                                    Limit.of((int) Math.min(outsideWindow, this.maxBatchMessages)));
+        String transcript = transcript(older);
+        if (older.size() < this.triggerMessages && this.tokenizer.estimateTokenCountInText(transcript) < this.triggerTokens) {
+            return false;
+        }
+
+        Permit permit = awaitIdleSlot();
+        if (permit == null) {
+            this.gaveUp.increment();
+            this.logger.info("Ollama stayed busy, compaction of conversation {} postponed", conversation.getConversationId());
+            return false;
+        }
+        String summary;
+        long start = System.nanoTime();
+        try {
+            summary = this.ollama.chat(summaryRequest(conversation.getSummary(), transcript)).aiMessage().text();
+        } finally {
+            permit.release();
+            this.duration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (summary == null || summary.isBlank()) {
+            this.logger.warn("Empty summary for conversation {}, keeping the previous one", conversation.getConversationId());
+            return false;
+        }
+
+        long through = older.get(older.size() - 1).id();
+        if (this.conversationRepository.updateSummary(conversationId, summary.strip(), through) == 0) {
+            return false;
+        }
+        this.compacted.increment();
+        this.summarizedMessages.increment(older.size());
+        this.logger.debug("Summarized {} messages of conversation {} through message {}",
+                            older.size(), conversation.getConversationId(), through);
+        return true;
+    }
+
+    public int pending(){
+        return this.pending.size();
+    }
+
+    @PreDestroy
+    public void shutdown(){
+        this.executor.shutdownNow();
+    }
+
+    ////////////////////////////////////
+    //         Helper methods         //
+    ////////////////////////////////////
+
+    private void run(long conversationId){
+        try {
+            // Several steps in a row only for a backlog, e.g. a long conversation from before compaction
+            while (compact(conversationId)) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+            }
+        } catch (RuntimeException e) {
+            this.logger.warn("Compaction of conversation {} failed", conversationId, e);
+        } finally {
+            this.pending.remove(conversationId);
+        }
+    }
+
+    private Permit awaitIdleSlot(){
+        long deadline = System.nanoTime() + this.maxWait.toNanos();
+        while (true) {
+            Permit permit = this.generationScheduler.tryAcquireIdle();
+            if (permit != null) {
+                return permit;
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                return null;
+            }
+            try {
+                Thread.sleep(this.idlePoll);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+    }
+
+    private List<ChatMessage> summaryRequest(String previousSummary, String transcript){
+        // About three words for every four tokens
+        String instructions = INSTRUCTIONS.formatted(this.summaryTokens * 3 / 4);
+        String previous = previousSummary == null || previousSummary.isBlank() ? "(none)" : previousSummary;
+        return List.of(SystemMessage.from(instructions),
+                        UserMessage.from("Previous summary:\n" + previous + "\n\nNew messages:\n" + transcript));
+    }
+
+    private static String transcript(List<MessageDTO> messages){
+        StringBuilder transcript = new StringBuilder();
+        for (MessageDTO message : messages) {
+            transcript.append(message.role() == MessageRole.USER ? "User: " : "Assistant: ")
+                        .append(message.content())
+                        .append('\n');
+        }
+        return transcript.toString();
+    }
+}
@@ -0,0 +1,244 @@
+package com.LlamaTalks.v1.chat;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import com.LlamaTalks.v1.models.MessageRole;
+import com.LlamaTalks.v1.records.StoredMessage;
+import com.LlamaTalks.v1.repository.MessageRepository;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageType;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Last maxMessages user/ai messages per conversation, kept hot between turns. Saved messages
+// are appended as they are written, a miss reads only the newest maxMessages rows, so a turn
+// costs the same on the 10th message and the 10,000th. Past maxMessages the oldest go trimBlock
+// at a time, so between two trims the window only grows at the end and a PREFIX_STABLE prompt
+// (see PromptAssembler) opens with the same history turn after turn. System messages (RAG
+// context) are per turn and never cached.
+// Messages are written behind (MessagePersister), so the rows a miss reads can lag behind what
+// was appended. Appending to a conversation that is not cached therefore starts a partial
+// window of just those messages, and a load, even one that raced such appends, merges the
+// rows it read with the partial window instead of dropping it.
+@Component
+public class ConversationMemoryCache implements ChatMemoryStore {
+    private final MessageRepository messageRepository;
+    private final int maxMessages;
+    private final int trimBlock;
+    private final int maxConversations;
+    private final long idleNanos;
+    private final LongSupplier nanoClock;
+    private final LinkedHashMap<String, Window> cache;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    private static class Window {
+        final ArrayDeque<ChatMessage> messages = new ArrayDeque<>();
+        // Only what was appended since the conversation dropped out, its history still needs loading
+        boolean partial;
+        long lastAccess;
+    }
+
+    @Autowired
+    public ConversationMemoryCache(MessageRepository messageRepository,
+                                    @Value("${chat.memory.max-messages}") int maxMessages,
+                                    @Value("${chat.memory.trim-block}") int trimBlock,
+                                    @Value("${chat.memory.max-conversations}") int maxConversations,
+                                    @Value("${chat.memory.idle-ttl}") Duration idleTtl,
+                                    MeterRegistry meterRegistry){
+        this(messageRepository, maxMessages, trimBlock, maxConversations, idleTtl, meterRegistry, System::nanoTime);
+    }
+
+    public ConversationMemoryCache(MessageRepository messageRepository, int maxMessages, int trimBlock, int maxConversations,
+                                    Duration idleTtl, MeterRegistry meterRegistry, LongSupplier nanoClock){
+        if (maxMessages <= 0 || maxConversations <= 0) {
+            throw new IllegalArgumentException("Chat memory sizes must be positive");
+        }
+        this.messageRepository = messageRepository;
+        this.maxMessages = maxMessages;
+        this.trimBlock = Math.clamp(trimBlock, 1, maxMessages);
+        this.maxConversations = maxConversations;
+        this.idleNanos = idleTtl.toNanos();
+        this.nanoClock = nanoClock;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true);
+
+        this.hits = Counter.builder("chat.memory.cache")
+                            .tag("result", "hit")
+                            .description("Conversation windows served from memory")
+                            .register(meterRegistry);
+        this.misses = Counter.builder("chat.memory.cache")
+                            .tag("result", "miss")
+                            .description("Conversation windows loaded from the database")
+                            .register(meterRegistry);
+        this.evictions = Counter.builder("chat.memory.cache.evictions")
+                            .description("Conversation windows evicted by size or idle time")
+                            .register(meterRegistry);
+        meterRegistry.gauge("chat.memory.cache.size", this, ConversationMemoryCache::size);
+    }
+
+    public int maxMessages(){
+        return this.maxMessages;
+    }
+
+    // Newest messages the window holds at the least once a conversation is longer: a trim leaves
+    // maxMessages + 1 - trimBlock. ConversationCompactor summarizes what is older than that.
+    public static int retainedMessages(int maxMessages, int trimBlock){
+        return maxMessages + 1 - Math.clamp(trimBlock, 1, maxMessages);
+    }
+
+    @Override
+    public List<ChatMessage> getMessages(Object memoryId) {
+        String conversationId = memoryId.toString();
+        synchronized (this.cache) {
+            Window window = lookup(conversationId);
+            if (window != null && !window.partial) {
+                this.hits.increment();
+                return new ArrayList<>(window.messages);
+            }
+        }
+        this.misses.increment();
+
+        // The query runs outside of the lock, only the map access is serialized
+        List<StoredMessage> newestFirst = this.messageRepository
+            .findRecentByConversationId(conversationId, Limit.of(this.maxMessages));
+        List<ChatMessage> loaded = new ArrayList<>(newestFirst.size());
+        for (int i = newestFirst.size() - 1; i >= 0; i--) {
+            loaded.add(toChatMessage(newestFirst.get(i)));
+        }
+
+        synchronized (this.cache) {
+            Window window = lookup(conversationId);
+            if (window == null || window.partial) {
+                Window full = new Window();
+                full.messages.addAll(window == null ? loaded : merge(loaded, window.messages));
+                trim(full);
+                full.lastAccess = this.nanoClock.getAsLong();
+                this.cache.put(conversationId, full);
+                evictEldest();
+                window = full;
+            }
+            return new ArrayList<>(window.messages);
+        }
+    }
+
+    @Override
+    public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+        Window window = new Window();
+        messages.stream()
+            .filter(message -> message.type() != ChatMessageType.SYSTEM)
+            .forEach(window.messages::addLast);
+        trim(window);
+        synchronized (this.cache) {
+            window.lastAccess = this.nanoClock.getAsLong();
+            this.cache.put(memoryId.toString(), window);
+            evictEldest();
+        }
+    }
+
+    @Override
+    public void deleteMessages(Object memoryId) {
+        synchronized (this.cache) {
+            this.cache.remove(memoryId.toString());
+        }
+    }
+
+    // Write-through for a message that was just handed to the persister. Its row may not be
+    // written yet, so a conversation that is not cached gets a partial window to hold it.
+    public void append(String conversationId, ChatMessage message){
+        synchronized (this.cache) {
+            Window window = lookup(conversationId);
+            if (window == null) {
+                window = new Window();
+                window.partial = true;
+                window.lastAccess = this.nanoClock.getAsLong();
+                this.cache.put(conversationId, window);
+                evictEldest();
+            }
+            window.messages.addLast(message);
+            trim(window);
+        }
+    }
+
+    public int size(){
+        synchronized (this.cache) {
+            return this.cache.size();
+        }
+    }
+
+    ////////////////////////////////////
+    //         Helper methods         //
+    ////////////////////////////////////
+
+    private Window lookup(String conversationId){
+        Window window = this.cache.get(conversationId);
+        if (window == null) {
+            return null;
+        }
+        long now = this.nanoClock.getAsLong();
+        if (now - window.lastAccess > this.idleNanos) {
+            this.cache.remove(conversationId);
+            this.evictions.increment();
+            return null;
+        }
+        window.lastAccess = now;
+        return window;
+    }
+
+    private void evictEldest(){
+        Iterator<Map.Entry<String, Window>> eldest = this.cache.entrySet().iterator();
+        while (this.cache.size() > this.maxConversations && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+            this.evictions.increment();
+        }
+    }
+
+    private void trim(Window window){
+        if (window.messages.size() <= this.maxMessages) {
+            return;
+        }
+        int over = window.messages.size() - this.maxMessages;
+        int drop = Math.min(window.messages.size(), (over + this.trimBlock - 1) / this.trimBlock * this.trimBlock);
+        for (int i = 0; i < drop; i++) {
+            window.messages.removeFirst();
+        }
+    }
+
+    // The writer saves messages in order, so the rows read may already end with the first few
+    // appended ones; the longest such overlap is taken out. Identical messages sent back to back
+    // right at that boundary would be taken for the same one.
+    private static List<ChatMessage> merge(List<ChatMessage> loaded, Collection<ChatMessage> appended){
+        List<ChatMessage> pending = new ArrayList<>(appended);
+        int overlap = Math.min(loaded.size(), pending.size());
+        while (overlap > 0 && !loaded.subList(loaded.size() - overlap, loaded.size()).equals(pending.subList(0, overlap))) {
+            overlap--;
+        }
+        List<ChatMessage> merged = new ArrayList<>(loaded);
+        merged.addAll(pending.subList(overlap, pending.size()));
+        return merged;
+    }
+
+    private static ChatMessage toChatMessage(StoredMessage message){
+        return message.role() == MessageRole.USER
+                ? UserMessage.from(message.content())
+                : AiMessage.from(message.content());
+    }
+}
@@ -0,0 +1,286 @@
+package com.LlamaTalks.v1.chat;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.LlamaTalks.v1.exception.GenerationQueueFull;
+import com.LlamaTalks.v1.exception.TooManyClientRequests;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+// Admission control in front of Ollama. At most maxConcurrent generations run at once, the
+// rest wait in one FIFO per client and are granted round-robin across clients, so one busy
+// client cannot push everyone else to the back. A full queue, a client over its own share
+// or a wait longer than maxWait are rejected instead of piling up behind Ollama's timeout.
+@Component
+public class GenerationScheduler {
+    private final int maxConcurrent;
+    private final int queueCapacity;
+    private final int maxQueuedPerClient;
+    private final Duration maxWait;
+    private final LinkedHashMap<String, ArrayDeque<Ticket>> waiting = new LinkedHashMap<>();
+    private final Counter queueFull;
+    private final Counter clientLimit;
+    private final Counter timedOut;
+    private final Timer waitTime;
+    private final Logger logger = LoggerFactory.getLogger(GenerationScheduler.class);
+
+    private int active;
+    private int queued;
+    // Wall clock millis of the latest chat request, 0 before the first one
+    private volatile long lastRequestMillis;
+
+    public GenerationScheduler(@Value("${chat.generation.max-concurrent}") int maxConcurrent,
+                                @Value("${chat.generation.queue-capacity}") int queueCapacity,
+                                @Value("${chat.generation.max-queued-per-client}") int maxQueuedPerClient,
+                                @Value("${chat.generation.max-wait}") Duration maxWait,
+                                MeterRegistry meterRegistry){
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.queueCapacity = Math.max(0, queueCapacity);
+        this.maxQueuedPerClient = Math.max(1, maxQueuedPerClient);
+        this.maxWait = maxWait;
+
+        this.queueFull = rejections(meterRegistry, "queue-full");
+        this.clientLimit = rejections(meterRegistry, "client-limit");
+        this.timedOut = rejections(meterRegistry, "timeout");
+        this.waitTime = Timer.builder("chat.generation.wait")
+                            .description("Time from admission to the start of generation")
+                            .register(meterRegistry);
+        meterRegistry.gauge("chat.generation.active", this, GenerationScheduler::active);
+        meterRegistry.gauge("chat.generation.queued", this, GenerationScheduler::queued);
+    }
+
+    // A ticket is a place in line. It completes with a Permit once generation may start,
+    // or exceptionally with GenerationQueueFull when maxWait runs out.
+    public class Ticket {
+        private final String clientId;
+        private final CompletableFuture<Permit> granted = new CompletableFuture<>();
+        private final long enqueuedAt = System.nanoTime();
+
+        private Ticket(String clientId){
+            this.clientId = clientId;
+        }
+
+        public CompletableFuture<Permit> granted(){
+            return this.granted;
+        }
+
+        // 1 is next in line, 0 means no longer waiting
+        public int position(){
+            return GenerationScheduler.this.position(this);
+        }
+
+        // Blocks until granted; for callers that generate on their own thread
+        public Permit await(){
+            try {
+                return this.granted.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+
+        // Leaving the queue, or giving the permit back if it was granted in the meantime.
+        // An expired or already cancelled ticket holds nothing to give back.
+        public void cancel(){
+            if (!this.granted.cancel(false) && this.granted.state() == Future.State.SUCCESS) {
+                this.granted.resultNow().release();
+            }
+        }
+    }
+
+    public class Permit {
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        public void release(){
+            if (this.released.compareAndSet(false, true)) {
+                GenerationScheduler.this.release();
+            }
+        }
+    }
+
+    public Ticket enqueue(String clientId){
+        this.lastRequestMillis = System.currentTimeMillis();
+        Ticket ticket = new Ticket(clientId);
+        synchronized (this.waiting) {
+            if (this.active < this.maxConcurrent && this.queued == 0) {
+                this.active++;
+                grant(ticket);
+                return ticket;
+            }
+            ArrayDeque<Ticket> clientQueue = this.waiting.get(clientId);
+            if (clientQueue != null && clientQueue.size() >= this.maxQueuedPerClient) {
+                this.clientLimit.increment();
+                throw new TooManyClientRequests("Too many chat requests waiting for this client, try again later");
+            }
+            if (this.queued >= this.queueCapacity) {
+                this.queueFull.increment();
+                throw new GenerationQueueFull("Too many chat requests waiting, try again later");
+            }
+            this.waiting.computeIfAbsent(clientId, key -> new ArrayDeque<>()).addLast(ticket);
+            this.queued++;
+        }
+
+        ticket.granted.whenComplete((permit, error) -> {
+            if (error instanceof CancellationException) {
+                withdraw(ticket);
+            }
+        });
+        CompletableFuture.delayedExecutor(this.maxWait.toNanos(), TimeUnit.NANOSECONDS).execute(() -> expire(ticket));
+        this.logger.debug("Queued chat request for client {} at position {}", clientId, ticket.position());
+        return ticket;
+    }
+
+    // For background work: a permit only while nothing is generating or waiting, null otherwise.
+    // It never queues, so chat requests are never held up behind it.
+    public Permit tryAcquireIdle(){
+        synchronized (this.waiting) {
+            if (this.active > 0 || this.queued > 0) {
+                return null;
+            }
+            this.active++;
+        }
+        return new Permit();
+    }
+
+    public long lastRequestMillis(){
+        return this.lastRequestMillis;
+    }
+
+    public int active(){
+        synchronized (this.waiting) {
+            return this.active;
+        }
+    }
+
+    public int queued(){
+        synchronized (this.waiting) {
+            return this.queued;
+        }
+    }
+
+    ////////////////////////////////////
+    //         Helper methods         //
+    ////////////////////////////////////
+
+    private static Counter rejections(MeterRegistry meterRegistry, String reason){
+        return Counter.builder("chat.generation.rejected")
+                        .tag("reason", reason)
+                        .description("Chat requests turned away by admission control")
+                        .register(meterRegistry);
+    }
+
+    private void release(){
+        List<Ticket> next = new ArrayList<>(1);
+        synchronized (this.waiting) {
+            this.active--;
+            Ticket ticket = pollNext();
+            if (ticket != null) {
+                this.active++;
+                next.add(ticket);
+            }
+        }
+        next.forEach(this::grant);
+    }
+
+    // Round-robin: the head of the first client's queue, that client then moves to the back
+    private Ticket pollNext(){
+        Iterator<String> clients = this.waiting.keySet().iterator();
+        if (!clients.hasNext()) {
+            return null;
+        }
+        String clientId = clients.next();
+        ArrayDeque<Ticket> clientQueue = this.waiting.remove(clientId);
+        Ticket ticket = clientQueue.pollFirst();
+        if (!clientQueue.isEmpty()) {
+            this.waiting.put(clientId, clientQueue);
+        }
+        this.queued--;
+        return ticket;
+    }
+
+    private void grant(Ticket ticket){
+        this.waitTime.record(System.nanoTime() - ticket.enqueuedAt, TimeUnit.NANOSECONDS);
+        Permit permit = new Permit();
+        // Cancelled or expired while it was being handed over, pass the slot on
+        if (!ticket.granted.complete(permit)) {
+            permit.release();
+        }
+    }
+
+    private boolean remove(Ticket ticket){
+        synchronized (this.waiting) {
+            ArrayDeque<Ticket> clientQueue = this.waiting.get(ticket.clientId);
+            if (clientQueue == null || !clientQueue.remove(ticket)) {
+                return false;
+            }
+            if (clientQueue.isEmpty()) {
+                this.waiting.remove(ticket.clientId);
+            }
+            this.queued--;
+            return true;
+        }
+    }
+
+    private void withdraw(Ticket ticket){
+        if (remove(ticket)) {
+            this.logger.debug("Client {} left the generation queue", ticket.clientId);
+        }
+    }
+
+    private void expire(Ticket ticket){
+        if (remove(ticket)) {
+            this.timedOut.increment();
+            ticket.granted.completeExceptionally(
+                new GenerationQueueFull("Waited more than " + this.maxWait.toSeconds() + "s for a free model slot"));
+        }
+    }
+
+    // Tickets granted before this one under round-robin: up to k+1 from clients ahead of
+    // it in the rotation, up to k from clients behind it, where k is its index in its own queue
+    private int position(Ticket ticket){
+        synchronized (this.waiting) {
+            ArrayDeque<Ticket> own = this.waiting.get(ticket.clientId);
+            if (own == null || !own.contains(ticket)) {
+                return 0;
+            }
+            int index = 0;
+            for (Ticket queuedTicket : own) {
+                if (queuedTicket == ticket) {
+                    break;
+                }
+                index++;
+            }
+
+            int ahead = index;
+            boolean beforeOwnClient = true;
+            for (var entry : this.waiting.entrySet()) {
+                if (entry.getKey().equals(ticket.clientId)) {
+                    beforeOwnClient = false;
+                    continue;
+                }
+                ahead += Math.min(entry.getValue().size(), beforeOwnClient ? index + 1 : index);
+            }
+            return ahead + 1;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.LlamaTalks.v1.chat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.LlamaTalks.v1.models.Message;
+
+import jakarta.annotation.PreDestroy;
+
+// Write-behind for chat messages. Request threads only enqueue, one writer thread drains
+// whatever has piled up and inserts it as one JDBC batch (a multi-row INSERT with
+// reWriteBatchedInserts). A single writer and a FIFO queue keep the order of messages.
+@Component
+public class MessagePersister {
+    private static final String INSERT_SQL = """
+        INSERT INTO message (content, conversation_id, message_role, generated_at, context_from_doc)
+        VALUES (?, ?, ?, ?, ?)
+        """;
+    private static final long POLL_MILLIS = 200;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+    private final BlockingQueue<Message> queue;
+    private final Thread writer;
+    private final Logger logger = LoggerFactory.getLogger(MessagePersister.class);
+
+    private volatile boolean running = true;
+
+    public MessagePersister(JdbcTemplate jdbcTemplate,
+                            @Value("${chat.persistence.queue-capacity}") int queueCapacity,
+                            @Value("${chat.persistence.batch-size}") int batchSize){
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = Math.max(1, batchSize);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.writer = Thread.ofPlatform().name("message-writer").daemon().start(this::drain);
+    }
+
+    // The message needs its conversation set, only the conversation's id is read from it.
+    // Blocks when the queue is full, so a slow database pushes back instead of dropping.
+    public void enqueue(Message message){
+        if (!this.running) {
+            write(List.of(message));
+            return;
+        }
+        try {
+            this.queue.put(message);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            write(List.of(message));
+        }
+    }
+
+    public int pending(){
+        return this.queue.size();
+    }
+
+    @PreDestroy
+    public void shutdown(){
+        this.running = false;
+        try {
+            this.writer.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Anything the writer did not get to before the timeout
+        List<Message> remaining = new ArrayList<>();
+        this.queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            write(remaining);
+        }
+    }
+
+    ////////////////////////////////////
+    //         Helper methods         //
+    ////////////////////////////////////
+
+    private void drain(){
+        List<Message> batch = new ArrayList<>(this.batchSize);
+        while (this.running || !this.queue.isEmpty()) {
+            try {
+                Message first = this.queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                this.queue.drainTo(batch, this.batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                this.logger.error("Message writer failed", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Message> batch){
+        try {
+            this.jdbcTemplate.batchUpdate(INSERT_SQL, batch.stream().map(MessagePersister::row).toList());
+            this.logger.debug("Saved {} messages", batch.size());
+        } catch (RuntimeException e) {
+            // One bad row (e.g. its conversation was deleted meanwhile) must not take the others down
+            this.logger.warn("Batch insert of {} messages failed, retrying one by one", batch.size(), e);
+            for (Message message : batch) {
+                try {
+                    this.jdbcTemplate.update(INSERT_SQL, row(message));
+                } catch (RuntimeException rowError) {
+                    this.logger.error("Dropping message for conversation {}", message.getConversation().getConversationId(), rowError);
+                }
+            }
+        }
+    }
+
+    private static Object[] row(Message message){
+        return new Object[]{
+            message.getContent(),
+            message.getConversation().getId(),
+            message.getRole().name(),
+            message.getGeneratedAt(),
+            message.getContext()
+        };
+    }
+}
@@ -0,0 +1,65 @@
+package com.LlamaTalks.v1.chat;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.ollama.OllamaChatRequestParameters;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Ollama keeps the KV cache of the last prompt per slot and only evaluates what follows the
+// longest common prefix, which only pays off while the model stays loaded between turns. Every
+// chat request therefore carries keepAlive, and the prompt_eval_count of each answer (tokens
+// Ollama actually evaluated) is compared with the prompt's estimated size: the difference is
+// what came out of the cache.
+@Component
+public class OllamaPromptCache {
+    private final Integer keepAliveSeconds;
+    private final DistributionSummary evaluated;
+    private final DistributionSummary reused;
+
+    // A negative keepAlive keeps the model loaded for good, null leaves it to the server default
+    public OllamaPromptCache(@Value("${chat.ollama.keep-alive}") Duration keepAlive, MeterRegistry meterRegistry){
+        this.keepAliveSeconds = keepAlive == null ? null : keepAlive.isNegative() ? -1 : (int) keepAlive.toSeconds();
+        this.evaluated = DistributionSummary.builder("chat.prompt.evaluated")
+                                            .baseUnit("tokens")
+                                            .description("Prompt tokens Ollama evaluated per turn (prompt_eval_count)")
+                                            .publishPercentiles(0.5, 0.95)
+                                            .register(meterRegistry);
+        this.reused = DistributionSummary.builder("chat.prompt.cache.reused")
+                                            .description("Estimated share of the prompt served from Ollama's prompt cache")
+                                            .publishPercentiles(0.5, 0.95)
+                                            .register(meterRegistry);
+    }
+
+    public Integer keepAliveSeconds(){
+        return this.keepAliveSeconds;
+    }
+
+    public ChatRequest request(List<ChatMessage> messages){
+        return ChatRequest.builder()
+                            .messages(messages)
+                            .parameters(OllamaChatRequestParameters.builder().keepAlive(this.keepAliveSeconds).build())
+                            .build();
+    }
+
+    // promptTokens is the estimate the prompt was assembled with, responses without usage are skipped
+    public void record(int promptTokens, ChatResponse response){
+        TokenUsage usage = response == null ? null : response.tokenUsage();
+        if (usage == null || usage.inputTokenCount() == null) {
+            return;
+        }
+        int evaluatedTokens = usage.inputTokenCount();
+        this.evaluated.record(evaluatedTokens);
+        if (promptTokens > 0) {
+            this.reused.record(Math.clamp(1.0 - (double) evaluatedTokens / promptTokens, 0.0, 1.0));
+        }
+    }
+}
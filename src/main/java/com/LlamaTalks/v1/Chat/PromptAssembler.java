@@ -0,0 +1,227 @@
+package com.LlamaTalks.v1.chat;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.rag.content.Content;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Builds the messages sent to Ollama within a fixed token budget, so prefill time is bounded
+// and the prompt never overflows the model's context window. The question always goes in,
+// the rest of the budget is split between retrieved context (contextShare) and history; a
+// side that needs less than its share leaves the rest to the other. Chunks are taken in
+// retrieval order and the first one that does not fit is cut at a word boundary if at least
+// minChunkTokens of it fit. History is kept in whole messages and the oldest turns are the
+// first to go; under PREFIX_STABLE they go historyBlock messages at a time, so the history
+// keeps its first message for several turns instead of losing one every turn. A conversation summary, when there is one, is paid for up front
+// like the question: ConversationCompactor keeps it short and it stands in for older turns.
+// CONTEXT_FIRST puts the retrieved context ahead of the history. PREFIX_STABLE puts it right
+// before the question instead, so the summary and the history open the prompt exactly as they
+// did last turn and Ollama can reuse its prompt cache for them (see OllamaPromptCache).
+@Component
+public class PromptAssembler {
+    public static final String CONTEXT_PREAMBLE = "Use the following context to answer the user's question:\n\n";
+    public static final String SUMMARY_PREAMBLE = "Summary of the conversation so far:\n\n";
+    private static final String CHUNK_SEPARATOR = "\n\n";
+
+    public enum Layout {CONTEXT_FIRST, PREFIX_STABLE}
+
+    public record Prompt(List<ChatMessage> messages, List<Content> contents, String context,
+                        int historyTokens, int contextTokens, int questionTokens, int summaryTokens) {
+
+        public int tokens(){
+            return this.historyTokens + this.contextTokens + this.questionTokens + this.summaryTokens;
+        }
+    }
+
+    private final TokenCountEstimator tokenizer;
+    private final int maxTokens;
+    private final double contextShare;
+    private final int minChunkTokens;
+    private final Layout layout;
+    private final int historyBlock;
+    private final DistributionSummary historyTokens;
+    private final DistributionSummary contextTokens;
+    private final DistributionSummary questionTokens;
+    private final DistributionSummary summaryTokens;
+    private final DistributionSummary totalTokens;
+    private final Counter droppedChunks;
+    private final Counter trimmedChunks;
+    private final Counter droppedMessages;
+
+    public PromptAssembler(TokenCountEstimator tokenizer,
+                            @Value("${chat.prompt.max-tokens}") int maxTokens,
+                            @Value("${chat.prompt.context-share}") double contextShare,
+                            @Value("${chat.prompt.min-chunk-tokens}") int minChunkTokens,
+                            @Value("${chat.prompt.layout}") Layout layout,
+                            @Value("${chat.memory.trim-block}") int historyBlock,
+                            MeterRegistry meterRegistry){
+        if (maxTokens <= 0 || contextShare < 0 || contextShare > 1) {
+            throw new IllegalArgumentException("Prompt budget must be positive and the context share between 0 and 1");
+        }
+        this.tokenizer = tokenizer;
+        this.maxTokens = maxTokens;
+        this.contextShare = contextShare;
+        this.minChunkTokens = Math.max(1, minChunkTokens);
+        this.layout = layout;
+        this.historyBlock = layout == Layout.PREFIX_STABLE ? Math.max(1, historyBlock) : 1;
+
+        this.historyTokens = tokens("history", meterRegistry);
+        this.contextTokens = tokens("context", meterRegistry);
+        this.questionTokens = tokens("question", meterRegistry);
+        this.summaryTokens = tokens("summary", meterRegistry);
+        this.totalTokens = tokens("total", meterRegistry);
+        this.droppedChunks = Counter.builder("chat.prompt.dropped")
+                                    .tag("part", "chunks")
+                                    .description("Retrieved chunks left out of the prompt for lack of budget")
+                                    .register(meterRegistry);
+        this.trimmedChunks = Counter.builder("chat.prompt.trimmed")
+                                    .description("Retrieved chunks cut down to fit the prompt budget")
+                                    .register(meterRegistry);
+        this.droppedMessages = Counter.builder("chat.prompt.dropped")
+                                    .tag("part", "messages")
+                                    .description("History messages left out of the prompt for lack of budget")
+                                    .register(meterRegistry);
+    }
+
+    public Prompt assemble(List<ChatMessage> history, List<Content> contents, String question){
+        return assemble(null, history, contents, question);
+    }
+
+    // messages(): the summary and the context as system messages (if present and they fit), the
+    // kept history and the question, with the context after the history under PREFIX_STABLE
+    public Prompt assemble(String summary, List<ChatMessage> history, List<Content> contents, String question){
+        UserMessage userMessage = UserMessage.from(question);
+        int questionCost = this.tokenizer.estimateTokenCountInMessage(userMessage);
+        SystemMessage summaryMessage = summary == null || summary.isBlank() ? null : SystemMessage.from(SUMMARY_PREAMBLE + summary);
+        int summaryCost = summaryMessage == null ? 0 : this.tokenizer.estimateTokenCountInMessage(summaryMessage);
+        if (summaryCost > this.maxTokens - questionCost) {
+            summaryMessage = null;
+            summaryCost = 0;
+        }
+        int available = Math.max(0, this.maxTokens - questionCost - summaryCost);
+        int historyNeed = this.tokenizer.estimateTokenCountInMessages(history);
+        int contextBudget = Math.max((int) (available * this.contextShare), available - historyNeed);
+
+        List<Content> used = selectContents(contents, contextBudget);
+        String context = String.join(CHUNK_SEPARATOR, used.stream().map(content -> content.textSegment().text()).toList());
+        SystemMessage systemMessage = used.isEmpty() ? null : SystemMessage.from(CONTEXT_PREAMBLE + context);
+        int contextCost = systemMessage == null ? 0 : this.tokenizer.estimateTokenCountInMessage(systemMessage);
+
+        Deque<ChatMessage> kept = selectHistory(history, available - contextCost);
+        int historyCost = this.tokenizer.estimateTokenCountInMessages(kept);
+
+        List<ChatMessage> messages = new ArrayList<>(kept.size() + 3);
+        if (summaryMessage != null) {
+            messages.add(summaryMessage);
+        }
+        if (systemMessage != null && this.layout == Layout.CONTEXT_FIRST) {
+            messages.add(systemMessage);
+        }
+        messages.addAll(kept);
+        if (systemMessage != null && this.layout == Layout.PREFIX_STABLE) {
+            messages.add(systemMessage);
+        }
+        messages.add(userMessage);
+
+        this.historyTokens.record(historyCost);
+        this.contextTokens.record(contextCost);
+        this.questionTokens.record(questionCost);
+        this.summaryTokens.record(summaryCost);
+        Prompt prompt = new Prompt(messages, used, context, historyCost, contextCost, questionCost, summaryCost);
+        this.totalTokens.record(prompt.tokens());
+        this.droppedChunks.increment(contents.size() - used.size());
+        this.droppedMessages.increment(history.size() - kept.size());
+        return prompt;
+    }
+
+    ////////////////////////////////////
+    //         Helper methods         //
+    ////////////////////////////////////
+
+    private List<Content> selectContents(List<Content> contents, int budget){
+        List<Content> used = new ArrayList<>();
+        if (contents.isEmpty()) {
+            return used;
+        }
+        int remaining = budget - this.tokenizer.estimateTokenCountInMessage(SystemMessage.from(CONTEXT_PREAMBLE));
+        for (Content content : contents) {
+            String text = content.textSegment().text();
+            int cost = this.tokenizer.estimateTokenCountInText(text + CHUNK_SEPARATOR);
+            if (cost <= remaining) {
+                used.add(content);
+                remaining -= cost;
+                continue;
+            }
+            String trimmed = remaining >= this.minChunkTokens ? trim(text, remaining) : null;
+            if (trimmed != null) {
+                TextSegment segment = TextSegment.from(trimmed, content.textSegment().metadata());
+                used.add(Content.from(segment, content.metadata()));
+                this.trimmedChunks.increment();
+            }
+            // Lower ranked chunks are not worth more than the tail of a better one
+            break;
+        }
+        return used;
+    }
+
+    // The longest tail that fits, its start moved historyBlock messages at a time
+    private Deque<ChatMessage> selectHistory(List<ChatMessage> history, int budget){
+        int[] costs = new int[history.size()];
+        int cost = 0;
+        for (int i = 0; i < costs.length; i++) {
+            costs[i] = this.tokenizer.estimateTokenCountInMessage(history.get(i));
+            cost += costs[i];
+        }
+        int start = 0;
+        while (cost > budget && start < costs.length) {
+            int end = Math.min(costs.length, start + this.historyBlock);
+            for (int i = start; i < end; i++) {
+                cost -= costs[i];
+            }
+            start = end;
+        }
+        Deque<ChatMessage> kept = new ArrayDeque<>(history.subList(start, history.size()));
+        // An answer whose question was cut off only confuses the model
+        while (!kept.isEmpty() && !(kept.peekFirst() instanceof UserMessage)) {
+            kept.removeFirst();
+        }
+        return kept;
+    }
+
+    // Longest prefix ending at a word boundary that fits the budget, null if none does
+    private String trim(String text, int budget){
+        int tokens = Math.max(1, this.tokenizer.estimateTokenCountInText(text));
+        int end = (int) Math.min(text.length(), (long) text.length() * budget / tokens);
+        while (end > 0) {
+            int cut = text.lastIndexOf(' ', end);
+            String candidate = text.substring(0, cut > 0 ? cut : end).stripTrailing();
+            if (!candidate.isEmpty() && this.tokenizer.estimateTokenCountInText(candidate + CHUNK_SEPARATOR) <= budget) {
+                return candidate;
+            }
+            end = (cut > 0 ? cut : end) * 9 / 10;
+        }
+        return null;
+    }
+
+    private static DistributionSummary tokens(String part, MeterRegistry meterRegistry){
+        return DistributionSummary.builder("chat.prompt.tokens")
+                                    .tag("part", part)
+                                    .baseUnit("tokens")
+                                    .description("Estimated prompt tokens per turn")
+                                    .publishPercentiles(0.5, 0.95)
+                                    .register(meterRegistry);
+    }
+}
@@ -0,0 +1,86 @@
+package com.LlamaTalks.v1.chat;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Schedulers;
+
+// Merges streamed tokens into larger frames. A frame is sent once it holds maxChars, or
+// maxDelay after its first token, whichever comes first, so a slow model still shows
+// progress while a fast one no longer pays one SSE frame and flush per token.
+@Component
+public class TokenCoalescer {
+    private final int maxChars;
+    private final Duration maxDelay;
+
+    public TokenCoalescer(@Value("${chat.stream.coalesce.max-chars}") int maxChars,
+                            @Value("${chat.stream.coalesce.max-delay}") Duration maxDelay){
+        this.maxChars = maxChars;
+        this.maxDelay = maxDelay;
+    }
+
+    public Flux<String> coalesce(Flux<String> tokens){
+        if (this.maxChars <= 1 || this.maxDelay.isZero()) {
+            return tokens;
+        }
+        return Flux.create(sink -> {
+            Frame frame = new Frame(sink);
+            Disposable upstream = tokens.subscribe(frame::add, frame::error, frame::complete);
+            sink.onDispose(() -> {
+                upstream.dispose();
+                frame.cancelTimer();
+            });
+        });
+    }
+
+    private class Frame {
+        private final FluxSink<String> sink;
+        private final StringBuilder text = new StringBuilder();
+        private Disposable timer;
+
+        Frame(FluxSink<String> sink){
+            this.sink = sink;
+        }
+
+        synchronized void add(String token){
+            this.text.append(token);
+            if (this.text.length() >= TokenCoalescer.this.maxChars) {
+                flush();
+            } else if (this.timer == null) {
+                this.timer = Schedulers.parallel().schedule(this::flush,
+                                TokenCoalescer.this.maxDelay.toNanos(), TimeUnit.NANOSECONDS);
+            }
+        }
+
+        synchronized void flush(){
+            cancelTimer();
+            if (!this.text.isEmpty()) {
+                this.sink.next(this.text.toString());
+                this.text.setLength(0);
+            }
+        }
+
+        synchronized void complete(){
+            flush();
+            this.sink.complete();
+        }
+
+        synchronized void error(Throwable error){
+            flush();
+            this.sink.error(error);
+        }
+
+        synchronized void cancelTimer(){
+            if (this.timer != null) {
+                this.timer.dispose();
+                this.timer = null;
+            }
+        }
+    }
+}
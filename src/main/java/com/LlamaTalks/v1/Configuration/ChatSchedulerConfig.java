@@ -0,0 +1,30 @@
+package com.LlamaTalks.v1.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+@Configuration
+public class ChatSchedulerConfig {
+
+    @Value("${chat.stream.prepare-threads}")
+    private int prepareThreads;
+
+    @Value("${chat.stream.prepare-queue}")
+    private int prepareQueue;
+
+    @Value("${spring.threads.virtual.enabled}")
+    private boolean virtualThreads;
+
+    // Runs the blocking part of a streamed turn (JPA, retrieval, query embedding) off the
+    // servlet threads. Both limits are bounded, so a stalled database rejects new streams
+    // instead of piling up threads.
+    @Bean(destroyMethod = "dispose")
+    public Scheduler chatScheduler(){
+        return Schedulers.newBoundedElastic(prepareThreads, prepareQueue,
+                    WorkerThreads.builder(virtualThreads).name("chat-prepare-", 0).factory(), 60);
+    }
+}
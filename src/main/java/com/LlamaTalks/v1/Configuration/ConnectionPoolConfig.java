@@ -0,0 +1,51 @@
+package com.LlamaTalks.v1.configuration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+@Configuration
+public class ConnectionPoolConfig {
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionPoolConfig.class);
+
+    // Static, a BeanPostProcessor is created before the beans it post-processes. DB_POOL_SIZE
+    // overrides the computed size, the pool starts on the first getConnection so it can still change.
+    @Bean
+    public static BeanPostProcessor connectionPoolSizer(Environment environment){
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName){
+                if (bean instanceof HikariDataSource dataSource) {
+                    int size = environment.getProperty("DB_POOL_SIZE", Integer.class, poolSize(environment));
+                    dataSource.setMaximumPoolSize(size);
+                    logger.info("Connection pool size: {}", size);
+                }
+                return bean;
+            }
+        };
+    }
+
+    // One connection for every thread the app bounds that can be in a query at the same time:
+    // chats holding a model slot, streams preparing on chat-prepare, the ingestion store stage
+    // and the message writer. Open-in-view is off, so anything else (queued chats' lookups,
+    // lexical searches, compaction, index maintenance) only borrows one for a single query and
+    // waits at most spring.datasource.hikari.connection-timeout for it.
+    public static int poolSize(int maxConcurrentGenerations, int prepareThreads, int storeThreads){
+        return Math.max(1, maxConcurrentGenerations) + Math.max(1, prepareThreads) + Math.max(1, storeThreads) + 1;
+    }
+
+    ////////////////////////////////////
+    //         Helper methods         //
+    ////////////////////////////////////
+
+    private static int poolSize(Environment environment){
+        return poolSize(environment.getRequiredProperty("chat.generation.max-concurrent", Integer.class),
+                        environment.getRequiredProperty("chat.stream.prepare-threads", Integer.class),
+                        environment.getRequiredProperty("ingestion.pipeline.store-threads", Integer.class));
+    }
+}
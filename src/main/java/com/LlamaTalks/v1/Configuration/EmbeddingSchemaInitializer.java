@@ -0,0 +1,99 @@
+package com.LlamaTalks.v1.configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+// Expression indexes on the metadata keys the ingestion path and scoped retrieval filter by.
+// Without them every re-ingest and delete by fileName/filePath, and every question scoped to
+// a batch or ingest date range, is a sequential scan over all chunks. The
+// generated tsvector column and its GIN index back keyword search in HybridContentRetriever.
+// Runs on a background thread once the app is up, indexes are built CONCURRENTLY so ingestion
+// and chat keep going meanwhile; keyword search falls back to vectors until text_search exists.
+// Adding text_search to a table that already holds chunks is a one-off migration: Postgres
+// rewrites the whole table under an exclusive lock to fill the column in. It is skipped once
+// the column exists, see the README for running it ahead of a deploy instead.
+@Component
+public class EmbeddingSchemaInitializer {
+    private static final String COLUMN_EXISTS_SQL = """
+        SELECT count(*) FROM information_schema.columns
+        WHERE table_name = 'embeddings' AND column_name = 'text_search'
+        """;
+    private static final String INVALID_INDEX_SQL = """
+        SELECT count(*) FROM pg_index ix JOIN pg_class c ON c.oid = ix.indexrelid
+        WHERE c.relname = ? AND NOT ix.indisvalid
+        """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ExecutorService executor;
+    private final Logger logger = LoggerFactory.getLogger(EmbeddingSchemaInitializer.class);
+
+    public EmbeddingSchemaInitializer(JdbcTemplate jdbcTemplate,
+                                        @Value("${spring.threads.virtual.enabled}") boolean virtualThreads){
+        this.jdbcTemplate = jdbcTemplate;
+        this.executor = Executors.newSingleThreadExecutor(WorkerThreads.builder(virtualThreads).name("embedding-schema").factory());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady(){
+        this.executor.execute(this::ensureSchema);
+    }
+
+    @PreDestroy
+    public void shutdown(){
+        // An interrupted CONCURRENTLY build leaves an invalid index, the next start replaces it
+        this.executor.shutdownNow();
+    }
+
+    ////////////////////////////////////
+    //         Helper methods         //
+    ////////////////////////////////////
+
+    private void ensureSchema(){
+        try {
+            createIndex("embeddings_file_name_idx", "((metadata->>'fileName'))");
+            createIndex("embeddings_file_path_idx", "((metadata->>'filePath'))");
+            createIndex("embeddings_batch_id_idx", "((metadata->>'batchId'))");
+            // Same cast as the filter SQL, otherwise range predicates cannot use the index
+            createIndex("embeddings_ingested_at_idx", "(((metadata->>'ingestedAt')::bigint))");
+            createTextSearchColumn();
+            createIndex("embeddings_text_search_idx", "USING GIN (text_search)");
+            this.logger.info("Embedding schema is up to date");
+        } catch (DataAccessException e) {
+            this.logger.error("Could not bring the embedding schema up to date, it is retried on the next start", e);
+        }
+    }
+
+    // Generated, so PgVectorEmbeddingStore keeps inserting text only and Postgres fills it in
+    private void createTextSearchColumn(){
+        if (this.jdbcTemplate.queryForObject(COLUMN_EXISTS_SQL, Long.class) > 0) {
+            return;
+        }
+        this.logger.warn("Adding full-text search column to embeddings, the table is locked while existing rows are rewritten");
+        long start = System.nanoTime();
+        this.jdbcTemplate.execute("""
+            ALTER TABLE embeddings ADD COLUMN IF NOT EXISTS text_search tsvector
+            GENERATED ALWAYS AS (to_tsvector('english', coalesce(text, ''))) STORED
+            """);
+        this.logger.info("Added text_search to embeddings in {} ms", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void createIndex(String name, String definition){
+        if (this.jdbcTemplate.queryForObject(INVALID_INDEX_SQL, Long.class, name) > 0) {
+            this.logger.info("Dropping invalid index {} left by an interrupted build", name);
+            this.jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + name);
+        }
+        this.logger.info("Ensuring index {} on embeddings {}", name, definition);
+        this.jdbcTemplate.execute("CREATE INDEX CONCURRENTLY IF NOT EXISTS " + name + " ON embeddings " + definition);
+    }
+}
@@ -1,14 +1,30 @@
 package com.LlamaTalks.v1.configuration;
 
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.sql.DataSource;
 
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.LlamaTalks.v1.chat.ApproximateTokenCountEstimator;
+import com.LlamaTalks.v1.rag.CachingEmbeddingModel;
+import com.LlamaTalks.v1.rag.HnswEmbeddingStore;
+import com.LlamaTalks.v1.rag.HybridContentRetriever;
+import com.LlamaTalks.v1.rag.MicroBatchingEmbeddingModel;
+import com.LlamaTalks.v1.rag.QuantizedEmbeddingStore;
+import com.LlamaTalks.v1.rag.RetrievalFilters;
+import com.LlamaTalks.v1.rag.VectorIndexManager;
 
 import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.TokenCountEstimator;
 import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.model.ollama.OllamaChatModel;
 import dev.langchain4j.model.ollama.OllamaEmbeddingModel;
@@ -17,18 +33,13 @@ import dev.langchain4j.rag.content.retriever.ContentRetriever;
 import dev.langchain4j.rag.content.retriever.EmbeddingStoreContentRetriever;
 import dev.langchain4j.store.embedding.EmbeddingStore;
 import dev.langchain4j.store.embedding.pgvector.PgVectorEmbeddingStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 
 @Configuration
 public class LangchainConfig {
 
-    @Value("${POSTGRES_DB}")
-    private String database;
-
-    @Value("${POSTGRES_USER}")
-    private String user;
-
-    @Value("${POSTGRES_PASSWORD}")
-    private String password;
+    public enum StoreType { PGVECTOR, HNSW }
 
     @Value("${OLLAMA_URL}")
     private String ollamaUrl;
@@ -42,22 +53,97 @@ public class LangchainConfig {
     @Value("${CHAT_MODEL}")
     private String chatModel;
 
+    @Value("${rag.query-embedding-cache.max-size}")
+    private int queryEmbeddingCacheSize;
+
+    @Value("${rag.query-embedding-cache.ttl}")
+    private Duration queryEmbeddingCacheTtl;
+
+    @Value("${rag.retrieval.mode}")
+    private HybridContentRetriever.Mode retrievalMode;
+
+    @Value("${rag.retrieval.max-results}")
+    private int maxResults;
+
+    @Value("${rag.retrieval.min-score}")
+    private double minScore;
+
+    @Value("${rag.retrieval.min-keyword-match}")
+    private double minKeywordMatch;
+
+    @Value("${rag.retrieval.candidates}")
+    private int retrievalCandidates;
+
+    @Value("${rag.retrieval.prefilter-candidates}")
+    private int prefilterCandidates;
+
+    @Value("${rag.retrieval.lexical-threads}")
+    private int lexicalThreads;
+
+    @Value("${spring.threads.virtual.enabled}")
+    private boolean virtualThreads;
+
+    private ExecutorService lexicalSearchExecutor;
+
+    @Value("${rag.store.type}")
+    private StoreType storeType;
+
+    @Value("${rag.store.snapshot-path}")
+    private Path snapshotPath;
+
+    @Value("${rag.store.snapshot-interval}")
+    private Duration snapshotInterval;
+
+    @Value("${rag.store.compact-threshold}")
+    private double compactThreshold;
+
+    @Value("${rag.vector-index.hnsw.m}")
+    private int hnswM;
+
+    @Value("${rag.vector-index.hnsw.ef-construction}")
+    private int hnswEfConstruction;
+
+    @Value("${rag.vector-index.hnsw.ef-search}")
+    private int hnswEfSearch;
+
+    @Value("${chat.prompt.chars-per-token}")
+    private double charsPerToken;
+
+    @Value("${rag.query-embedding-batch.max-size}")
+    private int queryEmbeddingBatchSize;
+
+    @Value("${rag.query-embedding-batch.max-wait}")
+    private Duration queryEmbeddingBatchWait;
+
     @Bean
-    public EmbeddingStore<TextSegment> embeddingStore(DataSource dataSource){
-        return PgVectorEmbeddingStore.builder()
-                .host("database")
-                .port(5432)
-                .database(database)
-                .user(user)
-                .password(password)
+    public EmbeddingStore<TextSegment> embeddingStore(DataSource dataSource, VectorIndexManager vectorIndexManager, JdbcTemplate jdbcTemplate){
+        // Shares the Hikari pool, so batched addAll calls go out as JDBC batches on pooled connections.
+        // Its connections carry the ANN search settings (hnsw.ef_search / ivfflat.probes).
+        DataSource searchDataSource = vectorIndexManager.searchTuned(dataSource);
+        EmbeddingStore<TextSegment> pgvector = PgVectorEmbeddingStore.datasourceBuilder()
+                .datasource(searchDataSource)
                 .table("embeddings")
                 .dimension(dimension)
                 .createTable(true)
                 .dropTableFirst(false)
                 .build();
+        if (vectorIndexManager.quantization() != VectorIndexManager.Quantization.NONE) {
+            // Coarse search over the quantized index, exact re-rank of the candidates
+            pgvector = new QuantizedEmbeddingStore(pgvector, new JdbcTemplate(searchDataSource), vectorIndexManager);
+        }
+        if (storeType == StoreType.PGVECTOR) {
+            return pgvector;
+        }
+        // Writes still go to pgvector first, searches are answered in-process; closed (and snapshotted) on shutdown
+        HnswEmbeddingStore hnsw = new HnswEmbeddingStore(pgvector, jdbcTemplate, dimension, hnswM, hnswEfConstruction,
+                                                        hnswEfSearch, snapshotPath, snapshotInterval, compactThreshold,
+                                                        virtualThreads);
+        hnsw.start();
+        return hnsw;
     }
 
     @Bean
+    @Primary
     public EmbeddingModel embeddingModel(){
         return OllamaEmbeddingModel.builder()
                 .baseUrl(ollamaUrl)
@@ -68,13 +154,43 @@ public class LangchainConfig {
     }
 
     @Bean
-    public ContentRetriever contentRetriever(EmbeddingModel embeddingModel, EmbeddingStore<TextSegment> embeddingStore){
-        return EmbeddingStoreContentRetriever.builder()
-                                    .embeddingModel(embeddingModel)
+    public CachingEmbeddingModel queryEmbeddingModel(EmbeddingModel embeddingModel, MeterRegistry meterRegistry){
+        // Only cache misses are batched, concurrent ones share a single Ollama call
+        EmbeddingModel batching = new MicroBatchingEmbeddingModel(embeddingModel, queryEmbeddingBatchSize, queryEmbeddingBatchWait, meterRegistry);
+        return new CachingEmbeddingModel(batching, queryEmbeddingCacheSize, queryEmbeddingCacheTtl, meterRegistry);
+    }
+
+    @Bean
+    public ContentRetriever contentRetriever(@Qualifier("queryEmbeddingModel") EmbeddingModel queryEmbeddingModel, EmbeddingStore<TextSegment> embeddingStore,
+                                            JdbcTemplate jdbcTemplate){
+        ContentRetriever vectorRetriever = EmbeddingStoreContentRetriever.builder()
+                                    .embeddingModel(queryEmbeddingModel)
                                     .embeddingStore(embeddingStore)
-                                    .maxResults(3)
-                                    .minScore(0.75)
+                                    .maxResults(retrievalMode == HybridContentRetriever.Mode.HYBRID ? retrievalCandidates : maxResults)
+                                    .minScore(minScore)
+                                    // Scoped questions: pushed into the vector query's WHERE clause
+                                    .dynamicFilter(RetrievalFilters::filterOf)
                                     .build();
+        // Not a bean, an Executor bean would replace Spring's applicationTaskExecutor
+        this.lexicalSearchExecutor = Executors.newFixedThreadPool(lexicalThreads,
+                                        WorkerThreads.builder(virtualThreads).name("rag-lexical-", 0).factory());
+        return new HybridContentRetriever(vectorRetriever, queryEmbeddingModel, jdbcTemplate, lexicalSearchExecutor,
+                                        retrievalMode, maxResults, retrievalCandidates, prefilterCandidates, minScore,
+                                        minKeywordMatch);
+    }
+
+    @PreDestroy
+    public void shutdown(){
+        if (this.lexicalSearchExecutor != null) {
+            this.lexicalSearchExecutor.shutdown();
+        }
+    }
+
+    // Budgets the prompt in PromptAssembler. A TokenCountEstimator with the model's own tokenizer
+    // replaces it by being declared @Primary.
+    @Bean
+    public TokenCountEstimator tokenCountEstimator(){
+        return new ApproximateTokenCountEstimator(charsPerToken);
     }
 
     @Bean
@@ -0,0 +1,216 @@
+package com.LlamaTalks.v1.configuration;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.LlamaTalks.v1.chat.GenerationScheduler;
+import com.LlamaTalks.v1.chat.GenerationScheduler.Permit;
+import com.LlamaTalks.v1.chat.OllamaPromptCache;
+
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.ollama.OllamaChatRequestParameters;
+import dev.langchain4j.model.ollama.OllamaChatModel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+// Loads the chat and embedding models into Ollama once the app is up, so the first request
+// after a deploy does not pay the model load. Until both answered, the health contributor is
+// OUT_OF_SERVICE and with it the readiness probe; Ollama being down only delays readiness, the
+// warm-up is retried every retryInterval. Afterwards, while chat requests keep coming (the last
+// one less than idleAfter ago), both models are pinged every pingInterval so Ollama does not
+// unload them between requests. The chat ping is skipped while anything is generating, and
+// whenever a request arrived since the last ping, since that request already reset keep_alive:
+// each ping overwrites a slot of Ollama's prompt cache.
+@Component
+public class ModelWarmup implements HealthIndicator {
+    private static final String PING = "ping";
+
+    private final OllamaChatModel ollama;
+    private final EmbeddingModel embeddingModel;
+    private final GenerationScheduler generationScheduler;
+    private final OllamaPromptCache promptCache;
+    private final boolean enabled;
+    private final Duration retryInterval;
+    private final Duration pingInterval;
+    private final Duration idleAfter;
+    private final LongSupplier clock;
+    private final ScheduledExecutorService executor;
+    private final Timer chatLoad;
+    private final Timer embeddingLoad;
+    private final Counter chatPings;
+    private final Counter embeddingPings;
+    private final Logger logger = LoggerFactory.getLogger(ModelWarmup.class);
+
+    private volatile boolean chatWarm;
+    private volatile boolean embeddingWarm;
+
+    @Autowired
+    public ModelWarmup(OllamaChatModel ollama,
+                        EmbeddingModel embeddingModel,
+                        GenerationScheduler generationScheduler,
+                        OllamaPromptCache promptCache,
+                        @Value("${ollama.warmup.enabled}") boolean enabled,
+                        @Value("${ollama.warmup.retry-interval}") Duration retryInterval,
+                        @Value("${ollama.warmup.ping-interval}") Duration pingInterval,
+                        @Value("${ollama.warmup.idle-after}") Duration idleAfter,
+                        @Value("${spring.threads.virtual.enabled}") boolean virtualThreads,
+                        MeterRegistry meterRegistry){
+        this(ollama, embeddingModel, generationScheduler, promptCache, enabled, retryInterval, pingInterval, idleAfter,
+            virtualThreads, meterRegistry, System::currentTimeMillis);
+    }
+
+    public ModelWarmup(OllamaChatModel ollama, EmbeddingModel embeddingModel, GenerationScheduler generationScheduler,
+                        OllamaPromptCache promptCache, boolean enabled, Duration retryInterval, Duration pingInterval,
+                        Duration idleAfter, boolean virtualThreads, MeterRegistry meterRegistry, LongSupplier clock){
+        this.ollama = ollama;
+        this.embeddingModel = embeddingModel;
+        this.generationScheduler = generationScheduler;
+        this.promptCache = promptCache;
+        this.enabled = enabled;
+        this.retryInterval = retryInterval;
+        this.pingInterval = pingInterval;
+        this.idleAfter = idleAfter;
+        this.clock = clock;
+        this.executor = Executors.newSingleThreadScheduledExecutor(
+            WorkerThreads.builder(virtualThreads).name("model-warmup").factory());
+
+        this.chatLoad = load("chat", meterRegistry);
+        this.embeddingLoad = load("embedding", meterRegistry);
+        this.chatPings = pings("chat", meterRegistry);
+        this.embeddingPings = pings("embedding", meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady(){
+        if (this.enabled) {
+            this.executor.execute(this::warmUpOrRetry);
+        }
+    }
+
+    // Loads whichever model is not warm yet, true once both are
+    public boolean warmUp(){
+        if (!this.chatWarm) {
+            try {
+                this.chatLoad.record(() -> this.ollama.chat(pingRequest()));
+                this.chatWarm = true;
+            } catch (RuntimeException e) {
+                this.logger.warn("Chat model warm-up failed: {}", e.getMessage());
+            }
+        }
+        if (!this.embeddingWarm) {
+            try {
+                this.embeddingLoad.record(() -> this.embeddingModel.embed(PING));
+                this.embeddingWarm = true;
+            } catch (RuntimeException e) {
+                this.logger.warn("Embedding model warm-up failed: {}", e.getMessage());
+            }
+        }
+        return isWarm();
+    }
+
+    // One round of keep-alive pings, nothing at all once chat traffic has stopped
+    public void keepAlive(){
+        long lastRequest = this.generationScheduler.lastRequestMillis();
+        long sinceLastRequest = this.clock.getAsLong() - lastRequest;
+        if (lastRequest == 0 || sinceLastRequest > this.idleAfter.toMillis()) {
+            return;
+        }
+        try {
+            this.embeddingModel.embed(PING);
+            this.embeddingPings.increment();
+        } catch (RuntimeException e) {
+            this.logger.warn("Embedding model keep-alive failed: {}", e.getMessage());
+        }
+        if (sinceLastRequest < this.pingInterval.toMillis()) {
+            return;
+        }
+        Permit permit = this.generationScheduler.tryAcquireIdle();
+        if (permit == null) {
+            return;
+        }
+        try {
+            this.ollama.chat(pingRequest());
+            this.chatPings.increment();
+        } catch (RuntimeException e) {
+            this.logger.warn("Chat model keep-alive failed: {}", e.getMessage());
+        } finally {
+            permit.release();
+        }
+    }
+
+    public boolean isWarm(){
+        return this.chatWarm && this.embeddingWarm;
+    }
+
+    @Override
+    public Health health(){
+        if (!this.enabled) {
+            return Health.up().withDetail("warmup", "disabled").build();
+        }
+        Health.Builder health = isWarm() ? Health.up() : Health.outOfService();
+        return health.withDetail("chatModel", this.chatWarm ? "warm" : "loading")
+                        .withDetail("embeddingModel", this.embeddingWarm ? "warm" : "loading")
+                        .build();
+    }
+
+    @PreDestroy
+    public void shutdown(){
+        this.executor.shutdownNow();
+    }
+
+    ////////////////////////////////////
+    //         Helper methods         //
+    ////////////////////////////////////
+
+    private void warmUpOrRetry(){
+        if (!warmUp()) {
+            this.executor.schedule(this::warmUpOrRetry, this.retryInterval.toMillis(), TimeUnit.MILLISECONDS);
+            return;
+        }
+        this.logger.info("Chat and embedding models are loaded");
+        long interval = Math.max(1, this.pingInterval.toMillis());
+        this.executor.scheduleWithFixedDelay(this::keepAlive, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    // A single output token: enough to load the model and reset its keep_alive
+    private ChatRequest pingRequest(){
+        return ChatRequest.builder()
+                            .messages(UserMessage.from(PING))
+                            .parameters(OllamaChatRequestParameters.builder()
+                                            .maxOutputTokens(1)
+                                            .keepAlive(this.promptCache.keepAliveSeconds())
+                                            .build())
+                            .build();
+    }
+
+    private static Timer load(String model, MeterRegistry meterRegistry){
+        return Timer.builder("ollama.warmup")
+                    .tag("model", model)
+                    .description("Time the first request to a model took at startup, model load included")
+                    .register(meterRegistry);
+    }
+
+    private static Counter pings(String model, MeterRegistry meterRegistry){
+        return Counter.builder("ollama.keepalive.pings")
+                        .tag("model", model)
+                        .description("Requests sent only to keep a model loaded")
+                        .register(meterRegistry);
+    }
+}
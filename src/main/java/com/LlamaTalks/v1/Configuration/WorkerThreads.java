@@ -0,0 +1,13 @@
+package com.LlamaTalks.v1.configuration;
+
+// Thread builders for the app's own workers. They follow spring.threads.virtual.enabled,
+// the switch that also moves Tomcat's request threads onto virtual threads, so request
+// handling, ingestion and chat preparation always run on the same kind of thread.
+public final class WorkerThreads {
+
+    private WorkerThreads(){}
+
+    public static Thread.Builder builder(boolean virtual){
+        return virtual ? Thread.ofVirtual() : Thread.ofPlatform().daemon();
+    }
+}
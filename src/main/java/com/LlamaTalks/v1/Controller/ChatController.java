@@ -1,8 +1,9 @@
 package com.LlamaTalks.v1.controller;
 
-import java.util.List;
+import java.security.Principal;
 
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -10,13 +11,17 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.LlamaTalks.v1.models.Conversation;
 import com.LlamaTalks.v1.records.ChatRequest;
 import com.LlamaTalks.v1.records.ChatResponse;
+import com.LlamaTalks.v1.records.ConversationPage;
+import com.LlamaTalks.v1.records.MessagePage;
 import com.LlamaTalks.v1.service.ChatServiceImpl;
 
+import jakarta.servlet.http.HttpServletRequest;
 import reactor.core.publisher.Flux;
 
 
@@ -30,13 +35,14 @@ public class ChatController {
     }
 
     @PostMapping
-    public ChatResponse sendMessage(@RequestBody ChatRequest message){
-        return this.chatServiceImpl.chat(message);
+    public ChatResponse sendMessage(@RequestBody ChatRequest message, HttpServletRequest request){
+        return this.chatServiceImpl.chat(message, clientId(request));
     }
 
     @GetMapping
-    public List<Conversation> getAllMessages(){
-        return this.chatServiceImpl.getAllMessages();
+    public ConversationPage getConversations(@RequestParam(required = false) String cursor,
+                                            @RequestParam(defaultValue = "20") int size){
+        return this.chatServiceImpl.getConversations(cursor, size);
     }
 
     @GetMapping("/{conversationId}")
@@ -44,6 +50,13 @@ public class ChatController {
         return this.chatServiceImpl.getConversationById(conversationId);
     }
 
+    @GetMapping("/{conversationId}/messages")
+    public MessagePage getMessages(@PathVariable String conversationId,
+                                    @RequestParam(required = false) String before,
+                                    @RequestParam(defaultValue = "50") int size){
+        return this.chatServiceImpl.getMessages(conversationId, before, size);
+    }
+
     @DeleteMapping("/{conversationId}")
     public void deleteConverstaion(@PathVariable String conversationId){
         this.chatServiceImpl.deleteConverstaion(conversationId);
@@ -55,7 +68,19 @@ public class ChatController {
     }
 
     @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<ChatResponse> streamChat(@RequestBody ChatRequest message){
-        return this.chatServiceImpl.streamChat(message);
+    public Flux<ServerSentEvent<Object>> streamChat(@RequestBody ChatRequest message, HttpServletRequest request){
+        return this.chatServiceImpl.streamChat(message, clientId(request));
+    }
+
+    ////////////////////////////////////
+    //         Helper methods         //
+    ////////////////////////////////////
+
+    // Whose queue a chat waits in (GenerationScheduler): the authenticated user if there is one,
+    // the client address otherwise. Behind the frontend or a reverse proxy that is the address
+    // from X-Forwarded-For (server.forward-headers-strategy), not the proxy's own.
+    private static String clientId(HttpServletRequest request){
+        Principal user = request.getUserPrincipal();
+        return user != null ? "user:" + user.getName() : request.getRemoteAddr();
     }
 }
@@ -1,16 +1,20 @@
 package com.LlamaTalks.v1.controller;
 
-import java.util.List;
-import java.util.concurrent.CompletableFuture;
+import java.net.URI;
 
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
-import com.LlamaTalks.v1.records.FileNameDTO;
+import com.LlamaTalks.v1.ingestion.IngestionJob;
+import com.LlamaTalks.v1.records.IngestedFilePage;
+import com.LlamaTalks.v1.records.IngestionJobStatus;
 import com.LlamaTalks.v1.service.IngestionServiceImpl;
 
 @RestController
@@ -24,13 +28,31 @@ public class IngestionController {
     }
 
     @PostMapping
-    public ResponseEntity<String> ingestFiles(@RequestParam String filePath) throws Exception{
-        CompletableFuture<String> batchId = ingestionServiceImpl.ingestDirectory(filePath);
-        return ResponseEntity.accepted().body("Files ingested. BatchId: "+batchId);
+    public ResponseEntity<IngestionJobStatus> ingestFiles(@RequestParam String filePath){
+        IngestionJob job = ingestionServiceImpl.ingestDirectory(filePath);
+        URI location = ServletUriComponentsBuilder.fromCurrentRequest()
+                                                    .replaceQuery(null)
+                                                    .path("/jobs/{jobId}")
+                                                    .buildAndExpand(job.id())
+                                                    .toUri();
+        return ResponseEntity.accepted()
+            .location(location)
+            .body(job.snapshot());
     }
 
     @GetMapping
-    public List<FileNameDTO> getAllFileNames(){
-        return ingestionServiceImpl.getAllFileNames();
+    public IngestedFilePage getIngestedFiles(@RequestParam(defaultValue = "0") int page,
+                                            @RequestParam(defaultValue = "50") int size){
+        return ingestionServiceImpl.getIngestedFiles(page, size);
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    public IngestionJobStatus getJob(@PathVariable String jobId){
+        return ingestionServiceImpl.getJob(jobId);
+    }
+
+    @DeleteMapping("/jobs/{jobId}")
+    public ResponseEntity<IngestionJobStatus> cancelJob(@PathVariable String jobId){
+        return ResponseEntity.accepted().body(ingestionServiceImpl.cancelJob(jobId));
     }
 }
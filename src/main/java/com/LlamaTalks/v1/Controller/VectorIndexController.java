@@ -0,0 +1,42 @@
+package com.LlamaTalks.v1.controller;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.LlamaTalks.v1.rag.VectorIndexManager;
+import com.LlamaTalks.v1.records.VectorIndexBenchmark;
+import com.LlamaTalks.v1.records.VectorIndexStatus;
+
+@RestController
+@RequestMapping("/admin/vector-index")
+public class VectorIndexController {
+
+    private VectorIndexManager vectorIndexManager;
+
+    public VectorIndexController(VectorIndexManager vectorIndexManager){
+        this.vectorIndexManager = vectorIndexManager;
+    }
+
+    @GetMapping
+    public VectorIndexStatus getStatus(){
+        return vectorIndexManager.status();
+    }
+
+    @PostMapping("/rebuild")
+    public ResponseEntity<VectorIndexStatus> rebuild(){
+        return ResponseEntity.accepted().body(vectorIndexManager.rebuild());
+    }
+
+    @PostMapping("/benchmark")
+    public VectorIndexBenchmark benchmark(@RequestParam(defaultValue = "50") int queries,
+                                        @RequestParam(defaultValue = "10") int k,
+                                        @RequestParam(required = false) Integer efSearch,
+                                        @RequestParam(required = false) Integer probes,
+                                        @RequestParam(required = false) Integer candidates){
+        return vectorIndexManager.benchmark(queries, k, efSearch, probes, candidates);
+    }
+}
@@ -0,0 +1,7 @@
+package com.LlamaTalks.v1.exception;
+
+public class GenerationQueueFull extends RuntimeException{
+    public GenerationQueueFull(String message){
+        super(message);
+    }
+}
@@ -1,5 +1,7 @@
 package com.LlamaTalks.v1.exception;
 
+import java.util.concurrent.RejectedExecutionException;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
@@ -23,4 +25,93 @@ public class GlobalExceptionHandler {
 
         return new ResponseEntity<ErrorResponse>(error, HttpStatus.NOT_FOUND);
     }
+
+    @ExceptionHandler(InvalidCursor.class)
+    public ResponseEntity<ErrorResponse> handleInvalidCursor(InvalidCursor exception, HttpServletRequest request){
+        logger.warn("Rejected cursor: {}", exception.getMessage());
+
+        ErrorResponse error = new ErrorResponse();
+        error.setMessage("Invalid cursor");
+        error.setStatus(HttpStatus.BAD_REQUEST.value());
+
+        return new ResponseEntity<ErrorResponse>(error, HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(InvalidRetrievalFilter.class)
+    public ResponseEntity<ErrorResponse> handleInvalidRetrievalFilter(InvalidRetrievalFilter exception, HttpServletRequest request){
+        logger.warn("Rejected retrieval filter: {}", exception.getMessage());
+
+        ErrorResponse error = new ErrorResponse();
+        error.setMessage(exception.getMessage());
+        error.setStatus(HttpStatus.BAD_REQUEST.value());
+
+        return new ResponseEntity<ErrorResponse>(error, HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(IngestionJobNotFound.class)
+    public ResponseEntity<ErrorResponse> handleIngestionJobNotFound(IngestionJobNotFound exception, HttpServletRequest request){
+        logger.error("Ingestion job not found: {}", exception.getMessage());
+
+        ErrorResponse error = new ErrorResponse();
+        error.setMessage("Ingestion job not found");
+        error.setStatus(HttpStatus.NOT_FOUND.value());
+
+        return new ResponseEntity<ErrorResponse>(error, HttpStatus.NOT_FOUND);
+    }
+
+    @ExceptionHandler(IngestionDirectoryNotFound.class)
+    public ResponseEntity<ErrorResponse> handleIngestionDirectoryNotFound(IngestionDirectoryNotFound exception, HttpServletRequest request){
+        logger.warn("Ingestion rejected: {}", exception.getMessage());
+
+        ErrorResponse error = new ErrorResponse();
+        error.setMessage(exception.getMessage());
+        error.setStatus(HttpStatus.BAD_REQUEST.value());
+
+        return new ResponseEntity<ErrorResponse>(error, HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(IngestionQueueFull.class)
+    public ResponseEntity<ErrorResponse> handleIngestionQueueFull(IngestionQueueFull exception, HttpServletRequest request){
+        logger.warn("Ingestion rejected: {}", exception.getMessage());
+
+        ErrorResponse error = new ErrorResponse();
+        error.setMessage(exception.getMessage());
+        error.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+
+        return new ResponseEntity<ErrorResponse>(error, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    // The chat scheduler's queue is full, every worker is stuck on a slow database or retrieval
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<ErrorResponse> handleRejectedExecution(RejectedExecutionException exception, HttpServletRequest request){
+        logger.warn("Chat request rejected: {}", exception.getMessage());
+
+        ErrorResponse error = new ErrorResponse();
+        error.setMessage("Server is busy, try again later");
+        error.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+
+        return new ResponseEntity<ErrorResponse>(error, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @ExceptionHandler(GenerationQueueFull.class)
+    public ResponseEntity<ErrorResponse> handleGenerationQueueFull(GenerationQueueFull exception, HttpServletRequest request){
+        logger.warn("Chat request rejected: {}", exception.getMessage());
+
+        ErrorResponse error = new ErrorResponse();
+        error.setMessage(exception.getMessage());
+        error.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+
+        return new ResponseEntity<ErrorResponse>(error, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @ExceptionHandler(TooManyClientRequests.class)
+    public ResponseEntity<ErrorResponse> handleTooManyClientRequests(TooManyClientRequests exception, HttpServletRequest request){
+        logger.warn("Chat request rejected: {}", exception.getMessage());
+
+        ErrorResponse error = new ErrorResponse();
+        error.setMessage(exception.getMessage());
+        error.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+
+        return new ResponseEntity<ErrorResponse>(error, HttpStatus.TOO_MANY_REQUESTS);
+    }
 }
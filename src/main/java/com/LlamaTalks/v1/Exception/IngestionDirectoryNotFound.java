@@ -0,0 +1,7 @@
+package com.LlamaTalks.v1.exception;
+
+public class IngestionDirectoryNotFound extends RuntimeException{
+    public IngestionDirectoryNotFound(String message){
+        super(message);
+    }
+}
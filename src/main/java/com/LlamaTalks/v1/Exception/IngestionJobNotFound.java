@@ -0,0 +1,7 @@
+package com.LlamaTalks.v1.exception;
+
+public class IngestionJobNotFound extends RuntimeException{
+    public IngestionJobNotFound(String message){
+        super(message);
+    }
+}
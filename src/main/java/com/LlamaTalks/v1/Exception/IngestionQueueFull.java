@@ -0,0 +1,7 @@
+package com.LlamaTalks.v1.exception;
+
+public class IngestionQueueFull extends RuntimeException{
+    public IngestionQueueFull(String message){
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.LlamaTalks.v1.exception;
+
+public class InvalidCursor extends RuntimeException{
+    public InvalidCursor(String message){
+        super(message);
+    }
+}
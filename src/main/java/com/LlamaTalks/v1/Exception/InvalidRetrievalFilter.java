@@ -0,0 +1,7 @@
+package com.LlamaTalks.v1.exception;
+
+public class InvalidRetrievalFilter extends RuntimeException{
+    public InvalidRetrievalFilter(String message){
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.LlamaTalks.v1.exception;
+
+public class TooManyClientRequests extends RuntimeException{
+    public TooManyClientRequests(String message){
+        super(message);
+    }
+}
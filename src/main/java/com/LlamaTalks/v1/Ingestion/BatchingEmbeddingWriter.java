@@ -0,0 +1,102 @@
+package com.LlamaTalks.v1.ingestion;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+
+// Collects chunks from many files and writes them with one addAll per batch, which
+// PgVectorEmbeddingStore sends as a single JDBC batch instead of one INSERT per chunk.
+// A file is never split across batches, so its callback fires once all its chunks are stored.
+public class BatchingEmbeddingWriter {
+    private final EmbeddingStore<TextSegment> embeddingStore;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final Object lock = new Object();
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong batchesWritten = new AtomicLong();
+
+    private Batch pending = new Batch();
+
+    private static class Batch {
+        final List<Embedding> embeddings = new ArrayList<>();
+        final List<TextSegment> segments = new ArrayList<>();
+        final List<Runnable> onStored = new ArrayList<>();
+        long firstAddedAt;
+
+        boolean isEmpty(){
+            return this.segments.isEmpty();
+        }
+    }
+
+    public BatchingEmbeddingWriter(EmbeddingStore<TextSegment> embeddingStore, int batchSize, Duration flushInterval){
+        this.embeddingStore = embeddingStore;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalNanos = flushInterval.toNanos();
+    }
+
+    public void add(List<Embedding> embeddings, List<TextSegment> segments, Runnable onStored){
+        Batch full = null;
+        synchronized (this.lock) {
+            if (this.pending.isEmpty()) {
+                this.pending.firstAddedAt = System.nanoTime();
+            }
+            this.pending.embeddings.addAll(embeddings);
+            this.pending.segments.addAll(segments);
+            this.pending.onStored.add(onStored);
+            if (this.pending.segments.size() >= this.batchSize) {
+                full = swap();
+            }
+        }
+        if (full != null) {
+            write(full);
+        }
+    }
+
+    public void flushIfDue(){
+        Batch due = null;
+        synchronized (this.lock) {
+            if (!this.pending.isEmpty() && System.nanoTime() - this.pending.firstAddedAt >= this.flushIntervalNanos) {
+                due = swap();
+            }
+        }
+        if (due != null) {
+            write(due);
+        }
+    }
+
+    public void flush(){
+        Batch remaining;
+        synchronized (this.lock) {
+            remaining = swap();
+        }
+        if (!remaining.isEmpty()) {
+            write(remaining);
+        }
+    }
+
+    public long rowsWritten(){
+        return this.rowsWritten.get();
+    }
+
+    public long batchesWritten(){
+        return this.batchesWritten.get();
+    }
+
+    private Batch swap(){
+        Batch current = this.pending;
+        this.pending = new Batch();
+        return current;
+    }
+
+    private void write(Batch batch){
+        this.embeddingStore.addAll(batch.embeddings, batch.segments);
+        this.rowsWritten.addAndGet(batch.segments.size());
+        this.batchesWritten.incrementAndGet();
+        batch.onStored.forEach(Runnable::run);
+    }
+}
@@ -0,0 +1,5 @@
+package com.LlamaTalks.v1.ingestion;
+
+// Published whenever the stored chunks of a file are deleted, before they are replaced or
+// because the file is gone. Anything derived from those chunks is stale from here on.
+public record ChunksRemovedEvent(String filePath, String fileName) {}
@@ -0,0 +1,23 @@
+package com.LlamaTalks.v1.ingestion;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+
+// Unit of work handed from one pipeline stage to the next. Every stage drops the
+// references it no longer needs, so a file's text is only held while it is in flight.
+class FileWork {
+    static final FileWork END = new FileWork(null);
+
+    final Path path;
+    Document document;
+    List<TextSegment> segments;
+    List<Embedding> embeddings;
+
+    FileWork(Path path){
+        this.path = path;
+    }
+}
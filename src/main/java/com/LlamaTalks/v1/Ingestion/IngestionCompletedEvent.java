@@ -0,0 +1,5 @@
+package com.LlamaTalks.v1.ingestion;
+
+// Published when an ingestion job has walked its whole directory. chunksStored is what it
+// added to the embeddings table, which is what index maintenance cares about.
+public record IngestionCompletedEvent(String batchId, long chunksStored) {}
@@ -0,0 +1,158 @@
+package com.LlamaTalks.v1.ingestion;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.LlamaTalks.v1.records.IngestionJobStatus;
+
+// Live counters of one ingestDirectory call. Written by the pipeline threads, read by
+// GET /ingestion/jobs/{id} through snapshot(), so everything here is atomic or volatile.
+public class IngestionJob {
+    public enum Status { QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED }
+
+    private final String id;
+    private final String directory;
+    private final Instant createdAt = Instant.now();
+    private final CompletableFuture<String> completion = new CompletableFuture<>();
+
+    private final AtomicInteger filesTotal = new AtomicInteger(-1);
+    private final AtomicInteger filesScanned = new AtomicInteger();
+    private final AtomicInteger filesUnchanged = new AtomicInteger();
+    private final AtomicInteger filesSkipped = new AtomicInteger();
+    private final AtomicInteger filesFailed = new AtomicInteger();
+    private final AtomicInteger filesStored = new AtomicInteger();
+    private final AtomicLong chunksEmbedded = new AtomicLong();
+    private final AtomicLong chunksStored = new AtomicLong();
+    private final Map<String, LongAdder> stageNanos = new ConcurrentHashMap<>();
+
+    private volatile Status status = Status.QUEUED;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String error;
+    private volatile boolean cancelRequested;
+
+    public IngestionJob(String id, String directory){
+        this.id = id;
+        this.directory = directory;
+    }
+
+    public String id(){
+        return this.id;
+    }
+
+    public CompletableFuture<String> completion(){
+        return this.completion;
+    }
+
+    public boolean isCancelled(){
+        return this.cancelRequested;
+    }
+
+    public boolean isFinished(){
+        return this.finishedAt != null;
+    }
+
+    public Instant finishedAt(){
+        return this.finishedAt;
+    }
+
+    public void cancel(){
+        this.cancelRequested = true;
+    }
+
+    public void setFilesTotal(int total){
+        this.filesTotal.set(total);
+    }
+
+    public void fileScanned(){
+        this.filesScanned.incrementAndGet();
+    }
+
+    public void fileUnchanged(){
+        this.filesUnchanged.incrementAndGet();
+    }
+
+    public void fileSkipped(){
+        this.filesSkipped.incrementAndGet();
+    }
+
+    public void fileFailed(){
+        this.filesFailed.incrementAndGet();
+    }
+
+    public void fileStored(int chunks){
+        this.filesStored.incrementAndGet();
+        this.chunksStored.addAndGet(chunks);
+    }
+
+    public void chunksEmbedded(int chunks){
+        this.chunksEmbedded.addAndGet(chunks);
+    }
+
+    public void stageCompleted(String stage, long nanos){
+        this.stageNanos.computeIfAbsent(stage, s -> new LongAdder()).add(nanos);
+    }
+
+    void started(){
+        this.startedAt = Instant.now();
+        this.status = Status.RUNNING;
+    }
+
+    void completed(){
+        this.finishedAt = Instant.now();
+        this.status = Status.COMPLETED;
+        this.completion.complete(this.id);
+    }
+
+    void failed(Throwable cause){
+        this.finishedAt = Instant.now();
+        this.status = this.cancelRequested ? Status.CANCELLED : Status.FAILED;
+        this.error = cause.getMessage();
+        this.completion.completeExceptionally(cause);
+    }
+
+    public IngestionJobStatus snapshot(){
+        Instant start = this.startedAt;
+        Instant end = this.finishedAt != null ? this.finishedAt : Instant.now();
+        double seconds = start == null ? 0 : Duration.between(start, end).toMillis() / 1000.0;
+        double chunksPerSecond = seconds > 0 ? this.chunksEmbedded.get() / seconds : 0;
+
+        // Unchanged files finish in a stat, so the rate is taken over every file that is done
+        int done = this.filesUnchanged.get() + this.filesSkipped.get() + this.filesFailed.get() + this.filesStored.get();
+        Long etaSeconds = null;
+        if (this.finishedAt == null && this.filesTotal.get() >= 0 && done > 0 && seconds > 0) {
+            etaSeconds = Math.round(Math.max(0, this.filesTotal.get() - done) * seconds / done);
+        }
+
+        Map<String, Long> stageMillis = new TreeMap<>();
+        this.stageNanos.forEach((stage, nanos) -> stageMillis.put(stage, nanos.sum() / 1_000_000));
+
+        return new IngestionJobStatus(
+            this.id,
+            this.directory,
+            this.status,
+            this.createdAt,
+            start,
+            this.finishedAt,
+            this.filesTotal.get(),
+            this.filesScanned.get(),
+            this.filesUnchanged.get(),
+            this.filesSkipped.get(),
+            this.filesFailed.get(),
+            this.filesStored.get(),
+            this.chunksEmbedded.get(),
+            this.chunksStored.get(),
+            Math.round(chunksPerSecond * 10) / 10.0,
+            etaSeconds,
+            stageMillis,
+            this.error
+        );
+    }
+}
@@ -0,0 +1,113 @@
+package com.LlamaTalks.v1.ingestion;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.LlamaTalks.v1.configuration.WorkerThreads;
+import com.LlamaTalks.v1.exception.IngestionQueueFull;
+
+import jakarta.annotation.PreDestroy;
+
+// Registry and executor for ingestion jobs. At most maxConcurrent directories are ingested
+// at once, queueCapacity more may wait, anything beyond that is rejected instead of piling
+// up on the common pool. Finished jobs are kept for GET /ingestion/jobs/{id} until there
+// are more than retainFinished of them.
+@Component
+public class IngestionJobs {
+    private final ThreadPoolExecutor executor;
+    private final int retainFinished;
+    private final Map<String, IngestionJob> jobs = new ConcurrentHashMap<>();
+    private final Logger logger = LoggerFactory.getLogger(IngestionJobs.class);
+
+    public IngestionJobs(@Value("${ingestion.jobs.max-concurrent}") int maxConcurrent,
+                        @Value("${ingestion.jobs.queue-capacity}") int queueCapacity,
+                        @Value("${ingestion.jobs.retain-finished}") int retainFinished,
+                        @Value("${spring.threads.virtual.enabled}") boolean virtualThreads){
+        int threads = Math.max(1, maxConcurrent);
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+            WorkerThreads.builder(virtualThreads).name("ingestion-job-", 0).factory());
+        this.retainFinished = Math.max(0, retainFinished);
+    }
+
+    public IngestionJob submit(String directory, Consumer<IngestionJob> task){
+        IngestionJob job = new IngestionJob(UUID.randomUUID().toString(), directory);
+        evictFinished();
+        this.jobs.put(job.id(), job);
+        try {
+            this.executor.execute(() -> execute(job, task));
+        } catch (RejectedExecutionException e) {
+            this.jobs.remove(job.id());
+            throw new IngestionQueueFull("Too many ingestion jobs queued, try again later");
+        }
+        return job;
+    }
+
+    public Optional<IngestionJob> find(String id){
+        return Optional.ofNullable(this.jobs.get(id));
+    }
+
+    @PreDestroy
+    public void shutdown(){
+        this.jobs.values().forEach(IngestionJob::cancel);
+        this.executor.shutdown();
+        try {
+            this.executor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    ////////////////////////////////////
+    //         Helper methods         //
+    ////////////////////////////////////
+
+    private void execute(IngestionJob job, Consumer<IngestionJob> task){
+        job.started();
+        try {
+            if (job.isCancelled()) {
+                throw new CancellationException("Ingestion cancelled");
+            }
+            task.accept(job);
+            job.completed();
+        } catch (RuntimeException e) {
+            if (job.isCancelled()) {
+                this.logger.info("Ingestion job {} cancelled", job.id());
+            } else {
+                this.logger.error("Ingestion job {} failed", job.id(), e);
+            }
+            job.failed(e);
+        } catch (Error e) {
+            // Still ends the job, or it would report RUNNING for good
+            this.logger.error("Ingestion job {} failed", job.id(), e);
+            job.failed(e);
+            throw e;
+        }
+    }
+
+    private void evictFinished(){
+        long finished = this.jobs.values().stream().filter(IngestionJob::isFinished).count();
+        Iterator<IngestionJob> oldest = this.jobs.values().stream()
+            .filter(IngestionJob::isFinished)
+            .sorted(Comparator.comparing(IngestionJob::finishedAt))
+            .iterator();
+        while (finished-- > this.retainFinished && oldest.hasNext()) {
+            this.jobs.remove(oldest.next().id());
+        }
+    }
+}
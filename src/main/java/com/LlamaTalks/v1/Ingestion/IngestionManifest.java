@@ -0,0 +1,148 @@
+package com.LlamaTalks.v1.ingestion;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import com.LlamaTalks.v1.models.IngestedFile;
+import com.LlamaTalks.v1.repository.EmbeddingRepository;
+import com.LlamaTalks.v1.repository.IngestedFileRepository;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.logical.And;
+
+// One row per ingested file, keyed by absolute path. Unchanged files are recognised from
+// size + mtime alone; the content hash is only computed when those differ, so a touched
+// but identical file is not re-embedded either.
+@Component
+public class IngestionManifest {
+    private final IngestedFileRepository ingestedFileRepository;
+    private final EmbeddingRepository embeddingRepository;
+    private final EmbeddingStore<TextSegment> embeddingStore;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Logger logger = LoggerFactory.getLogger(IngestionManifest.class);
+
+    public IngestionManifest(IngestedFileRepository ingestedFileRepository,
+                            EmbeddingRepository embeddingRepository,
+                            EmbeddingStore<TextSegment> embeddingStore,
+                            ApplicationEventPublisher eventPublisher){
+        this.ingestedFileRepository = ingestedFileRepository;
+        this.embeddingRepository = embeddingRepository;
+        this.embeddingStore = embeddingStore;
+        this.eventPublisher = eventPublisher;
+    }
+
+    public static String key(Path file){
+        return file.toAbsolutePath().normalize().toString();
+    }
+
+    public Map<String, IngestedFile> entriesUnder(Path root){
+        String prefix = key(root);
+        if (!prefix.endsWith(root.getFileSystem().getSeparator())) {
+            prefix += root.getFileSystem().getSeparator();
+        }
+        return this.ingestedFileRepository.findByPathStartingWith(prefix).stream()
+                    .collect(Collectors.toMap(IngestedFile::getPath, Function.identity()));
+    }
+
+    // Returns the entry to save once the file is stored, or null when it can be skipped
+    public IngestedFile checkForChanges(Path file, IngestedFile existing) throws IOException{
+        return checkForChanges(file, Files.readAttributes(file, BasicFileAttributes.class), existing);
+    }
+
+    // For callers that already read the attributes during the walk
+    public IngestedFile checkForChanges(Path file, BasicFileAttributes attributes, IngestedFile existing) throws IOException{
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+
+        if (existing != null && existing.getSize() == size && existing.getLastModified() == lastModified) {
+            return null;
+        }
+
+        String hash = hash(file);
+        if (existing != null && hash.equals(existing.getContentHash())) {
+            this.logger.info("File touched but content unchanged: {}", file);
+            existing.setSize(size);
+            existing.setLastModified(lastModified);
+            this.ingestedFileRepository.save(existing);
+            return null;
+        }
+
+        IngestedFile entry = existing != null ? existing : new IngestedFile();
+        entry.setPath(key(file));
+        entry.setFileName(file.getFileName().toString());
+        entry.setSize(size);
+        entry.setLastModified(lastModified);
+        entry.setContentHash(hash);
+        return entry;
+    }
+
+    // Called once the new chunks of the file are stored: drops the ones earlier batches left
+    // under the same filePath. A file that fails, is skipped or cancelled halfway keeps its old
+    // chunks until a later run stores it.
+    public void replaceChunks(IngestedFile entry, String batchId){
+        this.logger.info("Replacing chunks of changed file: {}", entry.getPath());
+        this.embeddingStore.removeAll(new And(metadataKey("filePath").isEqualTo(entry.getPath()),
+                                                metadataKey("batchId").isNotEqualTo(batchId)));
+        if (entry.getId() == null) {
+            // Chunks written before the manifest existed only carry the file name and the
+            // directory it was loaded from, files of the same name elsewhere are left alone
+            this.embeddingRepository.deleteLegacyChunks(entry.getFileName(), legacyDirectory(entry.getPath()));
+        }
+        this.eventPublisher.publishEvent(new ChunksRemovedEvent(entry.getPath(), entry.getFileName()));
+    }
+
+    // What FileSystemDocumentLoader put into absolute_directory_path for this file
+    public static String legacyDirectory(String filePath){
+        Path parent = Path.of(filePath).getParent();
+        return parent != null ? parent.toString() : "";
+    }
+
+    public void markStored(IngestedFile entry){
+        this.ingestedFileRepository.save(entry);
+    }
+
+    public void removeDeleted(Collection<IngestedFile> deleted){
+        for (IngestedFile entry : deleted) {
+            this.logger.info("Removing chunks of deleted file: {}", entry.getPath());
+            this.embeddingStore.removeAll(metadataKey("filePath").isEqualTo(entry.getPath()));
+            this.ingestedFileRepository.delete(entry);
+            this.eventPublisher.publishEvent(new ChunksRemovedEvent(entry.getPath(), entry.getFileName()));
+        }
+    }
+
+    private static String hash(Path file) throws IOException{
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
@@ -0,0 +1,335 @@
+package com.LlamaTalks.v1.ingestion;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import com.LlamaTalks.v1.configuration.WorkerThreads;
+
+import dev.langchain4j.data.document.DocumentParser;
+import dev.langchain4j.data.document.DocumentSplitter;
+import dev.langchain4j.data.document.loader.FileSystemDocumentLoader;
+import dev.langchain4j.data.document.parser.apache.tika.ApacheTikaDocumentParser;
+import dev.langchain4j.data.document.splitter.DocumentSplitters;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+
+// parse -> split -> embed -> store, each stage with its own workers and a bounded queue
+// in front of it. A full queue blocks the stage feeding it, so Tika keeps parsing while
+// Ollama is busy embedding, but never runs more than queueCapacity files ahead. Files are
+// pulled from the iterator one at a time, so heap use follows the number of files in
+// flight and maxFileSize, never the size of the directory.
+@Component
+public class IngestionPipeline {
+    private static final long POLL_MILLIS = 200;
+
+    private final EmbeddingModel embeddingModel;
+    private final EmbeddingStore<TextSegment> embeddingStore;
+    private final DocumentSplitter splitter;
+    private final DocumentParser parser;
+    private final int parseThreads;
+    private final int splitThreads;
+    private final int embedThreads;
+    private final int storeThreads;
+    private final int queueCapacity;
+    private final int storeBatchSize;
+    private final Duration storeFlushInterval;
+    private final long maxFileSizeBytes;
+    private final boolean virtualThreads;
+    private final Logger logger = LoggerFactory.getLogger(IngestionPipeline.class);
+
+    public IngestionPipeline(EmbeddingModel embeddingModel,
+                            EmbeddingStore<TextSegment> embeddingStore,
+                            @Value("${ingestion.pipeline.parse-threads}") int parseThreads,
+                            @Value("${ingestion.pipeline.split-threads}") int splitThreads,
+                            @Value("${ingestion.pipeline.embed-threads}") int embedThreads,
+                            @Value("${ingestion.pipeline.store-threads}") int storeThreads,
+                            @Value("${ingestion.pipeline.queue-capacity}") int queueCapacity,
+                            @Value("${ingestion.store.batch-size}") int storeBatchSize,
+                            @Value("${ingestion.store.flush-interval}") Duration storeFlushInterval,
+                            @Value("${ingestion.max-file-size}") DataSize maxFileSize,
+                            @Value("${spring.threads.virtual.enabled}") boolean virtualThreads){
+        this.embeddingModel = embeddingModel;
+        this.embeddingStore = embeddingStore;
+        this.splitter = DocumentSplitters.recursive(2000, 50);
+        this.parser = new ApacheTikaDocumentParser();
+        this.parseThreads = Math.max(1, parseThreads);
+        this.splitThreads = Math.max(1, splitThreads);
+        this.embedThreads = Math.max(1, embedThreads);
+        this.storeThreads = Math.max(1, storeThreads);
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.storeBatchSize = storeBatchSize;
+        this.storeFlushInterval = storeFlushInterval;
+        this.maxFileSizeBytes = maxFileSize.toBytes();
+        this.virtualThreads = virtualThreads;
+    }
+
+    public long maxFileSizeBytes(){
+        return this.maxFileSizeBytes;
+    }
+
+    public PipelineResult run(Iterator<Path> files, String batchId){
+        return run(files, batchId, PipelineListener.NONE);
+    }
+
+    public PipelineResult run(Iterator<Path> files, String batchId, PipelineListener listener){
+        Run run = new Run(new BatchingEmbeddingWriter(this.embeddingStore, this.storeBatchSize, this.storeFlushInterval), listener);
+
+        BlockingQueue<FileWork> toParse = new ArrayBlockingQueue<>(this.queueCapacity);
+        BlockingQueue<FileWork> toSplit = new ArrayBlockingQueue<>(this.queueCapacity);
+        BlockingQueue<FileWork> toEmbed = new ArrayBlockingQueue<>(this.queueCapacity);
+        BlockingQueue<FileWork> toStore = new ArrayBlockingQueue<>(this.queueCapacity);
+
+        List<Thread> workers = new ArrayList<>();
+        workers.addAll(startStage("parse", this.parseThreads, toParse, toSplit, this.splitThreads, false, run, this::parse));
+        workers.addAll(startStage("split", this.splitThreads, toSplit, toEmbed, this.embedThreads, false, run, (work, r) -> split(work, batchId, r)));
+        workers.addAll(startStage("embed", this.embedThreads, toEmbed, toStore, this.storeThreads, false, run, this::embed));
+        workers.addAll(startStage("store", this.storeThreads, toStore, null, 0, true, run, this::store));
+
+        // Slow trickles of chunks still reach the database within one flush interval
+        ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("ingest-flush").daemon().factory());
+        long intervalMillis = Math.max(1, this.storeFlushInterval.toMillis());
+        flusher.scheduleWithFixedDelay(() -> {
+            try {
+                run.writer.flushIfDue();
+            } catch (RuntimeException e) {
+                this.logger.error("Ingestion pipeline aborted", e);
+                run.abort(e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+
+        try {
+            while (files.hasNext() && !run.aborted()) {
+                put(toParse, new FileWork(files.next()), run);
+            }
+            for (int i = 0; i < this.parseThreads; i++) {
+                put(toParse, FileWork.END, run);
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            flusher.shutdown();
+            flusher.awaitTermination(1, TimeUnit.MINUTES);
+            if (!run.aborted()) {
+                run.writer.flush();
+            }
+        } catch (InterruptedException e) {
+            run.abort(e);
+            workers.forEach(Thread::interrupt);
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            run.abort(e);
+        } finally {
+            flusher.shutdownNow();
+        }
+
+        if (run.failure.get() instanceof CancellationException cancelled) {
+            throw cancelled;
+        }
+        if (run.failure.get() != null) {
+            throw new IllegalStateException("Ingestion pipeline failed", run.failure.get());
+        }
+        this.logger.info("Stored {} chunks in {} batches", run.writer.rowsWritten(), run.writer.batchesWritten());
+        return new PipelineResult(run.filesStored.get(), run.filesFailed.get(), run.filesSkipped.get(), run.chunksStored.get());
+    }
+
+    ////////////////////////////////////
+    //            Stages              //
+    ////////////////////////////////////
+
+    private FileWork parse(FileWork work, Run run){
+        // Tika holds the whole extracted text in memory, so very large files are left out. Callers
+        // that walk a directory already skip them before hashing, this covers files that grew since.
+        long size;
+        try {
+            size = Files.size(work.path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read file: " + work.path, e);
+        }
+        if (size > this.maxFileSizeBytes) {
+            this.logger.warn("Skipping {}: {} bytes is over the {} byte limit", work.path, size, this.maxFileSizeBytes);
+            run.filesSkipped.incrementAndGet();
+            run.listener.onSkipped(work.path);
+            return null;
+        }
+
+        this.logger.info("Ingesting document: {}", work.path.getFileName());
+        work.document = FileSystemDocumentLoader.loadDocument(work.path, this.parser);
+        return work;
+    }
+
+    private FileWork split(FileWork work, String batchId, Run run){
+        String fileName = work.document.metadata().getString("file_name");
+        String filePath = work.path.toAbsolutePath().normalize().toString();
+        long ingestedAt = System.currentTimeMillis();
+        List<TextSegment> segments = this.splitter.split(work.document);
+        for (int i = 0; i < segments.size(); i++) {
+            segments.get(i).metadata()
+                .put("batchId", batchId)
+                .put("fileName", fileName)
+                .put("filePath", filePath)
+                .put("chunkIndex", i)
+                .put("ingestedAt", ingestedAt);
+        }
+        work.document = null;
+        work.segments = segments;
+
+        if (segments.isEmpty()) {
+            run.listener.onStored(work.path, 0);
+            return null;
+        }
+        return work;
+    }
+
+    private FileWork embed(FileWork work, Run run){
+        work.embeddings = this.embeddingModel.embedAll(work.segments).content();
+        this.logger.info("Embedded segments: {}", work.embeddings.size());
+        run.listener.onEmbedded(work.path, work.embeddings.size());
+        return work;
+    }
+
+    private FileWork store(FileWork work, Run run){
+        int chunks = work.segments.size();
+        Path path = work.path;
+        run.writer.add(work.embeddings, work.segments, () -> {
+            run.filesStored.incrementAndGet();
+            run.chunksStored.addAndGet(chunks);
+            run.listener.onStored(path, chunks);
+        });
+        work.segments = null;
+        work.embeddings = null;
+        return null;
+    }
+
+    ////////////////////////////////////
+    //         Helper methods         //
+    ////////////////////////////////////
+
+    private List<Thread> startStage(String name, int threads, BlockingQueue<FileWork> input, BlockingQueue<FileWork> output,
+                                    int downstreamThreads, boolean fatal, Run run, StageTask task){
+        AtomicInteger running = new AtomicInteger(threads);
+        List<Thread> started = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            started.add(WorkerThreads.builder(this.virtualThreads).name("ingest-" + name + "-" + i).start(() ->
+                work(name, input, output, downstreamThreads, fatal, run, task, running)));
+        }
+        return started;
+    }
+
+    private void work(String name, BlockingQueue<FileWork> input, BlockingQueue<FileWork> output, int downstreamThreads,
+                        boolean fatal, Run run, StageTask task, AtomicInteger running){
+        try {
+            while (true) {
+                FileWork work = take(input, run);
+                if (work == null || work == FileWork.END || run.aborted()) {
+                    break;
+                }
+
+                FileWork result;
+                long start = System.nanoTime();
+                try {
+                    result = task.apply(work, run);
+                    run.listener.onStageCompleted(name, System.nanoTime() - start);
+                } catch (RuntimeException e) {
+                    if (fatal) {
+                        throw e;
+                    }
+                    this.logger.error("Failed to ingest file: {}", work.path, e);
+                    run.filesFailed.incrementAndGet();
+                    run.listener.onFailed(work.path, e);
+                    continue;
+                }
+
+                if (result != null && output != null) {
+                    put(output, result, run);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            this.logger.error("Ingestion pipeline aborted", e);
+            run.abort(e);
+        } finally {
+            // The last worker of a stage tells every worker of the next stage to finish
+            if (running.decrementAndGet() == 0 && output != null) {
+                try {
+                    for (int i = 0; i < downstreamThreads; i++) {
+                        put(output, FileWork.END, run);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private static void put(BlockingQueue<FileWork> queue, FileWork work, Run run) throws InterruptedException{
+        while (!queue.offer(work, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (run.aborted()) {
+                return;
+            }
+        }
+    }
+
+    private static FileWork take(BlockingQueue<FileWork> queue, Run run) throws InterruptedException{
+        FileWork work;
+        while ((work = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+            if (run.aborted()) {
+                return null;
+            }
+        }
+        return work;
+    }
+
+    @FunctionalInterface
+    private interface StageTask {
+        FileWork apply(FileWork work, Run run);
+    }
+
+    private static class Run {
+        final BatchingEmbeddingWriter writer;
+        final PipelineListener listener;
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final AtomicInteger filesStored = new AtomicInteger();
+        final AtomicInteger filesFailed = new AtomicInteger();
+        final AtomicInteger filesSkipped = new AtomicInteger();
+        final AtomicInteger chunksStored = new AtomicInteger();
+
+        Run(BatchingEmbeddingWriter writer, PipelineListener listener){
+            this.writer = writer;
+            this.listener = listener;
+        }
+
+        boolean aborted(){
+            if (this.failure.get() == null && this.listener.isCancelled()) {
+                abort(new CancellationException("Ingestion cancelled"));
+            }
+            return this.failure.get() != null;
+        }
+
+        void abort(Throwable cause){
+            this.failure.compareAndSet(null, cause);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.LlamaTalks.v1.ingestion;
+
+import java.nio.file.Path;
+
+public interface PipelineListener {
+    PipelineListener NONE = new PipelineListener() {};
+
+    default void onStored(Path file, int chunks) {}
+
+    default void onFailed(Path file, Exception error) {}
+
+    default void onSkipped(Path file) {}
+
+    default void onEmbedded(Path file, int chunks) {}
+
+    default void onStageCompleted(String stage, long nanos) {}
+
+    // Polled between files; the pipeline stops taking new work once this returns true
+    default boolean isCancelled() {
+        return false;
+    }
+}
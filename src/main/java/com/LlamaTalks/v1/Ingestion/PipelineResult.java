@@ -0,0 +1,3 @@
+package com.LlamaTalks.v1.ingestion;
+
+public record PipelineResult(int filesStored, int filesFailed, int filesSkipped, int chunksStored) {}
@@ -11,6 +11,7 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
@@ -19,7 +20,10 @@ import lombok.NoArgsConstructor;
 
 @Data
 @Entity
-@Table(name = "Conversation")
+@Table(name = "Conversation", indexes = {
+    @Index(name = "conversation_conversation_id_idx", columnList = "conversationId"),
+    @Index(name = "conversation_started_at_idx", columnList = "startedAt, id")
+})
 @NoArgsConstructor
 @AllArgsConstructor
 public class Conversation {
@@ -39,4 +43,12 @@ public class Conversation {
 
     @Column(name = "startedAt")
     private LocalDateTime startedAt;
+
+    // Rolling summary of every message up to summarizedThrough (a message id), written by
+    // ConversationCompactor. Prompts use it in place of the turns it covers.
+    @Column(name = "summary", columnDefinition = "TEXT")
+    private String summary;
+
+    @Column(name = "summarizedThrough")
+    private Long summarizedThrough;
 }
@@ -0,0 +1,49 @@
+package com.LlamaTalks.v1.models;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Entity
+@Table(name = "ingested_files", indexes = @Index(name = "ingested_files_ingested_at_idx", columnList = "ingestedAt"))
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestedFile {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "path", length = 2048, unique = true, nullable = false)
+    private String path;
+
+    @Column(name = "fileName", length = 512)
+    private String fileName;
+
+    @Column(name = "size")
+    private long size;
+
+    @Column(name = "lastModified")
+    private long lastModified;
+
+    @Column(name = "contentHash", length = 64)
+    private String contentHash;
+
+    @Column(name = "chunkCount")
+    private int chunkCount;
+
+    @Column(name = "batchId", length = 64)
+    private String batchId;
+
+    @Column(name = "ingestedAt")
+    private LocalDateTime ingestedAt;
+}
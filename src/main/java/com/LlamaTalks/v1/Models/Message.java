@@ -11,6 +11,7 @@ import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
@@ -20,7 +21,7 @@ import lombok.NoArgsConstructor;
 
 @Data
 @Entity
-@Table(name = "message")
+@Table(name = "message", indexes = @Index(name = "message_conversation_id_idx", columnList = "conversationId, id"))
 @NoArgsConstructor
 @AllArgsConstructor
 public class Message {
@@ -0,0 +1,156 @@
+package com.LlamaTalks.v1.rag;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Bounded LRU + TTL cache of query text -> embedding, meant for the retrieval path only.
+// Ingestion keeps talking to the raw model, documents are embedded once anyway.
+public class CachingEmbeddingModel implements EmbeddingModel {
+    private final EmbeddingModel delegate;
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+    private final LinkedHashMap<String, CachedEmbedding> cache;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    private record CachedEmbedding(Embedding embedding, long expiresAt) {}
+
+    public CachingEmbeddingModel(EmbeddingModel delegate, int maxSize, Duration ttl, MeterRegistry meterRegistry){
+        this(delegate, maxSize, ttl, meterRegistry, System::nanoTime);
+    }
+
+    public CachingEmbeddingModel(EmbeddingModel delegate, int maxSize, Duration ttl, MeterRegistry meterRegistry, LongSupplier nanoClock){
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        this.delegate = delegate;
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.nanoClock = nanoClock;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true);
+
+        this.hits = Counter.builder("rag.query.embedding.cache")
+                            .tag("result", "hit")
+                            .description("Query embeddings served from cache")
+                            .register(meterRegistry);
+        this.misses = Counter.builder("rag.query.embedding.cache")
+                            .tag("result", "miss")
+                            .description("Query embeddings requested from the embedding model")
+                            .register(meterRegistry);
+        this.evictions = Counter.builder("rag.query.embedding.cache.evictions")
+                            .description("Query embeddings evicted by size or TTL")
+                            .register(meterRegistry);
+        meterRegistry.gauge("rag.query.embedding.cache.size", this, CachingEmbeddingModel::size);
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> segments) {
+        Embedding[] result = new Embedding[segments.size()];
+        List<TextSegment> missing = new ArrayList<>();
+        List<Integer> missingIndexes = new ArrayList<>();
+
+        for (int i = 0; i < segments.size(); i++) {
+            Embedding cached = lookup(key(segments.get(i).text()));
+            if (cached != null) {
+                result[i] = cached;
+            } else {
+                missing.add(segments.get(i));
+                missingIndexes.add(i);
+            }
+        }
+        this.hits.increment(segments.size() - missing.size());
+        this.misses.increment(missing.size());
+
+        if (missing.isEmpty()) {
+            return Response.from(Arrays.asList(result));
+        }
+
+        // The model call stays outside of the lock, only the map access is serialized
+        Response<List<Embedding>> response = this.delegate.embedAll(missing);
+        List<Embedding> embedded = response.content();
+        for (int i = 0; i < missing.size(); i++) {
+            result[missingIndexes.get(i)] = embedded.get(i);
+            store(key(missing.get(i).text()), embedded.get(i));
+        }
+
+        return Response.from(Arrays.asList(result), response.tokenUsage());
+    }
+
+    @Override
+    public int dimension() {
+        return this.delegate.dimension();
+    }
+
+    public int size(){
+        synchronized (this.cache) {
+            return this.cache.size();
+        }
+    }
+
+    public void clear(){
+        synchronized (this.cache) {
+            this.cache.clear();
+        }
+    }
+
+    private Embedding lookup(String key){
+        synchronized (this.cache) {
+            CachedEmbedding cached = this.cache.get(key);
+            if (cached == null) {
+                return null;
+            }
+            if (cached.expiresAt() - this.nanoClock.getAsLong() <= 0) {
+                this.cache.remove(key);
+                this.evictions.increment();
+                return null;
+            }
+            return cached.embedding();
+        }
+    }
+
+    private void store(String key, Embedding embedding){
+        long now = this.nanoClock.getAsLong();
+        synchronized (this.cache) {
+            this.cache.put(key, new CachedEmbedding(embedding, now + this.ttlNanos));
+            if (this.cache.size() > this.maxSize) {
+                evictExpired(now);
+            }
+            Iterator<Map.Entry<String, CachedEmbedding>> eldest = this.cache.entrySet().iterator();
+            while (this.cache.size() > this.maxSize && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+                this.evictions.increment();
+            }
+        }
+    }
+
+    private void evictExpired(long now){
+        Iterator<CachedEmbedding> it = this.cache.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().expiresAt() - now <= 0) {
+                it.remove();
+                this.evictions.increment();
+            }
+        }
+    }
+
+    // Near-repeats that only differ in spacing share one entry
+    private static String key(String text){
+        return text == null ? "" : text.strip().replaceAll("\\s+", " ");
+    }
+}
@@ -0,0 +1,45 @@
+package com.LlamaTalks.v1.rag;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dev.langchain4j.data.document.Metadata;
+
+// Reads the columns of the embeddings table that the stores and retrievers query directly,
+// around PgVectorEmbeddingStore: metadata is jsonb, the vector its pgvector text form.
+final class EmbeddingRows {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {};
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingRows.class);
+
+    private EmbeddingRows(){}
+
+    // Empty for a missing or unreadable column, a chunk is still worth returning without it
+    static Metadata metadata(String json){
+        if (json == null) {
+            return new Metadata();
+        }
+        try {
+            return Metadata.from(OBJECT_MAPPER.readValue(json, METADATA_TYPE));
+        } catch (IOException e) {
+            logger.warn("Unreadable chunk metadata: {}", e.getMessage());
+            return new Metadata();
+        }
+    }
+
+    // "[0.1,0.2,...]" as pgvector prints a vector cast to text
+    static float[] parseVector(String text){
+        String[] values = text.substring(1, text.length() - 1).split(",");
+        float[] vector = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            vector[i] = Float.parseFloat(values[i]);
+        }
+        return vector;
+    }
+}
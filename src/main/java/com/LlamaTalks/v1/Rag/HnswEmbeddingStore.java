@@ -0,0 +1,649 @@
+package com.LlamaTalks.v1.rag;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntPredicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.LlamaTalks.v1.configuration.WorkerThreads;
+import com.LlamaTalks.v1.ingestion.ChunksRemovedEvent;
+import com.LlamaTalks.v1.ingestion.IngestionManifest;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
+import dev.langchain4j.store.embedding.filter.logical.And;
+
+// Answers searches from an in-process HnswIndex instead of a round trip to Postgres.
+// pgvector stays the source of truth: every write goes there first and is then applied to
+// the graph, so the ingestion path needs no changes. Graph and chunk payloads (id, text,
+// metadata) are saved to a snapshot file that is memory-mapped on the next start. When
+// the table no longer matches it (row count or id checksum differ), the graph is rebuilt
+// from pgvector instead. Until the graph is ready, searches go to pgvector. Deleted chunks
+// stay in the graph as tombstones; once they make up compactThreshold of its nodes, the next
+// snapshot first copies the live nodes into a fresh graph, so tombstones are neither kept
+// around for good nor written to disk. Writers wait while that runs, searches do not.
+public class HnswEmbeddingStore implements EmbeddingStore<TextSegment>, AutoCloseable {
+    private static final int MAGIC = 0x4C54484E;
+    private static final int VERSION = 1;
+    private static final int PAYLOAD_BLOCK_BYTES = 64 << 20;
+    private static final String FINGERPRINT_SQL =
+        "SELECT count(*), coalesce(sum(hashtext(embedding_id::text)::bigint), 0) FROM embeddings";
+    private static final String LOAD_SQL = "SELECT embedding_id, embedding::text, text, metadata FROM embeddings";
+
+    private record Fingerprint(long rows, long checksum) {}
+
+    private final EmbeddingStore<TextSegment> delegate;
+    private final JdbcTemplate jdbcTemplate;
+    private final int dimension;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    private final Path snapshotFile;
+    private final Duration snapshotInterval;
+    private final double compactThreshold;
+    // Serializes writers with each other and with snapshots, searches never take it
+    private final ReentrantLock writes = new ReentrantLock();
+    private final ScheduledExecutorService maintenance;
+    private final Logger logger = LoggerFactory.getLogger(HnswEmbeddingStore.class);
+
+    private volatile Graph graph;
+    private boolean dirty;
+
+    public HnswEmbeddingStore(EmbeddingStore<TextSegment> delegate, JdbcTemplate jdbcTemplate, int dimension,
+                                int m, int efConstruction, int efSearch, Path snapshotFile, Duration snapshotInterval,
+                                double compactThreshold, boolean virtualThreads){
+        this.delegate = delegate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.dimension = dimension;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = Math.max(1, efSearch);
+        this.snapshotFile = snapshotFile;
+        this.snapshotInterval = snapshotInterval;
+        this.compactThreshold = Math.max(0, compactThreshold);
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(
+            WorkerThreads.builder(virtualThreads).name("hnsw-store").factory());
+    }
+
+    // Loads or rebuilds the graph in the background, then saves it every snapshotInterval
+    // when something changed
+    public Future<?> start(){
+        Future<?> loaded = this.maintenance.submit(this::load);
+        long interval = Math.max(1, this.snapshotInterval.toMillis());
+        this.maintenance.scheduleWithFixedDelay(this::snapshot, interval, interval, TimeUnit.MILLISECONDS);
+        return loaded;
+    }
+
+    public boolean isReady(){
+        return this.graph != null;
+    }
+
+    // Deleted nodes still in the graph, 0 right after a compaction
+    public int tombstones(){
+        Graph current = this.graph;
+        return current == null ? 0 : current.index.size() - current.index.liveSize();
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        String id = UUID.randomUUID().toString();
+        add(id, embedding);
+        return id;
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        addAll(List.of(id), List.of(embedding), null);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment segment) {
+        String id = UUID.randomUUID().toString();
+        addAll(List.of(id), List.of(embedding), Collections.singletonList(segment));
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        List<String> ids = generateIds(embeddings.size());
+        addAll(ids, embeddings, null);
+        return ids;
+    }
+
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> segments) {
+        this.writes.lock();
+        try {
+            this.delegate.addAll(ids, embeddings, segments);
+            Graph current = this.graph;
+            if (current != null) {
+                for (int i = 0; i < ids.size(); i++) {
+                    current.put(ids.get(i), embeddings.get(i).vector(), segments == null ? null : segments.get(i));
+                }
+            }
+            this.dirty = true;
+        } finally {
+            this.writes.unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        this.writes.lock();
+        try {
+            this.delegate.removeAll(ids);
+            Graph current = this.graph;
+            if (current != null) {
+                ids.forEach(current::remove);
+            }
+            this.dirty = true;
+        } finally {
+            this.writes.unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        this.writes.lock();
+        try {
+            this.delegate.removeAll(filter);
+            Graph current = this.graph;
+            if (current != null) {
+                current.removeMatching(filter);
+            }
+            this.dirty = true;
+        } finally {
+            this.writes.unlock();
+        }
+    }
+
+    @Override
+    public void removeAll() {
+        this.writes.lock();
+        try {
+            this.delegate.removeAll();
+            if (this.graph != null) {
+                this.graph = emptyGraph();
+            }
+            this.dirty = true;
+        } finally {
+            this.writes.unlock();
+        }
+    }
+
+    // minScore is applied after the top maxResults are found, same as pgvector's query
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        Graph current = this.graph;
+        if (current == null) {
+            return this.delegate.search(request);
+        }
+        Filter filter = request.filter();
+        IntPredicate accept = filter == null ? null : node -> filter.test(current.segment(node).metadata());
+        List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>();
+        for (HnswIndex.Neighbor neighbor : current.index.search(request.queryEmbedding().vector(), request.maxResults(), this.efSearch, accept)) {
+            double score = RelevanceScore.fromCosineSimilarity(1 - neighbor.distance());
+            if (score < request.minScore()) {
+                break;
+            }
+            matches.add(current.match(neighbor.node(), score));
+        }
+        return new EmbeddingSearchResult<>(matches);
+    }
+
+    // Chunks written before the ingestion manifest existed are deleted straight from the
+    // table by file name and directory, this keeps the graph in line with that
+    @EventListener
+    public void onChunksRemoved(ChunksRemovedEvent event){
+        this.writes.lock();
+        try {
+            Graph current = this.graph;
+            if (current != null && current.legacyNodes > 0) {
+                String directory = IngestionManifest.legacyDirectory(event.filePath());
+                current.removeMatching(metadata -> metadata instanceof Metadata md
+                    && !md.containsKey("filePath") && event.fileName().equals(md.toMap().get("fileName"))
+                    && directory.equals(md.toMap().get("absolute_directory_path")));
+                this.dirty = true;
+            }
+        } finally {
+            this.writes.unlock();
+        }
+    }
+
+    public void snapshot(){
+        this.writes.lock();
+        try {
+            saveIfDirty();
+        } finally {
+            this.writes.unlock();
+        }
+    }
+
+    // Does not wait for a rebuild still in progress, the next start redoes it
+    @Override
+    public void close(){
+        this.maintenance.shutdownNow();
+        try {
+            if (this.writes.tryLock(10, TimeUnit.SECONDS)) {
+                try {
+                    saveIfDirty();
+                } finally {
+                    this.writes.unlock();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    ////////////////////////////////////
+    //         Helper methods         //
+    ////////////////////////////////////
+
+    // Holds the write lock throughout, so the fingerprint describes exactly what the graph holds
+    private void load(){
+        this.writes.lock();
+        try {
+            long start = System.nanoTime();
+            Fingerprint fingerprint = fingerprint();
+            Graph loaded = read(fingerprint);
+            if (loaded == null) {
+                loaded = rebuild(fingerprint);
+                this.graph = loaded;
+                write(loaded, fingerprint);
+            } else {
+                this.graph = loaded;
+            }
+            this.dirty = false;
+            this.logger.info("HNSW store ready in {} ms: {} chunks, {} MB off-heap", (System.nanoTime() - start) / 1_000_000,
+                                loaded.index.liveSize(), loaded.index.offHeapBytes() >> 20);
+        } catch (IOException | RuntimeException e) {
+            this.logger.error("HNSW store not available, searches go to pgvector", e);
+        } finally {
+            this.writes.unlock();
+        }
+    }
+
+    private void saveIfDirty(){
+        compactIfNeeded();
+        Graph current = this.graph;
+        if (current == null || !this.dirty) {
+            return;
+        }
+        try {
+            write(current, fingerprint());
+            this.dirty = false;
+        } catch (IOException | RuntimeException e) {
+            this.logger.warn("Could not write HNSW snapshot {}: {}", this.snapshotFile, e.getMessage());
+        }
+    }
+
+    // Swapped in as a whole, searches keep using the old graph until then
+    private void compactIfNeeded(){
+        Graph current = this.graph;
+        if (current == null) {
+            return;
+        }
+        int nodes = current.index.size();
+        int tombstones = nodes - current.index.liveSize();
+        if (tombstones == 0 || tombstones < nodes * this.compactThreshold) {
+            return;
+        }
+        long start = System.nanoTime();
+        Graph compacted = emptyGraph();
+        current.copyLiveNodesTo(compacted);
+        this.graph = compacted;
+        this.dirty = true;
+        this.logger.info("Compacted HNSW graph in {} ms: dropped {} deleted of {} nodes", (System.nanoTime() - start) / 1_000_000,
+                            tombstones, nodes);
+    }
+
+    private Fingerprint fingerprint(){
+        return this.jdbcTemplate.queryForObject(FINGERPRINT_SQL, (rs, row) -> new Fingerprint(rs.getLong(1), rs.getLong(2)));
+    }
+
+    // Streams the table through a cursor, autocommit off or the driver reads every row up front
+    private Graph rebuild(Fingerprint fingerprint){
+        this.logger.info("Building HNSW graph from {} stored chunks", fingerprint.rows());
+        Graph rebuilt = emptyGraph();
+        if (fingerprint.rows() == 0) {
+            return rebuilt;
+        }
+        this.jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(LOAD_SQL)) {
+                statement.setFetchSize(1000);
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        String text = rs.getString(3);
+                        TextSegment segment = text == null ? null : TextSegment.from(text, EmbeddingRows.metadata(rs.getString(4)));
+                        rebuilt.put(rs.getString(1), EmbeddingRows.parseVector(rs.getString(2)), segment);
+                        if (rebuilt.index.size() % 100_000 == 0) {
+                            this.logger.info("HNSW graph: {} of {} chunks inserted", rebuilt.index.size(), fingerprint.rows());
+                        }
+                    }
+                }
+            } finally {
+                connection.commit();
+                connection.setAutoCommit(autoCommit);
+            }
+            return null;
+        });
+        return rebuilt;
+    }
+
+    // [magic][version][dimension][rows][checksum] index, payload offsets, payloads
+    private void write(Graph current, Fingerprint fingerprint) throws IOException{
+        long start = System.nanoTime();
+        Path directory = this.snapshotFile.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        Path temporary = this.snapshotFile.resolveSibling(this.snapshotFile.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(28).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(MAGIC).putInt(VERSION).putInt(this.dimension)
+                .putLong(fingerprint.rows()).putLong(fingerprint.checksum());
+            OffHeapBlocks.writeFully(channel, header.flip());
+            current.index.writeTo(channel);
+
+            int nodes = current.index.size();
+            ByteBuffer offsets = ByteBuffer.allocate(4 + 8 * nodes).order(ByteOrder.LITTLE_ENDIAN).putInt(nodes);
+            for (int node = 0; node < nodes; node++) {
+                offsets.putLong(current.payloadOffsets[node]);
+            }
+            OffHeapBlocks.writeFully(channel, offsets.flip());
+            current.payloads.writeTo(channel);
+            channel.force(true);
+        }
+        // Open mappings of the old file stay valid, Linux keeps the replaced inode alive
+        Files.move(temporary, this.snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        this.logger.info("Wrote HNSW snapshot {} ({} MB) in {} ms", this.snapshotFile, Files.size(this.snapshotFile) >> 20,
+                            (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // Null when there is no usable snapshot for the table as it is now
+    private Graph read(Fingerprint fingerprint){
+        if (!Files.exists(this.snapshotFile)) {
+            return null;
+        }
+        // PRIVATE mappings need a channel opened for writing, nothing is ever written back
+        try (FileChannel channel = FileChannel.open(this.snapshotFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = OffHeapBlocks.readFully(channel, 28);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION || header.getInt() != this.dimension) {
+                this.logger.info("HNSW snapshot {} has another format or dimension, rebuilding", this.snapshotFile);
+                return null;
+            }
+            Fingerprint saved = new Fingerprint(header.getLong(), header.getLong());
+            if (!saved.equals(fingerprint)) {
+                this.logger.info("HNSW snapshot {} is stale ({} rows saved, {} stored), rebuilding",
+                                    this.snapshotFile, saved.rows(), fingerprint.rows());
+                return null;
+            }
+
+            HnswIndex index = HnswIndex.readFrom(channel);
+            int nodes = OffHeapBlocks.readFully(channel, 4).getInt();
+            ByteBuffer offsets = OffHeapBlocks.readFully(channel, 8 * nodes);
+            long[] payloadOffsets = new long[Math.max(16, nodes)];
+            for (int node = 0; node < nodes; node++) {
+                payloadOffsets[node] = offsets.getLong();
+            }
+            Graph loaded = new Graph(index, OffHeapBlocks.readFrom(channel, FileChannel.MapMode.READ_ONLY), payloadOffsets);
+            loaded.reindex();
+            return loaded;
+        } catch (IOException | RuntimeException e) {
+            this.logger.warn("Could not read HNSW snapshot {}, rebuilding: {}", this.snapshotFile, e.getMessage());
+            return null;
+        }
+    }
+
+    private Graph emptyGraph(){
+        return new Graph(new HnswIndex(this.dimension, this.m, this.efConstruction),
+                        new OffHeapBlocks(PAYLOAD_BLOCK_BYTES), new long[1024]);
+    }
+
+    // The graph plus the payload every node needs to become an EmbeddingMatch, replaced as a
+    // whole by a rebuild. Written under the store's write lock only; searches read payloads
+    // of nodes the index already returned, which the index lock has published.
+    private static final class Graph {
+        final HnswIndex index;
+        final OffHeapBlocks payloads;
+        long[] payloadOffsets;
+        final Map<String, Integer> nodesById = new HashMap<>();
+        // Removal by file is the common delete, this keeps it off a scan over every payload
+        final Map<String, Set<Integer>> nodesByFilePath = new HashMap<>();
+        int legacyNodes;
+
+        Graph(HnswIndex index, OffHeapBlocks payloads, long[] payloadOffsets){
+            this.index = index;
+            this.payloads = payloads;
+            this.payloadOffsets = payloadOffsets;
+        }
+
+        // Same id again replaces the chunk, as pgvector's upsert does
+        void put(String id, float[] vector, TextSegment segment){
+            remove(id);
+            byte[] payload = encode(id, segment);
+            long offset = this.payloads.allocate(4 + payload.length);
+            ByteBuffer block = this.payloads.block(offset);
+            block.putInt(this.payloads.position(offset), payload.length);
+            block.put(this.payloads.position(offset) + 4, payload);
+
+            int node = this.index.size();
+            if (node == this.payloadOffsets.length) {
+                this.payloadOffsets = Arrays.copyOf(this.payloadOffsets, node * 2);
+            }
+            this.payloadOffsets[node] = offset;
+            this.index.add(vector);
+            track(id, node, segment);
+        }
+
+        void remove(String id){
+            Integer node = this.nodesById.remove(id);
+            if (node != null) {
+                untrack(node, segment(node));
+                this.index.delete(node);
+            }
+        }
+
+        void removeMatching(Filter filter){
+            Collection<Integer> nodes;
+            IsEqualTo byPath = filter instanceof And and ? filePathOf(and.left()) : filePathOf(filter);
+            if (byPath != null) {
+                // Only the nodes of that file need the rest of the filter
+                nodes = this.nodesByFilePath.getOrDefault(String.valueOf(byPath.comparisonValue()), Set.of()).stream()
+                    .filter(node -> filter.test(segment(node).metadata()))
+                    .toList();
+            } else {
+                nodes = this.nodesById.values().stream()
+                    .filter(node -> filter.test(segment(node).metadata()))
+                    .toList();
+            }
+            for (int node : nodes) {
+                remove(id(node));
+            }
+        }
+
+        private static IsEqualTo filePathOf(Filter filter){
+            return filter instanceof IsEqualTo equal && "filePath".equals(equal.key()) ? equal : null;
+        }
+
+        void copyLiveNodesTo(Graph target){
+            for (int node = 0; node < this.index.size(); node++) {
+                if (!this.index.isDeleted(node)) {
+                    Payload payload = decode(node);
+                    target.put(payload.id(), this.index.vector(node), payload.segment());
+                }
+            }
+        }
+
+        // Rebuilds the id and file lookups of a loaded snapshot from its payloads
+        void reindex(){
+            for (int node = 0; node < this.index.size(); node++) {
+                if (!this.index.isDeleted(node)) {
+                    track(id(node), node, segment(node));
+                }
+            }
+        }
+
+        EmbeddingMatch<TextSegment> match(int node, double score){
+            Payload payload = decode(node);
+            return new EmbeddingMatch<>(score, payload.id(), Embedding.from(this.index.vector(node)), payload.segment());
+        }
+
+        // Never null, so filters can always look at the metadata
+        TextSegment segment(int node){
+            TextSegment segment = decode(node).segment();
+            return segment != null ? segment : TextSegment.from(" ");
+        }
+
+        String id(int node){
+            return decode(node).id();
+        }
+
+        private void track(String id, int node, TextSegment segment){
+            this.nodesById.put(id, node);
+            Object filePath = segment == null ? null : segment.metadata().toMap().get("filePath");
+            if (filePath != null) {
+                this.nodesByFilePath.computeIfAbsent(filePath.toString(), path -> new HashSet<>()).add(node);
+            } else if (segment != null && segment.metadata().containsKey("fileName")) {
+                this.legacyNodes++;
+            }
+        }
+
+        private void untrack(int node, TextSegment segment){
+            Object filePath = segment.metadata().toMap().get("filePath");
+            if (filePath != null) {
+                Set<Integer> nodes = this.nodesByFilePath.get(filePath.toString());
+                if (nodes != null && nodes.remove(node) && nodes.isEmpty()) {
+                    this.nodesByFilePath.remove(filePath.toString());
+                }
+            } else if (segment.metadata().containsKey("fileName")) {
+                this.legacyNodes--;
+            }
+        }
+
+        private Payload decode(int node){
+            long offset = this.payloadOffsets[node];
+            ByteBuffer block = this.payloads.block(offset);
+            int position = this.payloads.position(offset);
+            byte[] bytes = new byte[block.getInt(position)];
+            block.get(position + 4, bytes);
+            return Payload.decode(bytes);
+        }
+    }
+
+    private record Payload(String id, TextSegment segment) {
+        static Payload decode(byte[] bytes){
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+                String id = readString(in);
+                String text = readString(in);
+                if (text == null) {
+                    return new Payload(id, null);
+                }
+                Metadata metadata = new Metadata();
+                int entries = in.readInt();
+                for (int i = 0; i < entries; i++) {
+                    String key = readString(in);
+                    switch (in.readByte()) {
+                        case 's' -> metadata.put(key, readString(in));
+                        case 'u' -> metadata.put(key, new UUID(in.readLong(), in.readLong()));
+                        case 'i' -> metadata.put(key, in.readInt());
+                        case 'l' -> metadata.put(key, in.readLong());
+                        case 'f' -> metadata.put(key, in.readFloat());
+                        default -> metadata.put(key, in.readDouble());
+                    }
+                }
+                return new Payload(id, TextSegment.from(text, metadata));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private static String readString(DataInputStream in) throws IOException{
+            int length = in.readInt();
+            return length < 0 ? null : new String(in.readNBytes(length), StandardCharsets.UTF_8);
+        }
+    }
+
+    // id, text, then typed metadata entries; text length -1 stands for an embedding without a segment
+    private static byte[] encode(String id, TextSegment segment){
+        try (ByteArrayOutputStream bytes = new ByteArrayOutputStream(); DataOutputStream out = new DataOutputStream(bytes)) {
+            writeString(out, id);
+            if (segment == null) {
+                out.writeInt(-1);
+            } else {
+                writeString(out, segment.text());
+                Map<String, Object> metadata = segment.metadata().toMap();
+                out.writeInt(metadata.size());
+                for (Map.Entry<String, Object> entry : metadata.entrySet()) {
+                    writeString(out, entry.getKey());
+                    switch (entry.getValue()) {
+                        case String value -> { out.writeByte('s'); writeString(out, value); }
+                        case UUID value -> { out.writeByte('u'); out.writeLong(value.getMostSignificantBits()); out.writeLong(value.getLeastSignificantBits()); }
+                        case Integer value -> { out.writeByte('i'); out.writeInt(value); }
+                        case Long value -> { out.writeByte('l'); out.writeLong(value); }
+                        case Float value -> { out.writeByte('f'); out.writeFloat(value); }
+                        case Number value -> { out.writeByte('d'); out.writeDouble(value.doubleValue()); }
+                        default -> { out.writeByte('s'); writeString(out, entry.getValue().toString()); }
+                    }
+                }
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException{
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
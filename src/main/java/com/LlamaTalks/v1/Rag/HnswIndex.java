@@ -0,0 +1,568 @@
+package com.LlamaTalks.v1.rag;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+// Hierarchical navigable small world graph (Malkov & Yashunin) for cosine distance. Vectors
+// are normalized on insert and live off-heap together with the layer 0 adjacency lists, the
+// sparse upper layers stay on the heap. Nodes are never moved: a deleted node keeps routing
+// searches and is only left out of results, a rebuild drops it for good. Searches share a
+// read lock, inserts take the write lock one node at a time.
+public class HnswIndex {
+    // Nodes per off-heap block, 768 dimensions make 48 MB vector blocks
+    private static final int BLOCK_NODES = 1 << 14;
+    private static final int MAGIC = 0x484E5357;
+
+    public record Neighbor(int node, float distance) {}
+
+    private final int dimension;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final OffHeapBlocks vectors;
+    // Per node: neighbour count followed by maxM0 neighbour slots
+    private final OffHeapBlocks level0;
+    // Per node above layer 0: one [count, neighbours...] array per upper layer
+    private final Map<Integer, int[][]> upper;
+    private final BitSet deleted;
+    private final Random random = new Random(42);
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Pooled rather than thread-local, a virtual thread per search would allocate a fresh set every time
+    private final ConcurrentLinkedQueue<Visited> visitedPool = new ConcurrentLinkedQueue<>();
+
+    private int size;
+    private int deletedCount;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    public HnswIndex(int dimension, int m, int efConstruction){
+        this(dimension, Math.max(2, m), efConstruction,
+            new OffHeapBlocks(BLOCK_NODES * dimension * Float.BYTES),
+            new OffHeapBlocks(BLOCK_NODES * (1 + 2 * Math.max(2, m)) * Integer.BYTES),
+            new HashMap<>(), new BitSet());
+    }
+
+    private HnswIndex(int dimension, int m, int efConstruction, OffHeapBlocks vectors, OffHeapBlocks level0,
+                        Map<Integer, int[][]> upper, BitSet deleted){
+        this.dimension = dimension;
+        this.m = m;
+        this.maxM0 = 2 * m;
+        this.efConstruction = Math.max(m, efConstruction);
+        this.levelMultiplier = 1 / Math.log(m);
+        this.vectors = vectors;
+        this.level0 = level0;
+        this.upper = upper;
+        this.deleted = deleted;
+    }
+
+    public int add(float[] vector){
+        if (vector.length != this.dimension) {
+            throw new IllegalArgumentException("Expected " + this.dimension + " dimensions, got " + vector.length);
+        }
+        float[] normalized = normalize(vector);
+        this.lock.writeLock().lock();
+        try {
+            int node = this.size;
+            long vectorOffset = this.vectors.allocate(this.dimension * Float.BYTES);
+            for (int i = 0; i < this.dimension; i++) {
+                this.vectors.putFloat(vectorOffset + (long) i * Float.BYTES, normalized[i]);
+            }
+            this.level0.putInt(this.level0.allocate((1 + this.maxM0) * Integer.BYTES), 0);
+
+            int level = (int) (-Math.log(1 - this.random.nextDouble()) * this.levelMultiplier);
+            if (level > 0) {
+                this.upper.put(node, new int[level][1 + this.m]);
+            }
+            this.size++;
+            connect(node, level, normalized);
+            return node;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public void delete(int node){
+        this.lock.writeLock().lock();
+        try {
+            if (node < this.size && !this.deleted.get(node)) {
+                this.deleted.set(node);
+                this.deletedCount++;
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    // Up to k live nodes closest to the query, nearest first. accept narrows the results
+    // without pruning the walk, so a selective filter explores more of the graph instead
+    // of returning fewer hits.
+    public List<Neighbor> search(float[] query, int k, int ef, IntPredicate accept){
+        float[] normalized = normalize(query);
+        this.lock.readLock().lock();
+        try {
+            if (this.entryPoint < 0 || k <= 0) {
+                return List.of();
+            }
+            int entry = this.entryPoint;
+            float entryDistance = distance(normalized, entry);
+            for (int layer = this.maxLevel; layer > 0; layer--) {
+                long closest = greedy(normalized, entry, entryDistance, layer);
+                entry = node(closest);
+                entryDistance = distance(closest);
+            }
+
+            IntPredicate live = node -> !this.deleted.get(node) && (accept == null || accept.test(node));
+            long[] found = searchLayer(normalized, entry, entryDistance, Math.max(ef, k), 0, live);
+            List<Neighbor> neighbors = new ArrayList<>(Math.min(k, found.length));
+            for (int i = 0; i < found.length && i < k; i++) {
+                neighbors.add(new Neighbor(node(found[i]), distance(found[i])));
+            }
+            return neighbors;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    public float[] vector(int node){
+        this.lock.readLock().lock();
+        try {
+            float[] vector = new float[this.dimension];
+            long offset = vectorOffset(node);
+            for (int i = 0; i < this.dimension; i++) {
+                vector[i] = this.vectors.getFloat(offset + (long) i * Float.BYTES);
+            }
+            return vector;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    public boolean isDeleted(int node){
+        this.lock.readLock().lock();
+        try {
+            return this.deleted.get(node);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    public int size(){
+        return this.size;
+    }
+
+    public int liveSize(){
+        this.lock.readLock().lock();
+        try {
+            return this.size - this.deletedCount;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    public long offHeapBytes(){
+        this.lock.readLock().lock();
+        try {
+            return this.vectors.bytes() + this.level0.bytes();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    // Writes at the channel's position. Callers must keep add/delete out while this runs.
+    public void writeTo(FileChannel channel) throws IOException{
+        this.lock.readLock().lock();
+        try {
+            int upperInts = this.upper.values().stream().mapToInt(levels -> 2 + levels.length * (1 + this.m)).sum();
+            long[] deletedWords = this.deleted.toLongArray();
+            ByteBuffer meta = ByteBuffer.allocate(36 + 4 * upperInts + 4 + 8 * deletedWords.length).order(ByteOrder.LITTLE_ENDIAN);
+            meta.putInt(MAGIC).putInt(this.dimension).putInt(this.m).putInt(this.efConstruction)
+                .putInt(this.size).putInt(this.deletedCount).putInt(this.entryPoint).putInt(this.maxLevel)
+                .putInt(this.upper.size());
+            for (Map.Entry<Integer, int[][]> entry : this.upper.entrySet()) {
+                meta.putInt(entry.getKey()).putInt(entry.getValue().length);
+                for (int[] layer : entry.getValue()) {
+                    for (int value : layer) {
+                        meta.putInt(value);
+                    }
+                }
+            }
+            meta.putInt(deletedWords.length);
+            for (long word : deletedWords) {
+                meta.putLong(word);
+            }
+            OffHeapBlocks.writeFully(channel, ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(meta.position()).flip());
+            OffHeapBlocks.writeFully(channel, meta.flip());
+            this.vectors.writeTo(channel);
+            this.level0.writeTo(channel);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    // Vectors are mapped read-only, adjacency lists copy-on-write since inserts still link into them
+    public static HnswIndex readFrom(FileChannel channel) throws IOException{
+        int metaBytes = OffHeapBlocks.readFully(channel, 4).getInt();
+        ByteBuffer meta = OffHeapBlocks.readFully(channel, metaBytes);
+        if (meta.getInt() != MAGIC) {
+            throw new IOException("Not an HNSW snapshot");
+        }
+        int dimension = meta.getInt();
+        int m = meta.getInt();
+        int efConstruction = meta.getInt();
+        int size = meta.getInt();
+        int deletedCount = meta.getInt();
+        int entryPoint = meta.getInt();
+        int maxLevel = meta.getInt();
+
+        int upperNodes = meta.getInt();
+        Map<Integer, int[][]> upper = new HashMap<>(upperNodes * 2);
+        for (int i = 0; i < upperNodes; i++) {
+            int node = meta.getInt();
+            int[][] layers = new int[meta.getInt()][1 + m];
+            for (int[] layer : layers) {
+                for (int j = 0; j < layer.length; j++) {
+                    layer[j] = meta.getInt();
+                }
+            }
+            upper.put(node, layers);
+        }
+        long[] deletedWords = new long[meta.getInt()];
+        for (int i = 0; i < deletedWords.length; i++) {
+            deletedWords[i] = meta.getLong();
+        }
+
+        OffHeapBlocks vectors = OffHeapBlocks.readFrom(channel, FileChannel.MapMode.READ_ONLY);
+        OffHeapBlocks level0 = OffHeapBlocks.readFrom(channel, FileChannel.MapMode.PRIVATE);
+        HnswIndex index = new HnswIndex(dimension, m, efConstruction, vectors, level0, upper, BitSet.valueOf(deletedWords));
+        index.size = size;
+        index.deletedCount = deletedCount;
+        index.entryPoint = entryPoint;
+        index.maxLevel = maxLevel;
+        return index;
+    }
+
+    ////////////////////////////////////
+    //         Helper methods         //
+    ////////////////////////////////////
+
+    private void connect(int node, int level, float[] vector){
+        if (this.entryPoint < 0) {
+            this.entryPoint = node;
+            this.maxLevel = level;
+            return;
+        }
+
+        int entry = this.entryPoint;
+        float entryDistance = distance(vector, entry);
+        for (int layer = this.maxLevel; layer > level; layer--) {
+            long closest = greedy(vector, entry, entryDistance, layer);
+            entry = node(closest);
+            entryDistance = distance(closest);
+        }
+        for (int layer = Math.min(level, this.maxLevel); layer >= 0; layer--) {
+            long[] candidates = searchLayer(vector, entry, entryDistance, this.efConstruction, layer, null);
+            int[] selected = selectNeighbors(candidates, layer == 0 ? this.maxM0 : this.m);
+            setNeighbors(node, layer, selected, selected.length);
+            for (int neighbor : selected) {
+                link(neighbor, node, layer);
+            }
+            entry = node(candidates[0]);
+            entryDistance = distance(candidates[0]);
+        }
+        if (level > this.maxLevel) {
+            this.entryPoint = node;
+            this.maxLevel = level;
+        }
+    }
+
+    // Adds node to neighbor's list, re-running the selection over both when it is full
+    private void link(int neighbor, int node, int layer){
+        int max = layer == 0 ? this.maxM0 : this.m;
+        int[] current = neighbors(neighbor, layer);
+        if (current.length < max) {
+            int[] grown = Arrays.copyOf(current, current.length + 1);
+            grown[current.length] = node;
+            setNeighbors(neighbor, layer, grown, grown.length);
+            return;
+        }
+        long[] candidates = new long[current.length + 1];
+        for (int i = 0; i < current.length; i++) {
+            candidates[i] = encode(distance(neighbor, current[i]), current[i]);
+        }
+        candidates[current.length] = encode(distance(neighbor, node), node);
+        Arrays.sort(candidates);
+        int[] selected = selectNeighbors(candidates, max);
+        setNeighbors(neighbor, layer, selected, selected.length);
+    }
+
+    // Keeps a candidate only if it is closer to the base than to every neighbour already
+    // kept, which spreads the links out in different directions (the paper's heuristic)
+    private int[] selectNeighbors(long[] sortedCandidates, int max){
+        int[] selected = new int[Math.min(max, sortedCandidates.length)];
+        int count = 0;
+        for (long candidate : sortedCandidates) {
+            if (count == selected.length) {
+                break;
+            }
+            int node = node(candidate);
+            float distanceToBase = distance(candidate);
+            boolean diverse = true;
+            for (int i = 0; i < count && diverse; i++) {
+                diverse = distance(node, selected[i]) > distanceToBase;
+            }
+            if (diverse) {
+                selected[count++] = node;
+            }
+        }
+        return Arrays.copyOf(selected, count);
+    }
+
+    private long greedy(float[] query, int entry, float entryDistance, int layer){
+        int current = entry;
+        float currentDistance = entryDistance;
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int neighbor : neighbors(current, layer)) {
+                float d = distance(query, neighbor);
+                if (d < currentDistance) {
+                    current = neighbor;
+                    currentDistance = d;
+                    improved = true;
+                }
+            }
+        }
+        return encode(currentDistance, current);
+    }
+
+    // Best-first search of one layer, returns up to ef encoded (distance, node) pairs sorted nearest first
+    private long[] searchLayer(float[] query, int entry, float entryDistance, int ef, int layer, IntPredicate accept){
+        Visited seen = this.visitedPool.poll();
+        if (seen == null) {
+            seen = new Visited();
+        }
+        seen.reset(this.size);
+        try {
+            return searchLayer(query, entry, entryDistance, ef, layer, accept, seen);
+        } finally {
+            this.visitedPool.offer(seen);
+        }
+    }
+
+    private long[] searchLayer(float[] query, int entry, float entryDistance, int ef, int layer, IntPredicate accept, Visited seen){
+        seen.add(entry);
+        LongHeap candidates = new LongHeap(ef * 2);
+        // Max-heap through negation, the root is the worst result kept so far
+        LongHeap results = new LongHeap(ef + 1);
+        candidates.push(encode(entryDistance, entry));
+        if (accept == null || accept.test(entry)) {
+            results.push(-encode(entryDistance, entry));
+        }
+
+        while (!candidates.isEmpty()) {
+            long candidate = candidates.pop();
+            if (results.size() >= ef && distance(candidate) > distance(-results.peek())) {
+                break;
+            }
+            for (int neighbor : neighbors(node(candidate), layer)) {
+                if (!seen.add(neighbor)) {
+                    continue;
+                }
+                float d = distance(query, neighbor);
+                if (results.size() < ef || d < distance(-results.peek())) {
+                    candidates.push(encode(d, neighbor));
+                    if (accept == null || accept.test(neighbor)) {
+                        results.push(-encode(d, neighbor));
+                        if (results.size() > ef) {
+                            results.pop();
+                        }
+                    }
+                }
+            }
+        }
+
+        long[] sorted = new long[results.size()];
+        for (int i = sorted.length - 1; i >= 0; i--) {
+            sorted[i] = -results.pop();
+        }
+        return sorted;
+    }
+
+    private int[] neighbors(int node, int layer){
+        if (layer == 0) {
+            long offset = level0Offset(node);
+            int[] neighbors = new int[this.level0.getInt(offset)];
+            for (int i = 0; i < neighbors.length; i++) {
+                neighbors[i] = this.level0.getInt(offset + (long) (i + 1) * Integer.BYTES);
+            }
+            return neighbors;
+        }
+        int[][] layers = this.upper.get(node);
+        if (layers == null || layers.length < layer) {
+            return new int[0];
+        }
+        int[] list = layers[layer - 1];
+        return Arrays.copyOfRange(list, 1, 1 + list[0]);
+    }
+
+    private void setNeighbors(int node, int layer, int[] neighbors, int count){
+        if (layer == 0) {
+            long offset = level0Offset(node);
+            this.level0.putInt(offset, count);
+            for (int i = 0; i < count; i++) {
+                this.level0.putInt(offset + (long) (i + 1) * Integer.BYTES, neighbors[i]);
+            }
+            return;
+        }
+        int[] list = this.upper.get(node)[layer - 1];
+        list[0] = count;
+        System.arraycopy(neighbors, 0, list, 1, count);
+    }
+
+    private float distance(float[] query, int node){
+        ByteBuffer block = this.vectors.block(vectorOffset(node));
+        int base = this.vectors.position(vectorOffset(node));
+        float dot = 0;
+        for (int i = 0; i < this.dimension; i++) {
+            dot += query[i] * block.getFloat(base + i * Float.BYTES);
+        }
+        return Math.max(0f, 1f - dot);
+    }
+
+    private float distance(int a, int b){
+        ByteBuffer blockA = this.vectors.block(vectorOffset(a));
+        ByteBuffer blockB = this.vectors.block(vectorOffset(b));
+        int baseA = this.vectors.position(vectorOffset(a));
+        int baseB = this.vectors.position(vectorOffset(b));
+        float dot = 0;
+        for (int i = 0; i < this.dimension; i++) {
+            dot += blockA.getFloat(baseA + i * Float.BYTES) * blockB.getFloat(baseB + i * Float.BYTES);
+        }
+        return Math.max(0f, 1f - dot);
+    }
+
+    private long vectorOffset(int node){
+        return (long) node * this.dimension * Float.BYTES;
+    }
+
+    private long level0Offset(int node){
+        return (long) node * (1 + this.maxM0) * Integer.BYTES;
+    }
+
+    // Non-negative float bits sort like the floats, so (distance, node) pairs sort as longs
+    private static long encode(float distance, int node){
+        return ((long) Float.floatToRawIntBits(distance) << 32) | node;
+    }
+
+    private static int node(long encoded){
+        return (int) encoded;
+    }
+
+    private static float distance(long encoded){
+        return Float.intBitsToFloat((int) (encoded >>> 32));
+    }
+
+    private static float[] normalize(float[] vector){
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        float scale = norm > 0 ? (float) (1 / Math.sqrt(norm)) : 0f;
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * scale;
+        }
+        return normalized;
+    }
+
+    // Epoch-stamped visited marks, reset in constant time between searches
+    private static class Visited {
+        private int[] marks = new int[0];
+        private int epoch;
+
+        void reset(int size){
+            if (this.marks.length < size) {
+                this.marks = new int[Math.max(size, this.marks.length * 2)];
+                this.epoch = 0;
+            }
+            if (++this.epoch == Integer.MAX_VALUE) {
+                Arrays.fill(this.marks, 0);
+                this.epoch = 1;
+            }
+        }
+
+        boolean add(int node){
+            if (this.marks[node] == this.epoch) {
+                return false;
+            }
+            this.marks[node] = this.epoch;
+            return true;
+        }
+    }
+
+    // Binary min-heap of primitive longs
+    private static class LongHeap {
+        private long[] values;
+        private int size;
+
+        LongHeap(int capacity){
+            this.values = new long[Math.max(4, capacity)];
+        }
+
+        void push(long value){
+            if (this.size == this.values.length) {
+                this.values = Arrays.copyOf(this.values, this.size * 2);
+            }
+            int i = this.size++;
+            while (i > 0 && this.values[(i - 1) / 2] > value) {
+                this.values[i] = this.values[(i - 1) / 2];
+                i = (i - 1) / 2;
+            }
+            this.values[i] = value;
+        }
+
+        long pop(){
+            long top = this.values[0];
+            long last = this.values[--this.size];
+            int i = 0;
+            while (2 * i + 1 < this.size) {
+                int child = 2 * i + 1;
+                if (child + 1 < this.size && this.values[child + 1] < this.values[child]) {
+                    child++;
+                }
+                if (this.values[child] >= last) {
+                    break;
+                }
+                this.values[i] = this.values[child];
+                i = child;
+            }
+            this.values[i] = last;
+            return top;
+        }
+
+        long peek(){
+            return this.values[0];
+        }
+
+        int size(){
+            return this.size;
+        }
+
+        boolean isEmpty(){
+            return this.size == 0;
+        }
+    }
+}
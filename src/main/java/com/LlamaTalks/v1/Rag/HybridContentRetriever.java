@@ -0,0 +1,201 @@
+package com.LlamaTalks.v1.rag;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.ContentMetadata;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.query.Query;
+import dev.langchain4j.store.embedding.filter.Filter;
+
+// Vector search misses exact identifiers (error codes, class names) that full-text search
+// finds trivially. HYBRID runs both and merges them with reciprocal rank fusion, PREFILTER
+// uses the GIN-indexed tsvector to pick candidates and only ranks those by distance, VECTOR
+// is plain similarity search. Keyword queries OR the question's terms, so one matching
+// identifier is enough, and ts_rank_cd puts chunks with more of them first. Since a single
+// common word is enough to match as well, a chunk only the keyword side found must contain at
+// least minKeywordMatch of the question's terms to be returned; the vector side's hits are
+// already held to minScore. The share ignores how often a term occurs, so one mention of an
+// identifier counts as much as a common word repeated. A query scoped with RetrievalFilters
+// carries its metadata filter into both sides.
+public class HybridContentRetriever implements ContentRetriever {
+    // Standard RRF constant, damps the difference between the top few ranks
+    private static final int RRF_K = 60;
+    // plainto_tsquery normalizes the terms ('english': stop words out, stems), '&' -> '|' makes it an OR
+    private static final String KEYWORD_QUERY = "to_tsquery('simple', replace(plainto_tsquery('english', ?)::text, '&', '|'))";
+    // matched: share of the question's terms (same normalization as KEYWORD_QUERY) in the chunk
+    private static final String LEXICAL_SQL = """
+        SELECT embedding_id, text, metadata,
+               cardinality(ARRAY(SELECT unnest(terms.lexemes) INTERSECT SELECT unnest(tsvector_to_array(text_search))))::float
+                   / greatest(cardinality(terms.lexemes), 1) AS matched
+        FROM embeddings, %s AS query, (SELECT tsvector_to_array(to_tsvector('english', ?)) AS lexemes) AS terms
+        WHERE text_search @@ query%s
+        ORDER BY ts_rank_cd(text_search, query) DESC
+        LIMIT ?
+        """;
+    private static final String PREFILTER_SQL = """
+        SELECT embedding_id, text, metadata, (2 - (embedding <=> ?::vector)) / 2 AS score
+        FROM (
+            SELECT embedding_id, text, metadata, embedding
+            FROM embeddings, %s AS query
+            WHERE text_search @@ query%s
+            ORDER BY ts_rank_cd(text_search, query) DESC
+            LIMIT ?
+        ) candidates
+        ORDER BY embedding <=> ?::vector
+        LIMIT ?
+        """;
+
+    public enum Mode { VECTOR, HYBRID, PREFILTER }
+
+    private final ContentRetriever vectorRetriever;
+    private final EmbeddingModel queryEmbeddingModel;
+    private final JdbcTemplate jdbcTemplate;
+    private final Executor lexicalExecutor;
+    private final Mode mode;
+    private final int maxResults;
+    private final int candidates;
+    private final int prefilterCandidates;
+    private final double minScore;
+    private final double minKeywordMatch;
+    private final Logger logger = LoggerFactory.getLogger(HybridContentRetriever.class);
+
+    // vectorRetriever should return `candidates` results, fusion keeps the best maxResults
+    public HybridContentRetriever(ContentRetriever vectorRetriever, EmbeddingModel queryEmbeddingModel, JdbcTemplate jdbcTemplate,
+                                    Executor lexicalExecutor, Mode mode, int maxResults, int candidates,
+                                    int prefilterCandidates, double minScore, double minKeywordMatch){
+        this.vectorRetriever = vectorRetriever;
+        this.queryEmbeddingModel = queryEmbeddingModel;
+        this.jdbcTemplate = jdbcTemplate;
+        this.lexicalExecutor = lexicalExecutor;
+        this.mode = mode;
+        this.maxResults = Math.max(1, maxResults);
+        this.candidates = Math.max(this.maxResults, candidates);
+        this.prefilterCandidates = Math.max(this.candidates, prefilterCandidates);
+        this.minScore = minScore;
+        this.minKeywordMatch = minKeywordMatch;
+    }
+
+    @Override
+    public List<Content> retrieve(Query query) {
+        return switch (this.mode) {
+            case VECTOR -> top(this.vectorRetriever.retrieve(query));
+            case PREFILTER -> prefiltered(query);
+            case HYBRID -> hybrid(query);
+        };
+    }
+
+    ////////////////////////////////////
+    //         Helper methods         //
+    ////////////////////////////////////
+
+    private List<Content> hybrid(Query query){
+        CompletableFuture<List<Content>> lexical = CompletableFuture
+            .supplyAsync(() -> lexical(query), this.lexicalExecutor)
+            .exceptionally(error -> {
+                this.logger.warn("Keyword search failed, using vector results only: {}", error.getMessage());
+                return List.of();
+            });
+        List<Content> vector = this.vectorRetriever.retrieve(query);
+        return fuse(vector, lexical.join());
+    }
+
+    private List<Content> lexical(Query query){
+        List<Object> params = new ArrayList<>(List.of(query.text(), query.text()));
+        String sql = LEXICAL_SQL.formatted(KEYWORD_QUERY, scope(query, params));
+        params.add(this.candidates);
+        return this.jdbcTemplate.query(sql, (rs, row) -> toContent(rs, rs.getDouble("matched")), params.toArray());
+    }
+
+    // Falls back to a full vector search when no chunk shares a term with the question, or while
+    // the text_search column is still being added
+    private List<Content> prefiltered(Query query){
+        String vector = Arrays.toString(this.queryEmbeddingModel.embed(query.text()).content().vector());
+        List<Object> params = new ArrayList<>(List.of(vector, query.text()));
+        String sql = PREFILTER_SQL.formatted(KEYWORD_QUERY, scope(query, params));
+        params.addAll(List.of(this.prefilterCandidates, vector, this.maxResults));
+        List<Content> found;
+        try {
+            found = this.jdbcTemplate.query(sql, (rs, row) -> toContent(rs, rs.getDouble("score")), params.toArray());
+        } catch (DataAccessException e) {
+            this.logger.warn("Keyword prefilter failed, using vector search: {}", e.getMessage());
+            found = List.of();
+        }
+        List<Content> relevant = found.stream()
+            .filter(content -> (double) content.metadata().get(ContentMetadata.SCORE) >= this.minScore)
+            .toList();
+        return relevant.isEmpty() ? top(this.vectorRetriever.retrieve(query)) : relevant;
+    }
+
+    // score(chunk) = sum over both lists of 1 / (RRF_K + rank), ids decide what is the same chunk.
+    // A keyword hit below minKeywordMatch still counts for a chunk the vector side found too.
+    private List<Content> fuse(List<Content> vector, List<Content> lexical){
+        Map<Object, Double> scores = new HashMap<>();
+        Map<Object, Content> byId = new LinkedHashMap<>();
+        for (List<Content> ranking : List.of(vector, lexical)) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                Content content = ranking.get(rank);
+                Object id = id(content);
+                if (ranking == lexical && !byId.containsKey(id) && keywordMatch(content) < this.minKeywordMatch) {
+                    continue;
+                }
+                scores.merge(id, 1.0 / (RRF_K + rank + 1), Double::sum);
+                byId.putIfAbsent(id, content);
+            }
+        }
+
+        List<Object> ids = new ArrayList<>(byId.keySet());
+        ids.sort((a, b) -> Double.compare(scores.get(b), scores.get(a)));
+        List<Content> fused = new ArrayList<>();
+        for (Object id : ids.subList(0, Math.min(this.maxResults, ids.size()))) {
+            fused.add(Content.from(byId.get(id).textSegment(),
+                Map.of(ContentMetadata.EMBEDDING_ID, id, ContentMetadata.SCORE, scores.get(id))));
+        }
+        return fused;
+    }
+
+    private static Object id(Content content){
+        return content.metadata().getOrDefault(ContentMetadata.EMBEDDING_ID, content.textSegment().text());
+    }
+
+    private static double keywordMatch(Content content){
+        Object matched = content.metadata().get(ContentMetadata.SCORE);
+        return matched instanceof Number number ? number.doubleValue() : 0;
+    }
+
+    // Extra WHERE condition for a scoped query, empty otherwise
+    private static String scope(Query query, List<Object> params){
+        Filter filter = RetrievalFilters.filterOf(query);
+        return filter == null ? "" : " AND " + RetrievalFilters.where(filter, params);
+    }
+
+    private List<Content> top(List<Content> contents){
+        return contents.size() > this.maxResults ? contents.subList(0, this.maxResults) : contents;
+    }
+
+    private Content toContent(ResultSet rs, Double score) throws SQLException{
+        TextSegment segment = TextSegment.from(rs.getString("text"), EmbeddingRows.metadata(rs.getString("metadata")));
+        Map<ContentMetadata, Object> contentMetadata = new HashMap<>();
+        contentMetadata.put(ContentMetadata.EMBEDDING_ID, rs.getString("embedding_id"));
+        if (score != null) {
+            contentMetadata.put(ContentMetadata.SCORE, score);
+        }
+        return Content.from(segment, contentMetadata);
+    }
+}
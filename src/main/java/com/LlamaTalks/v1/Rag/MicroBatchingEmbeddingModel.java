@@ -0,0 +1,140 @@
+package com.LlamaTalks.v1.rag;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Merges concurrent query embeddings into one embedAll call. The first caller of a batch
+// waits up to maxWait for others to join, whoever fills the batch to maxBatchSize sends it
+// right away. Every caller then blocks on its own slice of the result, so there is no
+// dispatcher thread and an idle model adds no latency beyond maxWait.
+public class MicroBatchingEmbeddingModel implements EmbeddingModel {
+    private final EmbeddingModel delegate;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final Object lock = new Object();
+    private final DistributionSummary batchSize;
+    private final DistributionSummary batchFill;
+
+    private Batch open;
+
+    private static class Batch {
+        final List<TextSegment> segments = new ArrayList<>();
+        final List<Caller> callers = new ArrayList<>();
+        final CountDownLatch sealed = new CountDownLatch(1);
+    }
+
+    private record Caller(int offset, int count, CompletableFuture<List<Embedding>> result) {}
+
+    public MicroBatchingEmbeddingModel(EmbeddingModel delegate, int maxBatchSize, Duration maxWait, MeterRegistry meterRegistry){
+        this.delegate = delegate;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxWaitNanos = maxWait.toNanos();
+
+        this.batchSize = DistributionSummary.builder("rag.query.embedding.batch.size")
+                            .baseUnit("texts")
+                            .description("Texts sent per embedAll call")
+                            .register(meterRegistry);
+        this.batchFill = DistributionSummary.builder("rag.query.embedding.batch.fill")
+                            .description("Batch size as a fraction of the maximum batch size")
+                            .register(meterRegistry);
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> segments) {
+        if (this.maxBatchSize == 1 || this.maxWaitNanos <= 0 || segments.size() >= this.maxBatchSize) {
+            return send(segments);
+        }
+
+        Batch batch;
+        Caller caller;
+        boolean leader;
+        boolean full = false;
+        synchronized (this.lock) {
+            leader = this.open == null;
+            if (leader) {
+                this.open = new Batch();
+            }
+            batch = this.open;
+            caller = new Caller(batch.segments.size(), segments.size(), new CompletableFuture<>());
+            batch.segments.addAll(segments);
+            batch.callers.add(caller);
+            if (batch.segments.size() >= this.maxBatchSize) {
+                this.open = null;
+                full = true;
+            }
+        }
+
+        if (full) {
+            batch.sealed.countDown();
+            dispatch(batch);
+        } else if (leader) {
+            awaitOthers(batch);
+        }
+        return Response.from(await(caller));
+    }
+
+    @Override
+    public int dimension() {
+        return this.delegate.dimension();
+    }
+
+    ////////////////////////////////////
+    //         Helper methods         //
+    ////////////////////////////////////
+
+    // The leader sends the batch itself unless someone filled it up in the meantime
+    private void awaitOthers(Batch batch){
+        try {
+            batch.sealed.await(this.maxWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this.lock) {
+            if (this.open != batch) {
+                return;
+            }
+            this.open = null;
+        }
+        dispatch(batch);
+    }
+
+    private void dispatch(Batch batch){
+        try {
+            List<Embedding> embeddings = send(batch.segments).content();
+            for (Caller caller : batch.callers) {
+                caller.result().complete(embeddings.subList(caller.offset(), caller.offset() + caller.count()));
+            }
+        } catch (RuntimeException e) {
+            batch.callers.forEach(caller -> caller.result().completeExceptionally(e));
+        }
+    }
+
+    private Response<List<Embedding>> send(List<TextSegment> segments){
+        this.batchSize.record(segments.size());
+        this.batchFill.record(Math.min(1.0, (double) segments.size() / this.maxBatchSize));
+        return this.delegate.embedAll(segments);
+    }
+
+    private static List<Embedding> await(Caller caller){
+        try {
+            return caller.result().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
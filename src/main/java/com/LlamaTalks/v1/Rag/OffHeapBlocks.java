@@ -0,0 +1,123 @@
+package com.LlamaTalks.v1.rag;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Append-only memory outside the Java heap, split into fixed-size blocks and addressed by a
+// long offset (block index * blockBytes + position). Records never span two blocks. Blocks
+// read from a snapshot are memory-mapped regions of the file, so loading maps the file and
+// the OS pages in whatever is actually touched; only the last, still open block is copied.
+final class OffHeapBlocks {
+    private final int blockBytes;
+    // Copy-on-write so readers can look up blocks while the single writer appends new ones
+    private final List<ByteBuffer> blocks = new CopyOnWriteArrayList<>();
+    // Only touched by the writer
+    private final List<Integer> used = new ArrayList<>();
+
+    OffHeapBlocks(int blockBytes){
+        this.blockBytes = blockBytes;
+    }
+
+    // Returns where `bytes` bytes can be written, opening a new block when the last one is full
+    long allocate(int bytes){
+        if (bytes > this.blockBytes) {
+            throw new IllegalArgumentException("Record of " + bytes + " bytes does not fit a block of " + this.blockBytes);
+        }
+        int last = this.blocks.size() - 1;
+        if (last < 0 || this.used.get(last) + bytes > this.blockBytes) {
+            this.blocks.add(ByteBuffer.allocateDirect(this.blockBytes).order(ByteOrder.LITTLE_ENDIAN));
+            this.used.add(0);
+            last++;
+        }
+        int position = this.used.get(last);
+        this.used.set(last, position + bytes);
+        return (long) last * this.blockBytes + position;
+    }
+
+    ByteBuffer block(long offset){
+        return this.blocks.get((int) (offset / this.blockBytes));
+    }
+
+    int position(long offset){
+        return (int) (offset % this.blockBytes);
+    }
+
+    float getFloat(long offset){
+        return block(offset).getFloat(position(offset));
+    }
+
+    void putFloat(long offset, float value){
+        block(offset).putFloat(position(offset), value);
+    }
+
+    int getInt(long offset){
+        return block(offset).getInt(position(offset));
+    }
+
+    void putInt(long offset, int value){
+        block(offset).putInt(position(offset), value);
+    }
+
+    long bytes(){
+        return this.used.stream().mapToLong(Integer::longValue).sum();
+    }
+
+    // [blockBytes][block count][used bytes per block][used bytes of every block] at the channel's position
+    void writeTo(FileChannel channel) throws IOException{
+        ByteBuffer header = ByteBuffer.allocate(8 + 4 * this.blocks.size()).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(this.blockBytes).putInt(this.blocks.size());
+        this.used.forEach(header::putInt);
+        writeFully(channel, header.flip());
+        for (int i = 0; i < this.blocks.size(); i++) {
+            writeFully(channel, this.blocks.get(i).duplicate().position(0).limit(this.used.get(i)));
+        }
+    }
+
+    // Maps what writeTo wrote and leaves the channel positioned right after it. PRIVATE
+    // mappings may be written to, the changes never reach the file.
+    static OffHeapBlocks readFrom(FileChannel channel, FileChannel.MapMode mode) throws IOException{
+        ByteBuffer counts = readFully(channel, 8);
+        OffHeapBlocks read = new OffHeapBlocks(counts.getInt());
+        int count = counts.getInt();
+        ByteBuffer sizes = readFully(channel, 4 * count);
+
+        long position = channel.position();
+        for (int i = 0; i < count; i++) {
+            int size = sizes.getInt();
+            ByteBuffer block;
+            if (i < count - 1) {
+                block = channel.map(mode, position, size);
+            } else {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+                block = ByteBuffer.allocateDirect(read.blockBytes).put(mapped).clear();
+            }
+            read.blocks.add(block.order(ByteOrder.LITTLE_ENDIAN));
+            read.used.add(size);
+            position += size;
+        }
+        channel.position(position);
+        return read;
+    }
+
+    static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException{
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    static ByteBuffer readFully(FileChannel channel, int bytes) throws IOException{
+        ByteBuffer buffer = ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Snapshot ends early");
+            }
+        }
+        return buffer.flip();
+    }
+}
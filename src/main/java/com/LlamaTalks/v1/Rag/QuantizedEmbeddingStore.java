@@ -0,0 +1,107 @@
+package com.LlamaTalks.v1.rag;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import dev.langchain4j.store.embedding.filter.Filter;
+
+// Searches the quantized ANN index (halfvec or bit codes, see VectorIndexManager) for a wider
+// set of candidates and re-ranks them by their exact distance to the query, in one query.
+// Only the candidates' full vectors are read, the compact index is what has to stay in memory.
+// Writes and filtered searches go to pgvector unchanged, it owns the metadata filter SQL.
+public class QuantizedEmbeddingStore implements EmbeddingStore<TextSegment> {
+    private final EmbeddingStore<TextSegment> delegate;
+    private final JdbcTemplate jdbcTemplate;
+    private final String searchSql;
+    private final int candidates;
+
+    // jdbcTemplate should run on the search-tuned data source, so hnsw.ef_search covers the candidates
+    public QuantizedEmbeddingStore(EmbeddingStore<TextSegment> delegate, JdbcTemplate jdbcTemplate,
+                                    VectorIndexManager vectorIndexManager){
+        this.delegate = delegate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.searchSql = vectorIndexManager.rerankSql("embedding_id, embedding::text AS vector, text, metadata, "
+                                                        + "embedding <=> ?::vector AS distance");
+        this.candidates = vectorIndexManager.rerankCandidates();
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        return this.delegate.add(embedding);
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        this.delegate.add(id, embedding);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment segment) {
+        return this.delegate.add(embedding, segment);
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        return this.delegate.addAll(embeddings);
+    }
+
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> segments) {
+        this.delegate.addAll(ids, embeddings, segments);
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        this.delegate.removeAll(ids);
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        this.delegate.removeAll(filter);
+    }
+
+    @Override
+    public void removeAll() {
+        this.delegate.removeAll();
+    }
+
+    // minScore is applied after the top maxResults are found, same as pgvector's query
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        if (request.filter() != null) {
+            return this.delegate.search(request);
+        }
+        String vector = Arrays.toString(request.queryEmbedding().vector());
+        List<EmbeddingMatch<TextSegment>> matches = this.jdbcTemplate.query(this.searchSql, (rs, row) -> match(rs),
+            vector, vector, Math.max(this.candidates, request.maxResults()), vector, request.maxResults());
+        return new EmbeddingSearchResult<>(matches.stream()
+            .filter(match -> match.score() >= request.minScore())
+            .toList());
+    }
+
+    ////////////////////////////////////
+    //         Helper methods         //
+    ////////////////////////////////////
+
+    private EmbeddingMatch<TextSegment> match(ResultSet rs) throws SQLException{
+        String text = rs.getString("text");
+        return new EmbeddingMatch<>(
+            RelevanceScore.fromCosineSimilarity(1 - rs.getDouble("distance")),
+            rs.getString("embedding_id"),
+            Embedding.from(EmbeddingRows.parseVector(rs.getString("vector"))),
+            text == null ? null : TextSegment.from(text, EmbeddingRows.metadata(rs.getString("metadata")))
+        );
+    }
+}
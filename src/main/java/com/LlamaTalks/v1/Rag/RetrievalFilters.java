@@ -0,0 +1,120 @@
+package com.LlamaTalks.v1.rag;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.LlamaTalks.v1.exception.InvalidRetrievalFilter;
+import com.LlamaTalks.v1.records.RetrievalFilter;
+
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.invocation.InvocationContext;
+import dev.langchain4j.invocation.InvocationParameters;
+import dev.langchain4j.rag.query.Metadata;
+import dev.langchain4j.rag.query.Query;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsGreaterThanOrEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsIn;
+import dev.langchain4j.store.embedding.filter.comparison.IsLessThan;
+import dev.langchain4j.store.embedding.filter.logical.And;
+
+// Scopes retrieval to part of the corpus. A ChatRequest's RetrievalFilter becomes a metadata
+// Filter that travels inside the Query to every retriever: pgvector turns it into a WHERE
+// clause of the vector query, the keyword queries in HybridContentRetriever use where().
+// The keys are the ones IngestionPipeline puts on every chunk.
+public final class RetrievalFilters {
+    public static final String FILE_NAME = "fileName";
+    public static final String BATCH_ID = "batchId";
+    // Epoch millis, chunks ingested before it existed have none and never match a date range
+    public static final String INGESTED_AT = "ingestedAt";
+    private static final String FILTER_PARAMETER = "retrievalFilter";
+
+    private RetrievalFilters(){}
+
+    // null when nothing is scoped, so unscoped questions keep the plain query
+    public static Filter toFilter(RetrievalFilter scope){
+        if (scope == null) {
+            return null;
+        }
+        if (scope.ingestedAfter() != null && scope.ingestedBefore() != null
+                && !scope.ingestedAfter().isBefore(scope.ingestedBefore())) {
+            throw new InvalidRetrievalFilter("ingestedAfter must be before ingestedBefore");
+        }
+        List<Filter> filters = new ArrayList<>();
+        anyOf(FILE_NAME, scope.fileNames(), filters);
+        anyOf(BATCH_ID, scope.batchIds(), filters);
+        if (scope.ingestedAfter() != null) {
+            filters.add(metadataKey(INGESTED_AT).isGreaterThanOrEqualTo(scope.ingestedAfter().toEpochMilli()));
+        }
+        if (scope.ingestedBefore() != null) {
+            filters.add(metadataKey(INGESTED_AT).isLessThan(scope.ingestedBefore().toEpochMilli()));
+        }
+        return filters.stream().reduce((left, right) -> new And(left, right)).orElse(null);
+    }
+
+    public static Query query(String text, Filter filter){
+        if (filter == null) {
+            return Query.from(text);
+        }
+        InvocationContext context = InvocationContext.builder()
+                                        .invocationParameters(InvocationParameters.from(FILTER_PARAMETER, filter))
+                                        .build();
+        return Query.from(text, Metadata.builder().chatMessage(UserMessage.from(text)).invocationContext(context).build());
+    }
+
+    public static Filter filterOf(Query query){
+        Metadata metadata = query.metadata();
+        if (metadata == null || metadata.invocationParameters() == null) {
+            return null;
+        }
+        return metadata.invocationParameters().get(FILTER_PARAMETER);
+    }
+
+    // SQL predicate for the filters toFilter() builds, its values are appended to params. The
+    // expressions are the ones pgvector generates, so the same metadata indexes serve both.
+    public static String where(Filter filter, List<Object> params){
+        if (filter instanceof And and) {
+            return where(and.left(), params) + " AND " + where(and.right(), params);
+        }
+        if (filter instanceof IsEqualTo equal) {
+            params.add(equal.comparisonValue());
+            return key(equal.key(), equal.comparisonValue()) + " = ?";
+        }
+        if (filter instanceof IsIn in) {
+            params.addAll(in.comparisonValues());
+            return key(in.key(), null) + " IN (" + String.join(", ", Collections.nCopies(in.comparisonValues().size(), "?")) + ")";
+        }
+        if (filter instanceof IsGreaterThanOrEqualTo greater) {
+            params.add(greater.comparisonValue());
+            return key(greater.key(), greater.comparisonValue()) + " >= ?";
+        }
+        if (filter instanceof IsLessThan less) {
+            params.add(less.comparisonValue());
+            return key(less.key(), less.comparisonValue()) + " < ?";
+        }
+        throw new IllegalArgumentException("Unsupported retrieval filter: " + filter);
+    }
+
+    ////////////////////////////////////
+    //         Helper methods         //
+    ////////////////////////////////////
+
+    private static void anyOf(String key, List<String> values, List<Filter> filters){
+        List<String> present = values == null ? List.of()
+                                : values.stream().filter(value -> value != null && !value.isBlank()).distinct().toList();
+        if (present.size() == 1) {
+            // Plain equality, so a partial index on this one value can serve the query
+            filters.add(metadataKey(key).isEqualTo(present.get(0)));
+        } else if (!present.isEmpty()) {
+            filters.add(metadataKey(key).isIn(present));
+        }
+    }
+
+    private static String key(String key, Object value){
+        String text = "(metadata->>'" + key + "')";
+        return value instanceof Number ? "(" + text + "::bigint)" : text;
+    }
+}
@@ -0,0 +1,244 @@
+package com.LlamaTalks.v1.rag;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.LlamaTalks.v1.ingestion.ChunksRemovedEvent;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.ContentMetadata;
+import dev.langchain4j.store.embedding.CosineSimilarity;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+// Answers keyed by the exact set of retrieved chunk ids plus the question embedding. A
+// rephrased question that retrieves the same chunks and is at least minSimilarity close
+// to a cached one gets the cached answer. New or re-ingested documents produce new chunk
+// ids, so they never match old entries; removed chunks evict their entries explicitly.
+@Component
+public class SemanticAnswerCache {
+    private final EmbeddingModel queryEmbeddingModel;
+    private final boolean enabled;
+    private final double minSimilarity;
+    private final long ttlNanos;
+    private final int maxSize;
+    private final LongSupplier nanoClock;
+    private final LinkedHashMap<Long, CachedAnswer> entries;
+    private final Map<String, Set<Long>> byChunks = new HashMap<>();
+    private final Map<String, Set<Long>> bySource = new HashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+    private final Timer timeSaved;
+
+    private long nextId;
+
+    private record CachedAnswer(long id, String chunkKey, Set<String> sources, Embedding question,
+                                String answer, long generationNanos, long expiresAt) {}
+
+    @Autowired
+    public SemanticAnswerCache(@Qualifier("queryEmbeddingModel") EmbeddingModel queryEmbeddingModel,
+                                @Value("${rag.answer-cache.enabled}") boolean enabled,
+                                @Value("${rag.answer-cache.min-similarity}") double minSimilarity,
+                                @Value("${rag.answer-cache.ttl}") Duration ttl,
+                                @Value("${rag.answer-cache.max-size}") int maxSize,
+                                MeterRegistry meterRegistry){
+        this(queryEmbeddingModel, enabled, minSimilarity, ttl, maxSize, meterRegistry, System::nanoTime);
+    }
+
+    public SemanticAnswerCache(EmbeddingModel queryEmbeddingModel, boolean enabled, double minSimilarity, Duration ttl,
+                                int maxSize, MeterRegistry meterRegistry, LongSupplier nanoClock){
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        this.queryEmbeddingModel = queryEmbeddingModel;
+        this.enabled = enabled;
+        this.minSimilarity = minSimilarity;
+        this.ttlNanos = ttl.toNanos();
+        this.maxSize = maxSize;
+        this.nanoClock = nanoClock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+
+        this.hits = Counter.builder("rag.answer.cache")
+                            .tag("result", "hit")
+                            .description("Chat answers served from the semantic cache")
+                            .register(meterRegistry);
+        this.misses = Counter.builder("rag.answer.cache")
+                            .tag("result", "miss")
+                            .description("Chat answers generated by the model")
+                            .register(meterRegistry);
+        this.timeSaved = Timer.builder("rag.answer.cache.time.saved")
+                            .description("Generation time of the original answer, per cache hit")
+                            .register(meterRegistry);
+        meterRegistry.gauge("rag.answer.cache.size", this, SemanticAnswerCache::size);
+    }
+
+    public Optional<String> lookup(String question, List<Content> contents){
+        if (!this.enabled) {
+            return Optional.empty();
+        }
+        // Already embedded for retrieval, so this is served by the query embedding cache
+        Embedding embedding = this.queryEmbeddingModel.embed(question).content();
+        String chunkKey = chunkKey(contents);
+        long now = this.nanoClock.getAsLong();
+
+        CachedAnswer best = null;
+        double bestSimilarity = this.minSimilarity;
+        synchronized (this.entries) {
+            for (Long id : List.copyOf(this.byChunks.getOrDefault(chunkKey, Set.of()))) {
+                CachedAnswer candidate = this.entries.get(id);
+                if (candidate.expiresAt() - now <= 0) {
+                    remove(candidate);
+                    continue;
+                }
+                double similarity = CosineSimilarity.between(embedding, candidate.question());
+                if (similarity >= bestSimilarity) {
+                    best = candidate;
+                    bestSimilarity = similarity;
+                }
+            }
+        }
+
+        if (best == null) {
+            this.misses.increment();
+            return Optional.empty();
+        }
+        this.hits.increment();
+        this.timeSaved.record(best.generationNanos(), TimeUnit.NANOSECONDS);
+        return Optional.of(best.answer());
+    }
+
+    public void store(String question, List<Content> contents, String answer, Duration generationTime){
+        if (!this.enabled || answer == null || answer.isBlank()) {
+            return;
+        }
+        Embedding embedding = this.queryEmbeddingModel.embed(question).content();
+        String chunkKey = chunkKey(contents);
+        Set<String> sources = sources(contents);
+        long now = this.nanoClock.getAsLong();
+
+        synchronized (this.entries) {
+            CachedAnswer entry = new CachedAnswer(this.nextId++, chunkKey, sources, embedding, answer,
+                                                    generationTime.toNanos(), now + this.ttlNanos);
+            this.entries.put(entry.id(), entry);
+            this.byChunks.computeIfAbsent(chunkKey, key -> new HashSet<>()).add(entry.id());
+            for (String source : sources) {
+                this.bySource.computeIfAbsent(source, key -> new HashSet<>()).add(entry.id());
+            }
+
+            Iterator<CachedAnswer> eldest = this.entries.values().iterator();
+            while (this.entries.size() > this.maxSize && eldest.hasNext()) {
+                CachedAnswer evicted = eldest.next();
+                eldest.remove();
+                unindex(evicted);
+            }
+        }
+    }
+
+    @EventListener
+    public void onChunksRemoved(ChunksRemovedEvent event){
+        synchronized (this.entries) {
+            invalidate(event.filePath());
+            invalidate(legacySource(event.fileName()));
+        }
+    }
+
+    public int size(){
+        synchronized (this.entries) {
+            return this.entries.size();
+        }
+    }
+
+    public void clear(){
+        synchronized (this.entries) {
+            this.entries.clear();
+            this.byChunks.clear();
+            this.bySource.clear();
+        }
+    }
+
+    ////////////////////////////////////
+    //         Helper methods         //
+    ////////////////////////////////////
+
+    private void invalidate(String source){
+        Set<Long> ids = this.bySource.get(source);
+        if (ids == null) {
+            return;
+        }
+        for (Long id : List.copyOf(ids)) {
+            CachedAnswer entry = this.entries.get(id);
+            if (entry != null) {
+                remove(entry);
+            }
+        }
+    }
+
+    private void remove(CachedAnswer entry){
+        this.entries.remove(entry.id());
+        unindex(entry);
+    }
+
+    private void unindex(CachedAnswer entry){
+        removeId(this.byChunks, entry.chunkKey(), entry.id());
+        for (String source : entry.sources()) {
+            removeId(this.bySource, source, entry.id());
+        }
+    }
+
+    private static void removeId(Map<String, Set<Long>> index, String key, long id){
+        Set<Long> ids = index.get(key);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    // Order of retrieval does not matter, only which chunks the answer was grounded on
+    private static String chunkKey(List<Content> contents){
+        TreeSet<String> ids = new TreeSet<>();
+        for (Content content : contents) {
+            Object id = content.metadata().get(ContentMetadata.EMBEDDING_ID);
+            ids.add(id != null ? id.toString() : Integer.toHexString(content.textSegment().text().hashCode()));
+        }
+        return String.join(",", ids);
+    }
+
+    private static Set<String> sources(Collection<Content> contents){
+        Set<String> sources = new HashSet<>();
+        for (Content content : contents) {
+            TextSegment segment = content.textSegment();
+            String filePath = segment.metadata().getString("filePath");
+            sources.add(filePath != null ? filePath : legacySource(segment.metadata().getString("fileName")));
+        }
+        return sources;
+    }
+
+    // Chunks ingested before filePath existed are only known by their file name
+    private static String legacySource(String fileName){
+        return "name:" + Objects.requireNonNullElse(fileName, "");
+    }
+}
@@ -0,0 +1,590 @@
+package com.LlamaTalks.v1.rag;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Component;
+
+import com.LlamaTalks.v1.configuration.WorkerThreads;
+import com.LlamaTalks.v1.ingestion.IngestionCompletedEvent;
+import com.LlamaTalks.v1.records.VectorIndexBenchmark;
+import com.LlamaTalks.v1.records.VectorIndexStatus;
+
+import jakarta.annotation.PreDestroy;
+
+// Owns the ANN index on embeddings.embedding, without it every search is a sequential scan
+// over all vectors. HNSW is kept up to date by Postgres on every insert. IVFFlat clusters
+// the rows present at build time, so it is only built once the table has minRows and is
+// rebuilt after ingestion changed more than rebuildThreshold of it. Builds and rebuilds run
+// CONCURRENTLY on one background thread, searches keep working while they are in progress.
+// With quantization the index is built over a compact copy of every vector (halfvec: 2 bytes
+// per dimension, bit: 1 bit) instead of the 4-byte floats, rerankSql() then searches that
+// index for a wider candidate set and orders the candidates by their exact distance.
+// Partial HNSW indexes cover single metadata values (one batch, one file) that questions are
+// often scoped to, so a filtered search walks a graph of just those chunks.
+@Component
+public class VectorIndexManager {
+    public static final String INDEX_NAME = "embeddings_embedding_idx";
+    private static final String NEW_INDEX_NAME = INDEX_NAME + "_new";
+    private static final String PARTIAL_INDEX_PREFIX = "embeddings_embedding_part_";
+    // pgvector refuses more lists than this
+    private static final int MAX_LISTS = 32768;
+    private static final String DESCRIBE_SQL = """
+        SELECT am.amname AS method, ix.indisvalid AS valid, pg_relation_size(c.oid) AS size_bytes,
+               coalesce(array_to_string(c.reloptions, ','), '') AS options, pg_get_indexdef(c.oid) AS definition
+        FROM pg_class c
+        JOIN pg_index ix ON ix.indexrelid = c.oid
+        JOIN pg_am am ON am.oid = c.relam
+        WHERE c.relname = ?
+        """;
+    private static final String SEARCH_SQL = "SELECT embedding_id FROM embeddings ORDER BY embedding <=> ?::vector LIMIT ?";
+
+    public enum IndexType { NONE, HNSW, IVFFLAT }
+
+    public enum Quantization { NONE, HALFVEC, BIT }
+
+    public enum State { DISABLED, MISSING, BUILDING, READY, FAILED }
+
+    private record IndexInfo(String method, boolean valid, long sizeBytes, String options, String definition) {}
+
+    private record SearchRun(List<String> ids, long nanos) {}
+
+    private record PartialIndex(String key, String value) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final IndexType type;
+    private final int dimension;
+    private final Quantization quantization;
+    private final int rerankCandidates;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    private final int lists;
+    private final int probes;
+    private final long minRows;
+    private final double rebuildThreshold;
+    private final String maintenanceWorkMem;
+    private final List<PartialIndex> partialIndexes;
+    private final String iterativeScan;
+    private final ExecutorService builder;
+    private final AtomicBoolean maintenancePending = new AtomicBoolean();
+    private final AtomicLong chunksSinceBuild = new AtomicLong();
+    private final Set<Connection> tunedConnections = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+    private final Logger logger = LoggerFactory.getLogger(VectorIndexManager.class);
+
+    private volatile State state;
+    private volatile long rowsAtBuild;
+    private volatile Instant lastBuiltAt;
+    private volatile String error;
+
+    public VectorIndexManager(JdbcTemplate jdbcTemplate,
+                                @Value("${rag.vector-index.type}") IndexType type,
+                                @Value("${DIMENSIONS}") int dimension,
+                                @Value("${rag.vector-index.quantization}") Quantization quantization,
+                                @Value("${rag.vector-index.rerank-candidates}") int rerankCandidates,
+                                @Value("${rag.vector-index.hnsw.m}") int m,
+                                @Value("${rag.vector-index.hnsw.ef-construction}") int efConstruction,
+                                @Value("${rag.vector-index.hnsw.ef-search}") int efSearch,
+                                @Value("${rag.vector-index.ivfflat.lists}") int lists,
+                                @Value("${rag.vector-index.ivfflat.probes}") int probes,
+                                @Value("${rag.vector-index.min-rows}") long minRows,
+                                @Value("${rag.vector-index.rebuild-threshold}") double rebuildThreshold,
+                                @Value("${rag.vector-index.maintenance-work-mem}") String maintenanceWorkMem,
+                                @Value("${rag.vector-index.partial}") List<String> partial,
+                                @Value("${rag.vector-index.hnsw.iterative-scan}") String iterativeScan,
+                                @Value("${spring.threads.virtual.enabled}") boolean virtualThreads){
+        this.jdbcTemplate = jdbcTemplate;
+        this.type = type;
+        this.dimension = dimension;
+        // Without an index the coarse pass would scan every row too, so there is nothing to gain
+        this.quantization = type == IndexType.NONE ? Quantization.NONE : quantization;
+        this.rerankCandidates = Math.max(1, rerankCandidates);
+        this.m = Math.max(2, m);
+        this.efConstruction = Math.max(2 * this.m, efConstruction);
+        // An HNSW scan returns at most ef_search rows, the coarse pass needs rerankCandidates of them
+        this.efSearch = Math.max(this.quantization != Quantization.NONE ? this.rerankCandidates : 1, efSearch);
+        this.lists = Math.min(MAX_LISTS, Math.max(0, lists));
+        this.probes = Math.max(1, probes);
+        this.minRows = Math.max(0, minRows);
+        this.rebuildThreshold = rebuildThreshold;
+        // Ends up in a SET statement, so only plain sizes are accepted
+        this.maintenanceWorkMem = maintenanceWorkMem != null && maintenanceWorkMem.matches("\\d+(kB|MB|GB)") ? maintenanceWorkMem : null;
+        this.partialIndexes = partialIndexes(partial);
+        // pgvector 0.8+: keeps scanning the graph until a filtered search has enough rows
+        this.iterativeScan = type == IndexType.HNSW && iterativeScan != null && iterativeScan.matches("strict_order|relaxed_order")
+                                ? iterativeScan : null;
+        this.builder = Executors.newSingleThreadExecutor(WorkerThreads.builder(virtualThreads).name("vector-index").factory());
+        this.state = type == IndexType.NONE ? State.DISABLED : State.MISSING;
+    }
+
+    // The table itself exists by now, PgVectorEmbeddingStore creates it with the bean
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady(){
+        this.builder.execute(this::ensureIndex);
+    }
+
+    @EventListener
+    public void onIngestionCompleted(IngestionCompletedEvent event){
+        this.chunksSinceBuild.addAndGet(event.chunksStored());
+        if (this.type != IndexType.NONE && this.maintenancePending.compareAndSet(false, true)) {
+            this.builder.execute(this::maintain);
+        }
+    }
+
+    // Starts a rebuild in the background, status() shows when it is done
+    public VectorIndexStatus rebuild(){
+        if (this.type != IndexType.NONE) {
+            this.builder.execute(() -> {
+                try {
+                    replace(describe(INDEX_NAME) != null);
+                } catch (DataAccessException e) {
+                    failed(e);
+                }
+            });
+        }
+        return status();
+    }
+
+    public VectorIndexStatus status(){
+        IndexInfo info = describe(INDEX_NAME);
+        return new VectorIndexStatus(
+            this.type,
+            this.quantization,
+            this.state,
+            INDEX_NAME,
+            info != null ? info.definition() : null,
+            info != null && info.valid(),
+            info != null ? info.sizeBytes() : 0,
+            estimatedRows(),
+            this.chunksSinceBuild.get(),
+            this.efSearch,
+            this.probes,
+            this.quantization != Quantization.NONE ? this.rerankCandidates : 0,
+            this.lastBuiltAt,
+            this.error
+        );
+    }
+
+    // The search settings are per session, so they are set once on every pooled connection
+    // the embedding store gets and stay for the lifetime of that connection
+    public DataSource searchTuned(DataSource dataSource){
+        if (this.type == IndexType.NONE) {
+            return dataSource;
+        }
+        return new DelegatingDataSource(dataSource) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                Connection connection = super.getConnection();
+                tune(connection);
+                return connection;
+            }
+        };
+    }
+
+    // Samples stored vectors as queries and compares the index scan with an exact scan of the
+    // same query. efSearch/probes/candidates override the configured values for this run only.
+    // A quantized index is measured the way it is searched, candidates from it re-ranked exactly.
+    public VectorIndexBenchmark benchmark(int queries, int k, Integer efSearch, Integer probes, Integer candidates){
+        int sampleSize = Math.min(Math.max(1, queries), 500);
+        int limit = Math.min(Math.max(1, k), 100);
+        int rerank = this.quantization == Quantization.NONE ? 0
+                        : Math.max(limit, candidates != null ? candidates : this.rerankCandidates);
+        int ef = Math.max(rerank, efSearch != null ? Math.max(1, efSearch) : this.efSearch);
+        int listsProbed = probes != null ? Math.max(1, probes) : this.probes;
+        String setting = searchSetting(ef, listsProbed);
+        String indexedSql = rerank > 0 ? rerankSql("embedding_id") : SEARCH_SQL;
+
+        List<String> samples = this.jdbcTemplate.queryForList(
+            "SELECT embedding::text FROM embeddings ORDER BY random() LIMIT ?", String.class, sampleSize);
+        long[] indexNanos = new long[samples.size()];
+        long[] exactNanos = new long[samples.size()];
+        double recallSum = 0;
+        for (int i = 0; i < samples.size(); i++) {
+            SearchRun exact = search(SEARCH_SQL, samples.get(i), limit, 0, "SET LOCAL enable_indexscan = off");
+            SearchRun indexed = search(indexedSql, samples.get(i), limit, rerank,
+                                        setting != null ? setting.replace("SET ", "SET LOCAL ") : null);
+            exactNanos[i] = exact.nanos();
+            indexNanos[i] = indexed.nanos();
+            recallSum += recall(exact.ids(), indexed.ids());
+        }
+
+        return new VectorIndexBenchmark(
+            this.type,
+            this.quantization,
+            samples.size(),
+            limit,
+            ef,
+            listsProbed,
+            rerank,
+            samples.isEmpty() ? 0 : recallSum / samples.size(),
+            percentileMillis(indexNanos, 0.50),
+            percentileMillis(indexNanos, 0.95),
+            percentileMillis(exactNanos, 0.50),
+            percentileMillis(exactNanos, 0.95)
+        );
+    }
+
+    // Share of the exact top-k the index scan found, order does not matter
+    public static double recall(List<String> exact, List<String> approximate){
+        if (exact.isEmpty()) {
+            return 1.0;
+        }
+        Set<String> found = new HashSet<>(approximate);
+        return (double) exact.stream().filter(found::contains).count() / exact.size();
+    }
+
+    // HNSW over the full vectors whatever the main index is: filtered searches run pgvector's own
+    // query, and HNSW needs no training rows, so it suits small scopes
+    public String createPartialIndexSql(String name, String key, String value){
+        return "CREATE INDEX CONCURRENTLY IF NOT EXISTS " + name
+                + " ON embeddings USING hnsw (embedding vector_cosine_ops) WITH (m = " + this.m
+                + ", ef_construction = " + this.efConstruction + ") WHERE (metadata->>'" + key + "') = '"
+                + value.replace("'", "''") + "'";
+    }
+
+    public String createIndexSql(String name, long rows){
+        String column = "(" + indexedExpression() + " " + operatorClass() + ")";
+        return switch (this.type) {
+            case HNSW -> "CREATE INDEX CONCURRENTLY IF NOT EXISTS " + name
+                            + " ON embeddings USING hnsw " + column + " WITH (m = " + this.m
+                            + ", ef_construction = " + this.efConstruction + ")";
+            case IVFFLAT -> "CREATE INDEX CONCURRENTLY IF NOT EXISTS " + name
+                            + " ON embeddings USING ivfflat " + column + " WITH (lists = " + lists(rows) + ")";
+            case NONE -> throw new IllegalStateException("No vector index configured");
+        };
+    }
+
+    // Search over the quantized index for the candidates, ordered by exact distance. Parameters:
+    // any in columns, then query vector, candidates, query vector, k. The coarse ORDER BY has to
+    // repeat the indexed expression exactly, otherwise Postgres cannot use the index.
+    public String rerankSql(String columns){
+        String coarse = switch (this.quantization) {
+            case HALFVEC -> indexedExpression() + " <=> ?::halfvec(" + this.dimension + ")";
+            case BIT -> indexedExpression() + " <~> binary_quantize(?::vector)";
+            case NONE -> throw new IllegalStateException("Vectors are not quantized");
+        };
+        return """
+            SELECT %s
+            FROM (
+                SELECT embedding_id, embedding, text, metadata FROM embeddings
+                ORDER BY %s
+                LIMIT ?
+            ) candidates
+            ORDER BY embedding <=> ?::vector
+            LIMIT ?
+            """.formatted(columns, coarse);
+    }
+
+    public Quantization quantization(){
+        return this.quantization;
+    }
+
+    public int rerankCandidates(){
+        return this.rerankCandidates;
+    }
+
+    // pgvector's guidance: rows / 1000 up to a million rows, sqrt(rows) beyond
+    public int lists(long rows){
+        if (this.lists > 0) {
+            return this.lists;
+        }
+        long auto = rows <= 1_000_000 ? rows / 1000 : (long) Math.sqrt(rows);
+        return (int) Math.min(MAX_LISTS, Math.max(10, auto));
+    }
+
+    @PreDestroy
+    public void shutdown(){
+        // An interrupted CONCURRENTLY build leaves an invalid index, the next start replaces it
+        this.builder.shutdownNow();
+    }
+
+    ////////////////////////////////////
+    //         Helper methods         //
+    ////////////////////////////////////
+
+    private void ensureIndex(){
+        if (this.type == IndexType.NONE) {
+            this.logger.info("Vector index disabled, retrieval scans every embedding");
+            return;
+        }
+        try {
+            IndexInfo info = describe(INDEX_NAME);
+            if (info != null && info.valid() && matches(info)) {
+                this.rowsAtBuild = estimatedRows();
+                this.state = State.READY;
+                this.logger.info("Vector index {} is up to date: {}", INDEX_NAME, info.definition());
+            } else {
+                replace(info != null);
+            }
+            ensurePartialIndexes();
+        } catch (DataAccessException e) {
+            failed(e);
+        }
+    }
+
+    // Builds the configured partial indexes that are missing and drops the ones no longer configured.
+    // The name hashes the whole definition, so a changed one is replaced.
+    private void ensurePartialIndexes(){
+        Map<String, String> wanted = new LinkedHashMap<>();
+        for (PartialIndex partial : this.partialIndexes) {
+            String definition = partial.key() + "=" + partial.value() + "|m=" + this.m + "|ef_construction=" + this.efConstruction;
+            String name = PARTIAL_INDEX_PREFIX + Integer.toHexString(definition.hashCode());
+            wanted.put(name, createPartialIndexSql(name, partial.key(), partial.value()));
+        }
+        List<String> existing = this.jdbcTemplate.queryForList(
+            "SELECT indexname FROM pg_indexes WHERE tablename = 'embeddings' AND indexname LIKE ?",
+            String.class, PARTIAL_INDEX_PREFIX + "%");
+        for (String name : existing) {
+            if (!wanted.containsKey(name)) {
+                this.logger.info("Dropping partial vector index {}, it is no longer configured", name);
+                this.jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + name);
+            }
+        }
+        wanted.forEach((name, sql) -> {
+            IndexInfo info = describe(name);
+            if (info != null && !info.valid()) {
+                // Left invalid by an interrupted build, IF NOT EXISTS would keep it
+                this.jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + name);
+            }
+            if (info == null || !info.valid()) {
+                build(sql);
+            }
+        });
+    }
+
+    private void maintain(){
+        this.maintenancePending.set(false);
+        try {
+            if (this.state == State.MISSING || this.state == State.FAILED) {
+                ensureIndex();
+            } else if (this.type == IndexType.IVFFLAT && this.state == State.READY
+                        && this.chunksSinceBuild.get() >= this.rebuildThreshold * Math.max(1, this.rowsAtBuild)) {
+                this.logger.info("{} chunks added since the IVFFlat index was built over {} rows, rebuilding",
+                                    this.chunksSinceBuild.get(), this.rowsAtBuild);
+                replace(true);
+            }
+        } catch (DataAccessException e) {
+            failed(e);
+        }
+    }
+
+    // An existing index is only swapped out once its replacement is valid, so searches never
+    // fall back to a sequential scan in between
+    private void replace(boolean existing){
+        long rows = countRows();
+        if (this.type == IndexType.IVFFLAT && rows < this.minRows) {
+            this.state = State.MISSING;
+            this.logger.info("Deferring IVFFlat index until embeddings has {} rows, it has {}", this.minRows, rows);
+            return;
+        }
+
+        this.state = State.BUILDING;
+        long start = System.nanoTime();
+        this.chunksSinceBuild.set(0);
+        // Left behind by a build that was interrupted
+        this.jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + NEW_INDEX_NAME);
+        if (existing) {
+            build(createIndexSql(NEW_INDEX_NAME, rows));
+            this.jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + INDEX_NAME);
+            this.jdbcTemplate.execute("ALTER INDEX " + NEW_INDEX_NAME + " RENAME TO " + INDEX_NAME);
+        } else {
+            build(createIndexSql(INDEX_NAME, rows));
+        }
+
+        this.rowsAtBuild = rows;
+        this.lastBuiltAt = Instant.now();
+        this.error = null;
+        this.state = State.READY;
+        this.logger.info("Built {} index {} over {} rows in {} ms", this.type, INDEX_NAME, rows,
+                            (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // maintenance_work_mem decides whether the graph is built in memory, reset so the
+    // pooled connection does not keep it
+    private void build(String sql){
+        this.logger.info("Building vector index: {}", sql);
+        this.jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                if (this.maintenanceWorkMem != null) {
+                    statement.execute("SET maintenance_work_mem = '" + this.maintenanceWorkMem + "'");
+                }
+                try {
+                    statement.execute(sql);
+                } finally {
+                    statement.execute("RESET maintenance_work_mem");
+                }
+            }
+            return null;
+        });
+    }
+
+    private void failed(DataAccessException e){
+        this.state = State.FAILED;
+        this.error = e.getMostSpecificCause().getMessage();
+        this.logger.error("Vector index maintenance failed, retrieval falls back to a sequential scan", e);
+    }
+
+    // HNSW must have been built with the configured parameters, IVFFlat only when lists is fixed.
+    // The operator class tells which quantization an index was built with.
+    private boolean matches(IndexInfo info){
+        if (!info.method().equalsIgnoreCase(this.type.name()) || !info.definition().contains(operatorClass())) {
+            return false;
+        }
+        Set<String> options = new HashSet<>(Arrays.asList(info.options().split(",")));
+        return switch (this.type) {
+            case HNSW -> options.contains("m=" + this.m) && options.contains("ef_construction=" + this.efConstruction);
+            case IVFFLAT -> this.lists == 0 || options.contains("lists=" + this.lists);
+            case NONE -> true;
+        };
+    }
+
+    private IndexInfo describe(String name){
+        List<IndexInfo> found = this.jdbcTemplate.query(DESCRIBE_SQL, (rs, row) -> new IndexInfo(
+            rs.getString("method"),
+            rs.getBoolean("valid"),
+            rs.getLong("size_bytes"),
+            rs.getString("options"),
+            rs.getString("definition")
+        ), name);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    private long countRows(){
+        Long rows = this.jdbcTemplate.queryForObject("SELECT count(*) FROM embeddings", Long.class);
+        return rows != null ? rows : 0;
+    }
+
+    // Planner statistics, free to read and good enough for a status page
+    private long estimatedRows(){
+        List<Long> rows = this.jdbcTemplate.queryForList(
+            "SELECT GREATEST(reltuples, 0)::bigint FROM pg_class WHERE relname = 'embeddings'", Long.class);
+        return rows.isEmpty() || rows.get(0) == null ? 0 : rows.get(0);
+    }
+
+    private String indexedExpression(){
+        return switch (this.quantization) {
+            case NONE -> "embedding";
+            case HALFVEC -> "(embedding::halfvec(" + this.dimension + "))";
+            case BIT -> "(binary_quantize(embedding)::bit(" + this.dimension + "))";
+        };
+    }
+
+    private String operatorClass(){
+        return switch (this.quantization) {
+            case NONE -> "vector_cosine_ops";
+            case HALFVEC -> "halfvec_cosine_ops";
+            case BIT -> "bit_hamming_ops";
+        };
+    }
+
+    private String searchSetting(int efSearch, int probes){
+        return switch (this.type) {
+            case HNSW -> "SET hnsw.ef_search = " + efSearch;
+            case IVFFLAT -> "SET ivfflat.probes = " + probes;
+            case NONE -> null;
+        };
+    }
+
+    private void tune(Connection connection) throws SQLException{
+        Connection physical = connection.isWrapperFor(Connection.class) ? connection.unwrap(Connection.class) : connection;
+        if (this.tunedConnections.contains(physical)) {
+            return;
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(searchSetting(this.efSearch, this.probes));
+            if (this.iterativeScan != null) {
+                statement.execute("SET hnsw.iterative_scan = " + this.iterativeScan);
+            }
+        }
+        this.tunedConnections.add(physical);
+    }
+
+    // SET LOCAL only lives for the transaction, which is rolled back right after
+    private SearchRun search(String sql, String vector, int k, int candidates, String setting){
+        return this.jdbcTemplate.execute((ConnectionCallback<SearchRun>) connection -> {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement();
+                 PreparedStatement query = connection.prepareStatement(sql)) {
+                if (setting != null) {
+                    statement.execute(setting);
+                }
+                query.setString(1, vector);
+                if (candidates > 0) {
+                    query.setInt(2, candidates);
+                    query.setString(3, vector);
+                    query.setInt(4, k);
+                } else {
+                    query.setInt(2, k);
+                }
+                List<String> ids = new ArrayList<>();
+                long start = System.nanoTime();
+                try (ResultSet rs = query.executeQuery()) {
+                    while (rs.next()) {
+                        ids.add(rs.getString(1));
+                    }
+                }
+                return new SearchRun(ids, System.nanoTime() - start);
+            } finally {
+                connection.rollback();
+                connection.setAutoCommit(autoCommit);
+            }
+        });
+    }
+
+    // "key=value" entries, keys are restricted to what can go into an index expression unquoted
+    private List<PartialIndex> partialIndexes(List<String> entries){
+        List<PartialIndex> parsed = new ArrayList<>();
+        for (String entry : entries != null ? entries : List.<String>of()) {
+            int separator = entry.indexOf('=');
+            String key = separator > 0 ? entry.substring(0, separator).trim() : "";
+            String value = separator > 0 ? entry.substring(separator + 1).trim() : "";
+            if (!key.matches("\\w+") || value.isEmpty()) {
+                if (!entry.isBlank()) {
+                    this.logger.warn("Ignoring partial vector index '{}', expected key=value", entry);
+                }
+                continue;
+            }
+            parsed.add(new PartialIndex(key, value));
+        }
+        return parsed;
+    }
+
+    private static double percentileMillis(long[] nanos, double percentile){
+        if (nanos.length == 0) {
+            return 0;
+        }
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return Math.round(sorted[Math.max(0, index)] / 10_000.0) / 100.0;
+    }
+}
@@ -1,3 +1,9 @@
 package com.LlamaTalks.v1.records;
 
-public record ChatRequest(String message, String conversationId) {}
+// filter is optional, without it retrieval searches every ingested chunk
+public record ChatRequest(String message, String conversationId, RetrievalFilter filter) {
+
+    public ChatRequest(String message, String conversationId){
+        this(message, conversationId, null);
+    }
+}
@@ -0,0 +1,3 @@
+package com.LlamaTalks.v1.records;
+
+public record ChatStreamStart(String conversationId) {}
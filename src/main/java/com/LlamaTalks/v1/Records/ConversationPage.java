@@ -0,0 +1,5 @@
+package com.LlamaTalks.v1.records;
+
+import java.util.List;
+
+public record ConversationPage(List<ConversationSummary> conversations, String nextCursor) {}
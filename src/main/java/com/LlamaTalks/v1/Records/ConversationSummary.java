@@ -0,0 +1,14 @@
+package com.LlamaTalks.v1.records;
+
+import java.time.LocalDateTime;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+public record ConversationSummary(
+    @JsonIgnore Long id,
+    String conversationId,
+    String title,
+    LocalDateTime startedAt,
+    long messageCount,
+    LocalDateTime lastActivity
+) {}
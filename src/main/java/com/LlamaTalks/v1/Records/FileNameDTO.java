@@ -1,5 +0,0 @@
-package com.LlamaTalks.v1.records;
-
-import java.util.UUID;
-
-public record FileNameDTO(UUID embeddingId, String fileName) {}
@@ -0,0 +1,5 @@
+package com.LlamaTalks.v1.records;
+
+import java.time.LocalDateTime;
+
+public record IngestedFileDTO(String fileName, String path, int chunkCount, String batchId, LocalDateTime ingestedAt) {}
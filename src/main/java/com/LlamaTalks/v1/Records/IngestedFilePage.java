@@ -0,0 +1,5 @@
+package com.LlamaTalks.v1.records;
+
+import java.util.List;
+
+public record IngestedFilePage(List<IngestedFileDTO> files, int page, int size, long totalFiles) {}
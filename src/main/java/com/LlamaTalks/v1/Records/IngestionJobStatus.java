@@ -0,0 +1,27 @@
+package com.LlamaTalks.v1.records;
+
+import java.time.Instant;
+import java.util.Map;
+
+import com.LlamaTalks.v1.ingestion.IngestionJob;
+
+public record IngestionJobStatus(
+    String id,
+    String directory,
+    IngestionJob.Status status,
+    Instant createdAt,
+    Instant startedAt,
+    Instant finishedAt,
+    int filesTotal,
+    int filesScanned,
+    int filesUnchanged,
+    int filesSkipped,
+    int filesFailed,
+    int filesStored,
+    long chunksEmbedded,
+    long chunksStored,
+    double chunksPerSecond,
+    Long etaSeconds,
+    Map<String, Long> stageMillis,
+    String error
+) {}
@@ -0,0 +1,7 @@
+package com.LlamaTalks.v1.records;
+
+import java.time.LocalDateTime;
+
+import com.LlamaTalks.v1.models.MessageRole;
+
+public record MessageDTO(long id, MessageRole role, String content, LocalDateTime generatedAt) {}
@@ -0,0 +1,11 @@
+package com.LlamaTalks.v1.records;
+
+import java.time.Instant;
+import java.util.List;
+
+public record RetrievalFilter(
+    List<String> fileNames,
+    List<String> batchIds,
+    Instant ingestedAfter,
+    Instant ingestedBefore
+) {}
@@ -0,0 +1,5 @@
+package com.LlamaTalks.v1.records;
+
+import com.LlamaTalks.v1.models.MessageRole;
+
+public record StoredMessage(MessageRole role, String content) {}
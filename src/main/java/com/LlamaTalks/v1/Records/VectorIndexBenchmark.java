@@ -0,0 +1,18 @@
+package com.LlamaTalks.v1.records;
+
+import com.LlamaTalks.v1.rag.VectorIndexManager;
+
+public record VectorIndexBenchmark(
+    VectorIndexManager.IndexType type,
+    VectorIndexManager.Quantization quantization,
+    int queries,
+    int k,
+    int efSearch,
+    int probes,
+    int rerankCandidates,
+    double recall,
+    double indexP50Millis,
+    double indexP95Millis,
+    double exactP50Millis,
+    double exactP95Millis
+) {}
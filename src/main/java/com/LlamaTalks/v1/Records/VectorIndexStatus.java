@@ -0,0 +1,22 @@
+package com.LlamaTalks.v1.records;
+
+import java.time.Instant;
+
+import com.LlamaTalks.v1.rag.VectorIndexManager;
+
+public record VectorIndexStatus(
+    VectorIndexManager.IndexType type,
+    VectorIndexManager.Quantization quantization,
+    VectorIndexManager.State state,
+    String indexName,
+    String definition,
+    boolean valid,
+    long sizeBytes,
+    long estimatedRows,
+    long chunksSinceBuild,
+    int efSearch,
+    int probes,
+    int rerankCandidates,
+    Instant lastBuiltAt,
+    String error
+) {}
@@ -1,10 +1,59 @@
 package com.LlamaTalks.v1.repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.LlamaTalks.v1.models.Conversation;
+import com.LlamaTalks.v1.records.ConversationSummary;
+
+import jakarta.transaction.Transactional;
 
 
 public interface ConverstaionRepository extends JpaRepository<Conversation, Long>{
     Conversation findByConversationId(String conversationId);
+
+    // Messages are loaded with the conversation, open-in-view is off so nothing lazy is left for Jackson
+    @EntityGraph(attributePaths = "messages")
+    Conversation findWithMessagesByConversationId(String conversationId);
+
+    // Keyset pages over (startedAt, id). The counts are correlated subqueries, so they
+    // only run for the rows of the returned page, not for every conversation.
+    @Query("""
+        SELECT new com.LlamaTalks.v1.records.ConversationSummary(
+            c.id, c.conversationId, c.title, c.startedAt,
+            (SELECT COUNT(m) FROM Message m WHERE m.conversation = c),
+            (SELECT MAX(m.generatedAt) FROM Message m WHERE m.conversation = c))
+        FROM Conversation c
+        ORDER BY c.startedAt DESC, c.id DESC
+        """)
+    List<ConversationSummary> findFirstSummaries(Limit limit);
+
+    @Query("""
+        SELECT new com.LlamaTalks.v1.records.ConversationSummary(
+            c.id, c.conversationId, c.title, c.startedAt,
+            (SELECT COUNT(m) FROM Message m WHERE m.conversation = c),
+            (SELECT MAX(m.generatedAt) FROM Message m WHERE m.conversation = c))
+        FROM Conversation c
+        WHERE c.startedAt < :startedAt OR (c.startedAt = :startedAt AND c.id < :id)
+        ORDER BY c.startedAt DESC, c.id DESC
+        """)
+    List<ConversationSummary> findSummariesBefore(@Param("startedAt") LocalDateTime startedAt, @Param("id") Long id, Limit limit);
+
+    // Only moves forward, a compaction that finished late never overwrites a newer summary
+    @Modifying
+    @Transactional
+    @Query("""
+        UPDATE Conversation c
+        SET c.summary = :summary, c.summarizedThrough = :through
+        WHERE c.id = :id
+        AND (c.summarizedThrough IS NULL OR c.summarizedThrough < :through)
+        """)
+    int updateSummary(@Param("id") Long id, @Param("summary") String summary, @Param("through") long through);
 }
@@ -1,21 +1,27 @@
 package com.LlamaTalks.v1.repository;
 
-import java.util.List;
 import java.util.UUID;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.LlamaTalks.v1.models.Embedding;
 
+import jakarta.transaction.Transactional;
+
 @Repository
 public interface EmbeddingRepository extends JpaRepository<Embedding, UUID> {
     
+    @Modifying
+    @Transactional
     @Query(value = """
-        SELECT embedding_id, metadata->>'fileName' 
-        FROM embeddings
-        WHERE metadata->>'fileName' IS NOT NULL
+        DELETE FROM embeddings
+        WHERE metadata->>'fileName' = :fileName
+        AND metadata->>'absolute_directory_path' = :directory
+        AND metadata->>'filePath' IS NULL
         """, nativeQuery = true)
-    List<Object[]> findAllFileNames();
+    int deleteLegacyChunks(@Param("fileName") String fileName, @Param("directory") String directory);
 }
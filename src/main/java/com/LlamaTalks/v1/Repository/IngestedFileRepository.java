@@ -0,0 +1,11 @@
+package com.LlamaTalks.v1.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import com.LlamaTalks.v1.models.IngestedFile;
+
+public interface IngestedFileRepository extends JpaRepository<IngestedFile, Long>{
+    List<IngestedFile> findByPathStartingWith(String prefix);
+}
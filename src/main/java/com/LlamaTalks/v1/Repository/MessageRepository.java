@@ -2,10 +2,51 @@ package com.LlamaTalks.v1.repository;
 
 import java.util.List;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.LlamaTalks.v1.models.Message;
+import com.LlamaTalks.v1.records.MessageDTO;
+import com.LlamaTalks.v1.records.StoredMessage;
 
 public interface MessageRepository extends JpaRepository<Message, Long>{
-    List<Message> findByConversation_ConversationId(String conversationId);
-}
\ No newline at end of file
+
+    // Newest first, callers reverse. Only role and content are read, no entities are managed
+    @Query("""
+        SELECT new com.LlamaTalks.v1.records.StoredMessage(m.role, m.content)
+        FROM Message m
+        WHERE m.conversation.conversationId = :conversationId
+        ORDER BY m.id DESC
+        """)
+    List<StoredMessage> findRecentByConversationId(@Param("conversationId") String conversationId, Limit limit);
+
+    @Query("""
+        SELECT new com.LlamaTalks.v1.records.MessageDTO(m.id, m.role, m.content, m.generatedAt)
+        FROM Message m
+        WHERE m.conversation.conversationId = :conversationId
+        AND m.id < :beforeId
+        ORDER BY m.id DESC
+        """)
+    List<MessageDTO> findPageByConversationId(@Param("conversationId") String conversationId,
+                                                @Param("beforeId") long beforeId, Limit limit);
+
+    // Messages not folded into the conversation's summary yet, oldest first
+    @Query("""
+        SELECT new com.LlamaTalks.v1.records.MessageDTO(m.id, m.role, m.content, m.generatedAt)
+        FROM Message m
+        WHERE m.conversation.id = :conversationId
+        AND m.id > :afterId
+        ORDER BY m.id ASC
+        """)
+    List<MessageDTO> findAfter(@Param("conversationId") long conversationId, @Param("afterId") long afterId, Limit limit);
+
+    @Query("""
+        SELECT COUNT(m)
+        FROM Message m
+        WHERE m.conversation.id = :conversationId
+        AND m.id > :afterId
+        """)
+    long countAfter(@Param("conversationId") long conversationId, @Param("afterId") long afterId);
+}
@@ -1,17 +1,20 @@
 package com.LlamaTalks.v1.service;
 
-import java.util.List;
+import org.springframework.http.codec.ServerSentEvent;
 
 import com.LlamaTalks.v1.models.Conversation;
 import com.LlamaTalks.v1.records.ChatRequest;
 import com.LlamaTalks.v1.records.ChatResponse;
+import com.LlamaTalks.v1.records.ConversationPage;
+import com.LlamaTalks.v1.records.MessagePage;
 
 import reactor.core.publisher.Flux;
 
 public interface ChatService {
-    ChatResponse chat(ChatRequest message);
-    Flux<ChatResponse> streamChat(ChatRequest message);
-    List<Conversation> getAllMessages();
+    ChatResponse chat(ChatRequest message, String clientId);
+    Flux<ServerSentEvent<Object>> streamChat(ChatRequest message, String clientId);
+    ConversationPage getConversations(String cursor, int size);
+    MessagePage getMessages(String conversationId, String before, int size);
     Conversation getConversationById(String conversationId);
     void deleteConverstaion(String conversationId);
     void changeTitle(String title, String conversationId);
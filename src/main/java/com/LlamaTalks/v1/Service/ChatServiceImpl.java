@@ -1,37 +1,64 @@
 package com.LlamaTalks.v1.service;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Base64;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
 
+import com.LlamaTalks.v1.chat.ConversationCompactor;
+import com.LlamaTalks.v1.chat.ConversationMemoryCache;
+import com.LlamaTalks.v1.chat.GenerationScheduler;
+import com.LlamaTalks.v1.chat.GenerationScheduler.Permit;
+import com.LlamaTalks.v1.chat.GenerationScheduler.Ticket;
+import com.LlamaTalks.v1.chat.MessagePersister;
+import com.LlamaTalks.v1.chat.OllamaPromptCache;
+import com.LlamaTalks.v1.chat.PromptAssembler;
+import com.LlamaTalks.v1.chat.PromptAssembler.Prompt;
+import com.LlamaTalks.v1.chat.TokenCoalescer;
 import com.LlamaTalks.v1.exception.ConversationIdNotFound;
+import com.LlamaTalks.v1.exception.InvalidCursor;
 import com.LlamaTalks.v1.models.Conversation;
 import com.LlamaTalks.v1.models.Message;
 import com.LlamaTalks.v1.models.MessageRole;
+import com.LlamaTalks.v1.rag.RetrievalFilters;
+import com.LlamaTalks.v1.rag.SemanticAnswerCache;
 import com.LlamaTalks.v1.records.ChatRequest;
 import com.LlamaTalks.v1.records.ChatResponse;
+import com.LlamaTalks.v1.records.ChatStreamChunk;
+import com.LlamaTalks.v1.records.ChatStreamStart;
+import com.LlamaTalks.v1.records.ConversationPage;
+import com.LlamaTalks.v1.records.ConversationSummary;
+import com.LlamaTalks.v1.records.MessageDTO;
+import com.LlamaTalks.v1.records.MessagePage;
+import com.LlamaTalks.v1.records.QueuePosition;
 import com.LlamaTalks.v1.repository.ConverstaionRepository;
 import com.LlamaTalks.v1.repository.MessageRepository;
 
 import dev.langchain4j.data.message.AiMessage;
-import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ChatMessage;
 import dev.langchain4j.data.message.UserMessage;
-import dev.langchain4j.memory.ChatMemory;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
 import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
 import dev.langchain4j.model.ollama.OllamaChatModel;
 import dev.langchain4j.model.ollama.OllamaStreamingChatModel;
 import dev.langchain4j.rag.content.Content;
 import dev.langchain4j.rag.content.retriever.ContentRetriever;
-import dev.langchain4j.rag.query.Query;
+import dev.langchain4j.store.embedding.filter.Filter;
 import jakarta.transaction.Transactional;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Scheduler;
 
 @Service
 public class ChatServiceImpl implements ChatService{
@@ -40,11 +67,32 @@ public class ChatServiceImpl implements ChatService{
     private final ConverstaionRepository conversationRepository;
     private final MessageRepository messageRepository;
     private final ContentRetriever contentRetriever;
+    private final ConversationMemoryCache conversationMemory;
+    private final MessagePersister messagePersister;
+    private final SemanticAnswerCache answerCache;
+    private final TokenCoalescer tokenCoalescer;
+    private final Scheduler chatScheduler;
+    private final GenerationScheduler generationScheduler;
+    private final PromptAssembler promptAssembler;
+    private final ConversationCompactor conversationCompactor;
+    private final OllamaPromptCache promptCache;
     private final Logger logger = LoggerFactory.getLogger(ChatServiceImpl.class);
 
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final Duration QUEUE_POLL_INTERVAL = Duration.ofMillis(500);
+
     public ChatServiceImpl(ConverstaionRepository converstaionRepository, 
                             MessageRepository messageRepository, 
                             ContentRetriever contentRetriever, 
+                            ConversationMemoryCache conversationMemory,
+                            MessagePersister messagePersister,
+                            SemanticAnswerCache answerCache,
+                            TokenCoalescer tokenCoalescer,
+                            Scheduler chatScheduler,
+                            GenerationScheduler generationScheduler,
+                            PromptAssembler promptAssembler,
+                            ConversationCompactor conversationCompactor,
+                            OllamaPromptCache promptCache,
                             OllamaChatModel ollama,
                             OllamaStreamingChatModel ollamaStream ){
         this.ollama = ollama;
@@ -52,121 +100,119 @@ public class ChatServiceImpl implements ChatService{
         this.conversationRepository = converstaionRepository;
         this.messageRepository = messageRepository;
         this.contentRetriever = contentRetriever;
+        this.conversationMemory = conversationMemory;
+        this.messagePersister = messagePersister;
+        this.answerCache = answerCache;
+        this.tokenCoalescer = tokenCoalescer;
+        this.chatScheduler = chatScheduler;
+        this.generationScheduler = generationScheduler;
+        this.promptAssembler = promptAssembler;
+        this.conversationCompactor = conversationCompactor;
+        this.promptCache = promptCache;
     }
 
     @Override
-    public ChatResponse chat(ChatRequest message){
-        if(message == null || message.message() == null || message.message().isEmpty()){
-            this.logger.error("Recieved empty chat request");
-            throw new IllegalArgumentException("Message cannot be empty");
+    public ChatResponse chat(ChatRequest message, String clientId){
+        validate(message);
+
+        // Queued first so an overloaded server rejects before doing any work
+        Ticket ticket = this.generationScheduler.enqueue(clientId);
+        Turn turn;
+        try {
+            turn = prepareTurn(message);
+        } catch (RuntimeException e) {
+            ticket.cancel();
+            throw e;
         }
-
-        String conversationId = prepareConversation(message);
-        ChatMemory memory = prepareChatMemory(conversationId);
-
-        // Docs retrieval
-        this.logger.info("Retrieving docs for conversation: {}", conversationId);
-        List<Content> relevantContents = contentRetriever.retrieve(Query.from(message.message()));
-        String context = relevantContents.stream()
-                                        .map(content -> content.textSegment().text())
-                                        .collect(Collectors.joining("\n\n"));
-
-        if (!context.isEmpty()) {
-            this.logger.info("Found context, length: {} chars", context.length());
-            SystemMessage systemMessage = SystemMessage.from(
-                "Use the following context to answer the user's question:\n\n" + context
-            );
-            memory.add(systemMessage);
-        } else {
-            this.logger.warn("context is empty, no docs found");
+        String conversationId = turn.conversation().getConversationId();
+        if (turn.cachedAnswer().isPresent()) {
+            ticket.cancel();
+            this.logger.info("Answered from semantic cache for conversation: {}", conversationId);
+            saveUserMessage(turn.conversation(), turn.question());
+            saveAiMessage(turn.conversation(), turn.cachedAnswer().get(), turn.context());
+            return new ChatResponse(turn.cachedAnswer().get(), conversationId);
         }
 
-        UserMessage userMessage = UserMessage.from(message.message());
-        memory.add(userMessage);
-
-        saveUserMessage(conversationId, message.message());
-
+        // A question turned away by admission control is not kept, it would come back as history
+        Permit permit = ticket.await();
+        saveUserMessage(turn.conversation(), turn.question());
         this.logger.info("Sending request to Ollama");
-        AiMessage response = this.ollama.chat(memory.messages()).aiMessage();
+        long start = System.nanoTime();
+        AiMessage response;
+        try {
+            dev.langchain4j.model.chat.response.ChatResponse chatResponse = this.ollama.chat(this.promptCache.request(turn.messages()));
+            this.promptCache.record(turn.promptTokens(), chatResponse);
+            response = chatResponse.aiMessage();
+        } finally {
+            permit.release();
+        }
         this.logger.info("Received response from Ollama, length: {} chars", response.text().length());
         
-        memory.add(response);
-        saveAiMessage(conversationId, response.text(), context);
+        saveAiMessage(turn.conversation(), response.text(), turn.context());
+        storeAnswer(turn, response.text(), start);
         
         return new ChatResponse(response.text(), conversationId);
     }
 
+    // Nothing runs on the request thread: lookups, retrieval and the query embedding happen
+    // on the chat scheduler once the response subscribes, then tokens arrive on Ollama's threads
     @Override
-    public Flux<ChatResponse> streamChat(ChatRequest message){
-        if(message == null || message.message() == null || message.message().isEmpty()){
-            this.logger.error("Recieved empty chat request");
-            throw new IllegalArgumentException("Message cannot be empty");
-        }
-
-        final String conversationId = prepareConversation(message);
-        
-        ChatMemory memory = prepareChatMemory(conversationId);
+    public Flux<ServerSentEvent<Object>> streamChat(ChatRequest message, String clientId){
+        validate(message);
+
+        Ticket ticket = this.generationScheduler.enqueue(clientId);
+        // The ticket is given back by whoever leaves first, until generate() takes over the permit:
+        // from then on the slot stays taken until Ollama is done, even if the client is gone
+        AtomicBoolean generating = new AtomicBoolean();
+        return Mono.fromCallable(() -> prepareTurn(message))
+                    .subscribeOn(this.chatScheduler)
+                    .flatMapMany(turn -> streamTurn(turn, ticket, generating))
+                    .doOnError(error -> cancelUnlessGenerating(ticket, generating))
+                    // After the cancel went upstream, or the ticket's own Mono would signal a dropped error
+                    .doFinally(signal -> {
+                        if (signal == SignalType.CANCEL) {
+                            cancelUnlessGenerating(ticket, generating);
+                        }
+                    });
+    }
 
-        // Docs retrieval
-        this.logger.info("Retrieving docs for conversation: {}", conversationId);
-        List<Content> relevantContents = contentRetriever.retrieve(Query.from(message.message()));
-        String context = relevantContents.stream()
-                                        .map(content -> content.textSegment().text())
-                                        .collect(Collectors.joining("\n\n"));
-
-        if (!context.isEmpty()) {
-            SystemMessage systemMessage = SystemMessage.from(
-                "Use the following context to answer the user's question:\n\n" + context
-            );
-            memory.add(systemMessage);
+    // Summaries only, the messages of a conversation are paged separately
+    @Override
+    public ConversationPage getConversations(String cursor, int size){
+        int pageSize = Math.min(Math.max(1, size), MAX_PAGE_SIZE);
+        List<ConversationSummary> conversations;
+        if (cursor == null || cursor.isBlank()) {
+            conversations = this.conversationRepository.findFirstSummaries(Limit.of(pageSize));
         } else {
-            this.logger.warn("context is empty, no docs found");
+            ConversationCursor position = decodeCursor(cursor);
+            conversations = this.conversationRepository.findSummariesBefore(position.startedAt(), position.id(), Limit.of(pageSize));
         }
 
-        UserMessage userMessage = UserMessage.from(message.message());
-        memory.add(userMessage);
-        
-        saveUserMessage(conversationId, message.message());
-
-        StringBuilder aiResponse = new StringBuilder();
-
-        Flux<ChatResponse> flux = Flux.create(emitter -> {
-            this.logger.info("Sending request to Ollama and streaming the response");
-            this.ollamaStream.chat(memory.messages(), new StreamingChatResponseHandler() {
-                
-                @Override
-                public void onPartialResponse(String partialResponse) {
-                    emitter.next(new ChatResponse(partialResponse, conversationId));
-                    aiResponse.append(partialResponse);
-                }
-
-                @Override
-                public void onError(Throwable error) {
-                    emitter.error(error);
-                }
-
-                @Override
-                public void onCompleteResponse(dev.langchain4j.model.chat.response.ChatResponse completeResponse) {
-                    saveAiMessage(conversationId, aiResponse.toString(), context);
-                    emitter.complete();
-                }
-                
-            });
-        });
-        this.logger.info("Received response from Ollama");
-        return flux;
+        String nextCursor = null;
+        if (conversations.size() == pageSize) {
+            ConversationSummary last = conversations.get(conversations.size() - 1);
+            nextCursor = encodeCursor(last.startedAt() + "|" + last.id());
+        }
+        return new ConversationPage(conversations, nextCursor);
     }
 
     @Override
-    public List<Conversation> getAllMessages(){
-        List<Conversation> responses = this.conversationRepository.findAll();
+    public MessagePage getMessages(String conversationId, String before, int size){
+        if (this.conversationRepository.findByConversationId(conversationId) == null) {
+            throw new ConversationIdNotFound("Conversation not found");
+        }
+
+        int pageSize = Math.min(Math.max(1, size), MAX_PAGE_SIZE);
+        List<MessageDTO> messages = this.messageRepository.findPageByConversationId(
+            conversationId, decodeMessageCursor(before), Limit.of(pageSize));
 
-        return responses;
+        Long nextCursor = messages.size() == pageSize ? messages.get(messages.size() - 1).id() : null;
+        return new MessagePage(messages, nextCursor);
     }
 
     @Override
     public Conversation getConversationById(String conversationId){
-        Conversation conversation = this.conversationRepository.findByConversationId(conversationId);
+        Conversation conversation = this.conversationRepository.findWithMessagesByConversationId(conversationId);
         if(conversation == null){
             throw new ConversationIdNotFound("Conversation not found");
         }
@@ -185,6 +231,7 @@ public class ChatServiceImpl implements ChatService{
 
         this.logger.info("Deleting conversation with id: {}", conversationId);
         this.conversationRepository.delete(conversation);
+        this.conversationMemory.deleteMessages(conversationId);
     }
 
     @Transactional
@@ -209,71 +256,55 @@ public class ChatServiceImpl implements ChatService{
     //         Helper methods         //
     ////////////////////////////////////
 
+    // The conversation is looked up once per turn, both messages reuse it for their FK
     @Transactional
-    public String prepareConversation(ChatRequest message){
+    public Conversation prepareConversation(ChatRequest message){
         String conversationId = message.conversationId();
-        this.logger.info("Creating new conversation with id: {}", conversationId);
 
-        if(conversationId == null || conversationId.isBlank()){
-            conversationId = UUID.randomUUID().toString();
-        } else {
+        if(conversationId != null && !conversationId.isBlank()){
             Conversation existing = this.conversationRepository.findByConversationId(conversationId);
             if (existing == null) {
                 this.logger.error("Conversation not found: {}", conversationId);
                 throw new ConversationIdNotFound("Conversation not found: " + conversationId);
             }
             this.logger.debug("Using existing conversationId: {}", conversationId);
-            return conversationId;
+            return existing;
         }
 
-        Conversation conversation = this.conversationRepository.findByConversationId(conversationId);
-        if(conversation == null){
-            conversation = new Conversation();
-            conversation.setConversationId(conversationId);
-            conversation.setStartedAt(LocalDateTime.now());
-            conversation.setTitle(message.message().length() > 64 ? message.message().substring(0, 63) : message.message());
-            conversation = this.conversationRepository.save(conversation);
-            this.logger.info("Saved new conversation: {}", conversationId);
-        }
+        conversationId = UUID.randomUUID().toString();
+        this.logger.info("Creating new conversation with id: {}", conversationId);
+        Conversation conversation = new Conversation();
+        conversation.setConversationId(conversationId);
+        conversation.setStartedAt(LocalDateTime.now());
+        conversation.setTitle(message.message().length() > 64 ? message.message().substring(0, 63) : message.message());
+        conversation = this.conversationRepository.save(conversation);
+        this.logger.info("Saved new conversation: {}", conversationId);
 
-        return conversationId;
+        return conversation;
     }
 
-    @Transactional
-    public void saveUserMessage(String conversationId, String message){
+    public void saveUserMessage(Conversation conversation, String message){
         if(message == null || message.isBlank()){
             this.logger.error("Attempted to save empty user message");
             throw new IllegalArgumentException("Message cannot be empty");
         }
 
-        Conversation conversation = this.conversationRepository.findByConversationId(conversationId);
-        if(conversation == null){
-            this.logger.error("Conversation not found when saving user message");
-            throw new ConversationIdNotFound("Conversation not found");
-        } 
-
         Message userMsg = new Message();
         userMsg.setConversation(conversation);
         userMsg.setContent(message);
         userMsg.setRole(MessageRole.USER);
         userMsg.setGeneratedAt(LocalDateTime.now());
-        this.messageRepository.save(userMsg);
-        this.logger.info("Saved user message for conversation: {}", conversationId);
+        this.messagePersister.enqueue(userMsg);
+        this.conversationMemory.append(conversation.getConversationId(), UserMessage.from(message));
+        this.logger.info("Queued user message for conversation: {}", conversation.getConversationId());
     }
 
-    @Transactional
-    public void saveAiMessage(String conversationId, String content, String context) {
+    public void saveAiMessage(Conversation conversation, String content, String context) {
         if(content == null || content.isBlank()){
             this.logger.error("Attempted to save empty ai message");
             throw new IllegalArgumentException("AI response cannot be empty");
         }
 
-        Conversation conversation = conversationRepository.findByConversationId(conversationId);
-        if(conversation == null){
-            this.logger.error("Conversation not found when saving ai message");
-            throw new ConversationIdNotFound("Conversation not found");
-        } 
-
         Message aiMsg = new Message();
         aiMsg.setConversation(conversation);
         aiMsg.setContent(content);
@@ -282,22 +313,184 @@ public class ChatServiceImpl implements ChatService{
         aiMsg.setContext(context != null && context.length() > 255 
                                                     ? context.substring(0, 255) 
                                                     : (context != null ? context : "No context"));
-        messageRepository.save(aiMsg);
-        this.logger.info("Saved ai message for conversation: {}", conversationId);
+        this.messagePersister.enqueue(aiMsg);
+        this.conversationMemory.append(conversation.getConversationId(), AiMessage.from(content));
+        this.logger.info("Queued ai message for conversation: {}", conversation.getConversationId());
+        this.conversationCompactor.schedule(conversation);
     }
 
-    private ChatMemory prepareChatMemory(String conversationId){
-        ChatMemory memory = MessageWindowChatMemory.withMaxMessages(20);
-        
-        List<Message> dbMessages = this.messageRepository.findByConversation_ConversationId(conversationId);
-        for(Message m: dbMessages){
-            if(m.getRole().equals(MessageRole.USER)){
-                memory.add(UserMessage.from(m.getContent()));
-            } else {
-                memory.add(AiMessage.from(m.getContent()));
-            }
+    private static String encodeCursor(String position){
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ConversationCursor decodeCursor(String cursor){
+        try {
+            String[] position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+            return new ConversationCursor(LocalDateTime.parse(position[0]), Long.parseLong(position[1]));
+        } catch (RuntimeException e) {
+            throw new InvalidCursor("Invalid cursor: " + cursor);
+        }
+    }
+
+    // The id of the oldest message already shown, no cursor starts from the newest message
+    private static long decodeMessageCursor(String before){
+        if (before == null || before.isBlank()) {
+            return Long.MAX_VALUE;
+        }
+        try {
+            return Long.parseLong(before);
+        } catch (NumberFormatException e) {
+            throw new InvalidCursor("Invalid cursor: " + before);
+        }
+    }
+
+    private record ConversationCursor(LocalDateTime startedAt, long id) {}
+
+    private record Turn(Conversation conversation, List<ChatMessage> messages, int promptTokens, boolean firstTurn,
+                        String question, List<Content> contents, String context, Optional<String> cachedAnswer) {}
+
+    private void validate(ChatRequest message){
+        if(message == null || message.message() == null || message.message().isEmpty()){
+            this.logger.error("Recieved empty chat request");
+            throw new IllegalArgumentException("Message cannot be empty");
+        }
+        // Checked up front as well, so a streamed request is rejected before the stream starts
+        RetrievalFilters.toFilter(message.filter());
+    }
+
+    // Everything that happens before generation: conversation, history, docs retrieval and the
+    // token budgeted prompt. The user message is saved once the turn is answered from cache or
+    // gets a model slot.
+    private Turn prepareTurn(ChatRequest message){
+        Conversation conversation = prepareConversation(message);
+        String conversationId = conversation.getConversationId();
+        List<ChatMessage> history = this.conversationMemory.getMessages(conversationId);
+        boolean firstTurn = history.isEmpty();
+
+        // Docs retrieval
+        this.logger.info("Retrieving docs for conversation: {}", conversationId);
+        Filter filter = RetrievalFilters.toFilter(message.filter());
+        List<Content> relevantContents = contentRetriever.retrieve(RetrievalFilters.query(message.message(), filter));
+
+        // Turns older than the memory window only reach the model through the summary
+        Prompt prompt = this.promptAssembler.assemble(conversation.getSummary(), history, relevantContents, message.message());
+        if (!prompt.contents().isEmpty()) {
+            this.logger.info("Found context, {} of {} chunks, {} chars", prompt.contents().size(), relevantContents.size(),
+                                prompt.context().length());
+        } else {
+            this.logger.warn("context is empty, no docs found");
         }
+        this.logger.debug("Prompt tokens for conversation {}: summary {}, history {}, context {}, question {}", conversationId,
+                            prompt.summaryTokens(), prompt.historyTokens(), prompt.contextTokens(), prompt.questionTokens());
+
+        // Only first turns are cached: later answers depend on the conversation so far
+        Optional<String> cached = firstTurn
+                                    ? this.answerCache.lookup(message.message(), prompt.contents())
+                                    : Optional.empty();
+        return new Turn(conversation, prompt.messages(), prompt.tokens(), firstTurn, message.message(), prompt.contents(),
+                        prompt.context(), cached);
+    }
+
+    private Flux<ServerSentEvent<Object>> streamTurn(Turn turn, Ticket ticket, AtomicBoolean generating){
+        String conversationId = turn.conversation().getConversationId();
+        if (turn.cachedAnswer().isPresent()) {
+            ticket.cancel();
+            this.logger.info("Answered from semantic cache for conversation: {}", conversationId);
+            saveUserMessage(turn.conversation(), turn.question());
+            saveAiMessage(turn.conversation(), turn.cachedAnswer().get(), turn.context());
+            return Flux.just(startEvent(conversationId), chunkEvent(turn.cachedAnswer().get()));
+        }
+
+        // Position updates while waiting for a model slot, nothing at all when one is free right away
+        Flux<ServerSentEvent<Object>> queue = Flux.interval(Duration.ZERO, QUEUE_POLL_INTERVAL)
+                                                .map(tick -> ticket.position())
+                                                .takeWhile(position -> position > 0)
+                                                .distinctUntilChanged()
+                                                .takeUntilOther(Mono.fromFuture(ticket.granted(), true).onErrorComplete())
+                                                .map(this::queueEvent);
+
+        // Cancelling while still queued cancels the ticket's future, which leaves the queue
+        Flux<String> tokens = Mono.fromFuture(ticket.granted())
+                                    .flatMapMany(permit -> generate(turn, permit, generating));
+
+        // The conversation id goes out once up front, every later frame only carries text
+        return Flux.concat(Flux.just(startEvent(conversationId)),
+                            queue,
+                            this.tokenCoalescer.coalesce(tokens).map(this::chunkEvent));
+    }
+
+    private void cancelUnlessGenerating(Ticket ticket, AtomicBoolean generating){
+        if (!generating.get()) {
+            ticket.cancel();
+        }
+    }
+
+    private Flux<String> generate(Turn turn, Permit permit, AtomicBoolean generating){
+        String conversationId = turn.conversation().getConversationId();
+        StringBuilder aiResponse = new StringBuilder();
+        long start = System.nanoTime();
+
+        return Flux.create(emitter -> {
+            generating.set(true);
+            // The client may already be gone while the turn was being prepared
+            if (emitter.isCancelled()) {
+                this.logger.info("Stream cancelled before generation for conversation: {}", conversationId);
+                permit.release();
+                return;
+            }
+            saveUserMessage(turn.conversation(), turn.question());
+            // Ollama cannot be interrupted mid-generation, so the answer is still saved and the
+            // slot only freed once it completes, the client just stops receiving it
+            emitter.onCancel(() -> this.logger.info("Client left the stream for conversation: {}", conversationId));
 
-        return memory;
+            this.logger.info("Sending request to Ollama and streaming the response");
+            try {
+                this.ollamaStream.chat(this.promptCache.request(turn.messages()), new StreamingChatResponseHandler() {
+                    
+                    @Override
+                    public void onPartialResponse(String partialResponse) {
+                        aiResponse.append(partialResponse);
+                        emitter.next(partialResponse);
+                    }
+
+                    @Override
+                    public void onError(Throwable error) {
+                        permit.release();
+                        emitter.error(error);
+                    }
+
+                    @Override
+                    public void onCompleteResponse(dev.langchain4j.model.chat.response.ChatResponse completeResponse) {
+                        permit.release();
+                        promptCache.record(turn.promptTokens(), completeResponse);
+                        saveAiMessage(turn.conversation(), aiResponse.toString(), turn.context());
+                        storeAnswer(turn, aiResponse.toString(), start);
+                        emitter.complete();
+                    }
+                    
+                });
+            } catch (RuntimeException e) {
+                permit.release();
+                emitter.error(e);
+            }
+        });
+    }
+
+    private ServerSentEvent<Object> startEvent(String conversationId){
+        return ServerSentEvent.builder().event("conversation").data(new ChatStreamStart(conversationId)).build();
+    }
+
+    private ServerSentEvent<Object> queueEvent(int position){
+        return ServerSentEvent.builder().event("queue").data(new QueuePosition(position)).build();
+    }
+
+    private ServerSentEvent<Object> chunkEvent(String text){
+        return ServerSentEvent.builder().data(new ChatStreamChunk(text)).build();
+    }
+
+    private void storeAnswer(Turn turn, String answer, long startNanos){
+        if (turn.firstTurn()) {
+            this.answerCache.store(turn.question(), turn.contents(), answer, Duration.ofNanos(System.nanoTime() - startNanos));
+        }
     }
 }
@@ -1,11 +1,12 @@
 package com.LlamaTalks.v1.service;
 
-import java.util.List;
-import java.util.concurrent.CompletableFuture;
-
-import com.LlamaTalks.v1.records.FileNameDTO;
+import com.LlamaTalks.v1.ingestion.IngestionJob;
+import com.LlamaTalks.v1.records.IngestedFilePage;
+import com.LlamaTalks.v1.records.IngestionJobStatus;
 
 public interface IngestionService {
-    CompletableFuture<String> ingestDirectory(String dirPath);
-    List<FileNameDTO> getAllFileNames();
+    IngestionJob ingestDirectory(String dirPath);
+    IngestionJobStatus getJob(String jobId);
+    IngestionJobStatus cancelJob(String jobId);
+    IngestedFilePage getIngestedFiles(int page, int size);
 }
@@ -1,114 +1,251 @@
 package com.LlamaTalks.v1.service;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
-import java.util.UUID;
-import java.util.concurrent.CompletableFuture;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
-import com.LlamaTalks.v1.records.FileNameDTO;
-import com.LlamaTalks.v1.repository.EmbeddingRepository;
-
-import dev.langchain4j.data.document.Document;
-import dev.langchain4j.data.document.DocumentSplitter;
-import dev.langchain4j.data.document.loader.FileSystemDocumentLoader;
-import dev.langchain4j.data.document.parser.apache.tika.ApacheTikaDocumentParser;
-import dev.langchain4j.data.document.splitter.DocumentSplitters;
-import dev.langchain4j.data.embedding.Embedding;
-import dev.langchain4j.data.segment.TextSegment;
-import dev.langchain4j.model.embedding.EmbeddingModel;
-import dev.langchain4j.store.embedding.EmbeddingStore;
-import jakarta.transaction.Transactional;
+import com.LlamaTalks.v1.exception.IngestionDirectoryNotFound;
+import com.LlamaTalks.v1.exception.IngestionJobNotFound;
+import com.LlamaTalks.v1.ingestion.IngestionCompletedEvent;
+import com.LlamaTalks.v1.ingestion.IngestionJob;
+import com.LlamaTalks.v1.ingestion.IngestionJobs;
+import com.LlamaTalks.v1.ingestion.IngestionManifest;
+import com.LlamaTalks.v1.ingestion.IngestionPipeline;
+import com.LlamaTalks.v1.ingestion.PipelineListener;
+import com.LlamaTalks.v1.ingestion.PipelineResult;
+import com.LlamaTalks.v1.models.IngestedFile;
+import com.LlamaTalks.v1.records.IngestedFileDTO;
+import com.LlamaTalks.v1.records.IngestedFilePage;
+import com.LlamaTalks.v1.records.IngestionJobStatus;
+import com.LlamaTalks.v1.repository.IngestedFileRepository;
 
 @Service
 public class IngestionServiceImpl implements IngestionService{
-    private final DocumentSplitter splitter;
-    private final EmbeddingModel embeddingModel;
-    private final EmbeddingStore<TextSegment> embeddingStore;
-    private final EmbeddingRepository embeddingRepository;
+    private final IngestionPipeline ingestionPipeline;
+    private final IngestionManifest ingestionManifest;
+    private final IngestionJobs ingestionJobs;
+    private final IngestedFileRepository ingestedFileRepository;
+    private final ApplicationEventPublisher eventPublisher;
     private final Logger logger = LoggerFactory.getLogger(IngestionServiceImpl.class);
 
 
-    public IngestionServiceImpl(EmbeddingModel embeddingModel, EmbeddingStore<TextSegment> embeddingStore, EmbeddingRepository embeddingRepository){
-        this.splitter = DocumentSplitters.recursive(2000, 50);
-        this.embeddingModel = embeddingModel;
-        this.embeddingStore = embeddingStore;
-        this.embeddingRepository = embeddingRepository;
+    private static final int MAX_PAGE_SIZE = 200;
+
+    public IngestionServiceImpl(IngestionPipeline ingestionPipeline, IngestionManifest ingestionManifest,
+                                IngestionJobs ingestionJobs, IngestedFileRepository ingestedFileRepository,
+                                ApplicationEventPublisher eventPublisher){
+        this.ingestionPipeline = ingestionPipeline;
+        this.ingestionManifest = ingestionManifest;
+        this.ingestionJobs = ingestionJobs;
+        this.ingestedFileRepository = ingestedFileRepository;
+        this.eventPublisher = eventPublisher;
     }
 
+    // A bad path is rejected right away rather than as a failed job
     @Override
-    @Transactional
-    public CompletableFuture<String> ingestDirectory(String dirPath) {
-        return CompletableFuture.supplyAsync(() -> {
-            String batchId = UUID.randomUUID().toString();
-            
-            this.logger.info("Scanning directory: {}", dirPath);
-            Path path = Paths.get(dirPath);
-            if (!Files.exists(path) || !Files.isDirectory(path)) {
-                this.logger.error("Directory does not exist: {}", dirPath);
-                throw new IllegalArgumentException("Directory does not exist: " + dirPath);
-            }
-        
-            ApacheTikaDocumentParser parser = new ApacheTikaDocumentParser();
-            List<Document> documents;
-            try {
-                documents = FileSystemDocumentLoader.loadDocumentsRecursively(dirPath, parser);
-            } catch (Exception e) {
-                this.logger.error("Failed to load documents from: {}", dirPath);
-                throw new RuntimeException("Failed to load documents from: " + dirPath, e);
-            }
+    public IngestionJob ingestDirectory(String dirPath) {
+        Path path = Paths.get(dirPath);
+        if (!Files.isDirectory(path)) {
+            this.logger.error("Directory does not exist: {}", dirPath);
+            throw new IngestionDirectoryNotFound("Directory does not exist: " + dirPath);
+        }
+        return this.ingestionJobs.submit(dirPath, job -> ingest(job, dirPath));
+    }
+
+    @Override
+    public IngestionJobStatus getJob(String jobId) {
+        return findJob(jobId).snapshot();
+    }
+
+    @Override
+    public IngestionJobStatus cancelJob(String jobId) {
+        IngestionJob job = findJob(jobId);
+        job.cancel();
+        this.logger.info("Cancellation requested for ingestion job {}", jobId);
+        return job.snapshot();
+    }
+
+    // Reads the file registry, one row per file, instead of scanning every chunk in embeddings
+    @Override
+    public IngestedFilePage getIngestedFiles(int page, int size) {
+        int pageNumber = Math.max(0, page);
+        int pageSize = Math.min(Math.max(1, size), MAX_PAGE_SIZE);
+        Page<IngestedFile> files = this.ingestedFileRepository.findAll(
+            PageRequest.of(pageNumber, pageSize, Sort.by(Sort.Direction.DESC, "ingestedAt").and(Sort.by("id"))));
+
+        List<IngestedFileDTO> dtos = files.stream()
+            .map(file -> new IngestedFileDTO(
+                file.getFileName(),
+                file.getPath(),
+                file.getChunkCount(),
+                file.getBatchId(),
+                file.getIngestedAt()
+            )).toList();
+        return new IngestedFilePage(dtos, pageNumber, pageSize, files.getTotalElements());
+    }
+
+    ////////////////////////////////////
+    //         Helper methods         //
+    ////////////////////////////////////
 
-            if (documents == null || documents.isEmpty()) {
-                this.logger.error("No files found in directory: {}", dirPath);
-                throw new IllegalStateException("No files found in directory: " + dirPath);
+    private IngestedFile checkForChanges(Path file, BasicFileAttributes attributes, IngestedFile existing){
+        try {
+            IngestedFile entry = this.ingestionManifest.checkForChanges(file, attributes, existing);
+            if (entry == null) {
+                this.logger.debug("Skipping unchanged file: {}", file);
             }
+            return entry;
+        } catch (IOException e) {
+            this.logger.error("Failed to read file: {}", file, e);
+            return null;
+        }
+    }
+
+    private BasicFileAttributes readAttributes(Path file){
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            this.logger.error("Failed to read file: {}", file, e);
+            return null;
+        }
+    }
+
+    // Runs on an ingestion-job thread, the job id doubles as the batchId of every chunk
+    private void ingest(IngestionJob job, String dirPath){
+        String batchId = job.id();
 
-            Set<String> existingFiles = getAllFileNames().stream()
-                                                    .map(FileNameDTO::fileName)
-                                                    .collect(Collectors.toSet());
+        this.logger.info("Scanning directory: {}", dirPath);
+        // It may have gone away while the job was queued
+        Path path = Paths.get(dirPath);
+        if (!Files.isDirectory(path)) {
+            this.logger.error("Directory does not exist: {}", dirPath);
+            throw new IngestionDirectoryNotFound("Directory does not exist: " + dirPath);
+        }
 
-            for (Document document : documents) {
-                String fileName = document.metadata().getString("file_name");
-                this.logger.info("Ingesting document: {}", fileName);
+        // Counting pass only keeps a number, the ETA is derived from it
+        long total;
+        try (Stream<Path> walk = Files.walk(path)) {
+            total = walk.filter(Files::isRegularFile).count();
+        } catch (IOException e) {
+            this.logger.error("Failed to load documents from: {}", dirPath);
+            throw new UncheckedIOException("Failed to load documents from: " + dirPath, e);
+        }
+        if (total == 0) {
+            this.logger.error("No files found in directory: {}", dirPath);
+            throw new IllegalStateException("No files found in directory: " + dirPath);
+        }
+        job.setFilesTotal((int) Math.min(Integer.MAX_VALUE, total));
 
-                if (existingFiles.contains(fileName)) {
-                    this.logger.info("Skipping already ingested file: {}", fileName);
-                    continue;
+        // Walked lazily: the pipeline pulls the next path only when it has room for it
+        long maxFileSizeBytes = this.ingestionPipeline.maxFileSizeBytes();
+        Map<String, IngestedFile> manifest = this.ingestionManifest.entriesUnder(path);
+        Map<Path, IngestedFile> pending = new ConcurrentHashMap<>();
+        PipelineResult result;
+        try (Stream<Path> walk = Files.walk(path)) {
+            // Decide per file from the manifest before Tika ever opens it
+            Iterator<Path> changedFiles = walk.filter(Files::isRegularFile)
+                .filter(file -> {
+                    long start = System.nanoTime();
+                    job.fileScanned();
+                    IngestedFile existing = manifest.remove(IngestionManifest.key(file));
+                    BasicFileAttributes attributes = readAttributes(file);
+                    if (attributes == null) {
+                        job.stageCompleted("scan", System.nanoTime() - start);
+                        return false;
+                    }
+                    // Too large to parse, so not worth hashing either; chunks it already has are kept
+                    if (attributes.size() > maxFileSizeBytes) {
+                        this.logger.warn("Skipping {}: {} bytes is over the {} byte limit", file, attributes.size(), maxFileSizeBytes);
+                        job.fileSkipped();
+                        job.stageCompleted("scan", System.nanoTime() - start);
+                        return false;
+                    }
+                    IngestedFile entry = checkForChanges(file, attributes, existing);
+                    if (entry == null) {
+                        job.fileUnchanged();
+                        job.stageCompleted("scan", System.nanoTime() - start);
+                        return false;
+                    }
+                    pending.put(file, entry);
+                    job.stageCompleted("scan", System.nanoTime() - start);
+                    return true;
+                })
+                .iterator();
+
+            result = this.ingestionPipeline.run(changedFiles, batchId, new PipelineListener() {
+                @Override
+                public void onStored(Path file, int chunks) {
+                    job.fileStored(chunks);
+                    IngestedFile entry = pending.remove(file);
+                    if (entry != null) {
+                        entry.setChunkCount(chunks);
+                        entry.setBatchId(batchId);
+                        entry.setIngestedAt(LocalDateTime.now());
+                        ingestionManifest.replaceChunks(entry, batchId);
+                        ingestionManifest.markStored(entry);
+                    }
                 }
 
-                List<TextSegment> segments = splitter.split(document);
-                List<Embedding> embeddings = embeddingModel.embedAll(segments).content();
-                this.logger.info("Embedded segments: {}", embeddings.size());
-            
-                for (int i = 0; i < segments.size(); i++) {
-                    segments.get(i).metadata()
-                        .put("batchId", batchId)
-                        .put("fileName", document.metadata().getString("file_name"))
-                        .put("chunkIndex", i);
-                
-                    embeddingStore.add(embeddings.get(i), segments.get(i));
+                @Override
+                public void onFailed(Path file, Exception error) {
+                    job.fileFailed();
+                    pending.remove(file);
                 }
 
-                existingFiles.add(fileName);
-                this.logger.info("Added {} to existing files", fileName);
-            }
-        return batchId;  
-        });
+                @Override
+                public void onSkipped(Path file) {
+                    job.fileSkipped();
+                    pending.remove(file);
+                }
+
+                @Override
+                public void onEmbedded(Path file, int chunks) {
+                    job.chunksEmbedded(chunks);
+                }
+
+                @Override
+                public void onStageCompleted(String stage, long nanos) {
+                    job.stageCompleted(stage, nanos);
+                }
+
+                @Override
+                public boolean isCancelled() {
+                    return job.isCancelled();
+                }
+            });
+        } catch (IOException e) {
+            this.logger.error("Failed to load documents from: {}", dirPath);
+            throw new UncheckedIOException("Failed to load documents from: " + dirPath, e);
+        }
+
+        // Whatever is left in the manifest was not seen on disk during the walk
+        this.ingestionManifest.removeDeleted(manifest.values());
+
+        this.logger.info("Batch {} done: {} of {} files stored, {} unchanged, {} failed, {} skipped, {} chunks",
+                            batchId, result.filesStored(), total, job.snapshot().filesUnchanged(),
+                            result.filesFailed(), result.filesSkipped(), result.chunksStored());
+        this.eventPublisher.publishEvent(new IngestionCompletedEvent(batchId, result.chunksStored()));
     }
 
-    @Override
-    public List<FileNameDTO> getAllFileNames() {
-    return embeddingRepository.findAllFileNames().stream()
-        .map(row -> new FileNameDTO(
-            (UUID) row[0],
-            (String) row[1]
-        )).toList();
+    private IngestionJob findJob(String jobId){
+        return this.ingestionJobs.find(jobId)
+            .orElseThrow(() -> new IngestionJobNotFound("Ingestion job not found: " + jobId));
     }
 }
@@ -0,0 +1,125 @@
+package com.LlamaTalks.v1.benchmarks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.LlamaTalks.v1.ingestion.BatchingEmbeddingWriter;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+
+// Rows per second of the ingestion store stage before and after BatchingEmbeddingWriter,
+// against a store that pays a fixed round trip per call the way PgVectorEmbeddingStore pays
+// one per add() and one per addAll() batch. A manual benchmark: the numbers depend on the
+// machine, so it only reports them (mvn test -Dgroups=benchmark -DexcludedGroups= runs it).
+@Tag("benchmark")
+class BatchingEmbeddingWriterBenchmarkTest {
+    private static final int ROWS = 300;
+    private static final int CHUNKS_PER_FILE = 10;
+    private static final Duration ROUND_TRIP = Duration.ofMillis(2);
+    private static final Logger logger = LoggerFactory.getLogger(BatchingEmbeddingWriterBenchmarkTest.class);
+
+    @Test
+    void comparePerChunkWritesWithBatchedWrites() {
+        Chunks data = chunks(ROWS);
+
+        RoundTripStore perChunkStore = new RoundTripStore(ROUND_TRIP);
+        long start = System.nanoTime();
+        for (int i = 0; i < ROWS; i++) {
+            perChunkStore.add(data.embeddings().get(i), data.segments().get(i));
+        }
+        double perChunkRowsPerSecond = ROWS / ((System.nanoTime() - start) / 1e9);
+
+        RoundTripStore batchedStore = new RoundTripStore(ROUND_TRIP);
+        BatchingEmbeddingWriter writer = new BatchingEmbeddingWriter(batchedStore, 100, Duration.ofMinutes(1));
+        start = System.nanoTime();
+        for (int i = 0; i < ROWS; i += CHUNKS_PER_FILE) {
+            writer.add(data.embeddings().subList(i, i + CHUNKS_PER_FILE), data.segments().subList(i, i + CHUNKS_PER_FILE), () -> {});
+        }
+        writer.flush();
+        double batchedRowsPerSecond = ROWS / ((System.nanoTime() - start) / 1e9);
+
+        logger.info("per-chunk add: {} rows/s in {} calls | batched addAll: {} rows/s in {} calls",
+            Math.round(perChunkRowsPerSecond), perChunkStore.calls, Math.round(batchedRowsPerSecond), batchedStore.calls);
+        assertEquals(ROWS, perChunkStore.rows);
+        assertEquals(ROWS, batchedStore.rows);
+    }
+
+    private record Chunks(List<Embedding> embeddings, List<TextSegment> segments) {}
+
+    private static Chunks chunks(int count) {
+        List<Embedding> embeddings = new ArrayList<>();
+        List<TextSegment> segments = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            embeddings.add(Embedding.from(new float[]{i}));
+            segments.add(TextSegment.from("chunk " + i));
+        }
+        return new Chunks(embeddings, segments);
+    }
+
+    private static class RoundTripStore implements EmbeddingStore<TextSegment> {
+        private final Duration latency;
+        int calls;
+        int rows;
+
+        RoundTripStore(Duration latency) {
+            this.latency = latency;
+        }
+
+        private void roundTrip(int written) {
+            calls++;
+            rows += written;
+            try {
+                Thread.sleep(latency.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public String add(Embedding embedding) {
+            roundTrip(1);
+            return "id";
+        }
+
+        @Override
+        public void add(String id, Embedding embedding) {
+            roundTrip(1);
+        }
+
+        @Override
+        public String add(Embedding embedding, TextSegment segment) {
+            roundTrip(1);
+            return "id";
+        }
+
+        @Override
+        public List<String> addAll(List<Embedding> embeddings) {
+            roundTrip(embeddings.size());
+            return Collections.nCopies(embeddings.size(), "id");
+        }
+
+        @Override
+        public List<String> addAll(List<Embedding> embeddings, List<TextSegment> segments) {
+            roundTrip(embeddings.size());
+            return Collections.nCopies(embeddings.size(), "id");
+        }
+
+        @Override
+        public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+            return new EmbeddingSearchResult<>(List.of());
+        }
+    }
+}
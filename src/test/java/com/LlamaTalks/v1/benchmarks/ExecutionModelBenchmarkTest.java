@@ -0,0 +1,170 @@
+package com.LlamaTalks.v1.benchmarks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import com.LlamaTalks.v1.chat.MessagePersister;
+import com.LlamaTalks.v1.configuration.EmbeddingSchemaInitializer;
+import com.LlamaTalks.v1.rag.VectorIndexManager;
+import com.LlamaTalks.v1.repository.ConverstaionRepository;
+import com.LlamaTalks.v1.repository.MessageRepository;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.ollama.OllamaChatModel;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+
+// Max concurrent chats through the real POST /chat, on Tomcat's 200 platform threads and with
+// spring.threads.virtual.enabled. The controller, GenerationScheduler (with room for every chat,
+// so only the request threads limit them), prompt assembly and memory are the application's own.
+// Ollama answers after a fixed delay, the repositories, message persister, retriever and vector
+// store are mocks: no Postgres or Ollama is needed, and the database is not part of the measurement.
+// A manual benchmark: the numbers depend on the machine, so it only reports them and is left out
+// of the default test run (mvn test -Dgroups=benchmark -DexcludedGroups= runs it).
+@Tag("benchmark")
+class ExecutionModelBenchmarkTest {
+    static final int CHATS = 1000;
+    private static final Duration GENERATION = Duration.ofSeconds(1);
+    private static final Logger logger = LoggerFactory.getLogger(ExecutionModelBenchmarkTest.class);
+
+    @Nested
+    @TestPropertySource(properties = "spring.threads.virtual.enabled=false")
+    class PlatformThreads extends ChatLoad {
+
+        @Test
+        void reportConcurrentChats() throws Exception {
+            load("platform");
+        }
+    }
+
+    @Nested
+    @TestPropertySource(properties = "spring.threads.virtual.enabled=true")
+    class VirtualThreads extends ChatLoad {
+
+        @Test
+        void reportConcurrentChats() throws Exception {
+            load("virtual");
+        }
+    }
+
+    // One application context per thread mode, the nested classes only pick the mode
+    @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "DB_URL=jdbc:postgresql://localhost:5432/unused",
+        "POSTGRES_USER=unused",
+        "POSTGRES_PASSWORD=unused",
+        "OLLAMA_URL=http://localhost:11434",
+        "DIMENSIONS=768",
+        "EMBEDDING_MODEL=unused",
+        "CHAT_MODEL=unused",
+        "spring.jpa.hibernate.ddl-auto=none",
+        "spring.jpa.database-platform=org.hibernate.dialect.PostgreSQLDialect",
+        "spring.jpa.properties.hibernate.boot.allow_jdbc_metadata_access=false",
+        "ollama.warmup.enabled=false",
+        "chat.compaction.enabled=false",
+        "chat.generation.max-concurrent=" + CHATS,
+        "chat.generation.queue-capacity=" + CHATS,
+        "chat.generation.max-queued-per-client=" + CHATS
+    })
+    abstract static class ChatLoad {
+
+        @MockitoBean
+        private OllamaChatModel ollama;
+
+        @MockitoBean
+        private ConverstaionRepository conversationRepository;
+
+        @MockitoBean
+        private MessageRepository messageRepository;
+
+        @MockitoBean
+        private MessagePersister messagePersister;
+
+        @MockitoBean
+        private ContentRetriever contentRetriever;
+
+        @MockitoBean
+        private EmbeddingStore<TextSegment> embeddingStore;
+
+        @MockitoBean
+        private VectorIndexManager vectorIndexManager;
+
+        @MockitoBean
+        private EmbeddingSchemaInitializer embeddingSchemaInitializer;
+
+        @LocalServerPort
+        private int port;
+
+        private final AtomicInteger generating = new AtomicInteger();
+        private final AtomicInteger maxGenerating = new AtomicInteger();
+
+        @BeforeEach
+        void stubModel(){
+            when(this.conversationRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+            when(this.ollama.chat(any(dev.langchain4j.model.chat.request.ChatRequest.class))).thenAnswer(invocation -> {
+                this.maxGenerating.accumulateAndGet(this.generating.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(GENERATION.toMillis());
+                } finally {
+                    this.generating.decrementAndGet();
+                }
+                return ChatResponse.builder().aiMessage(AiMessage.from("answer")).build();
+            });
+        }
+
+        void load(String mode) throws Exception {
+            HttpRequest chat = HttpRequest.newBuilder(URI.create("http://localhost:" + this.port + "/api/chat"))
+                                        .header("Content-Type", "application/json")
+                                        .POST(HttpRequest.BodyPublishers.ofString("{\"message\":\"How do I reset my password?\"}"))
+                                        .build();
+            AtomicInteger answered = new AtomicInteger();
+
+            long start = System.nanoTime();
+            try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+                    HttpClient http = HttpClient.newBuilder().executor(clients).version(HttpClient.Version.HTTP_1_1).build()) {
+                List<Future<?>> chats = new ArrayList<>();
+                for (int i = 0; i < CHATS; i++) {
+                    chats.add(clients.submit(() -> {
+                        if (http.send(chat, HttpResponse.BodyHandlers.ofString()).statusCode() == 200) {
+                            answered.incrementAndGet();
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> response : chats) {
+                    response.get();
+                }
+            }
+            long millis = (System.nanoTime() - start) / 1_000_000;
+
+            logger.info("{} threads: {} of {} chats answered, at most {} generating at once, {} ms",
+                mode, answered.get(), CHATS, this.maxGenerating.get(), millis);
+            assertEquals(CHATS, answered.get());
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.LlamaTalks.v1.unitTests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.LlamaTalks.v1.ingestion.BatchingEmbeddingWriter;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+
+@ExtendWith(MockitoExtension.class)
+class BatchingEmbeddingWriterTest {
+
+    @Mock
+    private EmbeddingStore<TextSegment> embeddingStore;
+
+    @Test
+    void add_shouldWriteOnceBatchSizeIsReachedAndNotifyEveryFile() {
+        BatchingEmbeddingWriter writer = new BatchingEmbeddingWriter(embeddingStore, 5, Duration.ofMinutes(1));
+        AtomicInteger storedFiles = new AtomicInteger();
+
+        writer.add(chunks(3).embeddings(), chunks(3).segments(), storedFiles::incrementAndGet);
+        verify(embeddingStore, never()).addAll(anyList(), anyList());
+
+        writer.add(chunks(3).embeddings(), chunks(3).segments(), storedFiles::incrementAndGet);
+        verify(embeddingStore, times(1)).addAll(anyList(), anyList());
+        assertEquals(2, storedFiles.get());
+        assertEquals(6, writer.rowsWritten());
+    }
+
+    @Test
+    void flushIfDue_shouldWritePartialBatchAfterInterval() {
+        BatchingEmbeddingWriter writer = new BatchingEmbeddingWriter(embeddingStore, 100, Duration.ZERO);
+        AtomicInteger storedFiles = new AtomicInteger();
+
+        writer.add(chunks(2).embeddings(), chunks(2).segments(), storedFiles::incrementAndGet);
+        writer.flushIfDue();
+
+        verify(embeddingStore, times(1)).addAll(anyList(), anyList());
+        assertEquals(1, storedFiles.get());
+    }
+
+    @Test
+    void flush_shouldDoNothingWhenEmpty() {
+        BatchingEmbeddingWriter writer = new BatchingEmbeddingWriter(embeddingStore, 100, Duration.ofMinutes(1));
+
+        writer.flush();
+
+        verify(embeddingStore, never()).addAll(anyList(), anyList());
+    }
+
+    // PgVectorEmbeddingStore pays one round trip per add() and one per addAll() batch
+    @Test
+    void add_shouldWriteManySmallFilesInOneCallPerBatch() {
+        BatchingEmbeddingWriter writer = new BatchingEmbeddingWriter(embeddingStore, 100, Duration.ofMinutes(1));
+        Chunks data = chunks(300);
+
+        for (int i = 0; i < 300; i += 10) {
+            writer.add(data.embeddings().subList(i, i + 10), data.segments().subList(i, i + 10), () -> {});
+        }
+        writer.flush();
+
+        verify(embeddingStore, times(3)).addAll(anyList(), anyList());
+    }
+
+    private record Chunks(List<Embedding> embeddings, List<TextSegment> segments) {}
+
+    private static Chunks chunks(int count) {
+        List<Embedding> embeddings = new ArrayList<>();
+        List<TextSegment> segments = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            embeddings.add(Embedding.from(new float[]{i}));
+            segments.add(TextSegment.from("chunk " + i));
+        }
+        return new Chunks(embeddings, segments);
+    }
+}
@@ -0,0 +1,102 @@
+package com.LlamaTalks.v1.unitTests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.LlamaTalks.v1.rag.CachingEmbeddingModel;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+class CachingEmbeddingModelTest {
+
+    @Mock
+    private EmbeddingModel delegate;
+
+    private MeterRegistry meterRegistry;
+    private AtomicLong clock;
+    private CachingEmbeddingModel cachingModel;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        clock = new AtomicLong();
+        cachingModel = new CachingEmbeddingModel(delegate, 2, Duration.ofMinutes(1), meterRegistry, clock::get);
+    }
+
+    @Test
+    void embed_shouldServeRepeatedQuestionFromCache() {
+        Embedding embedding = Embedding.from(new float[]{1f, 2f});
+        when(delegate.embedAll(anyList())).thenReturn(Response.from(List.of(embedding)));
+
+        Embedding first = cachingModel.embed("What is RAG?").content();
+        Embedding second = cachingModel.embed("  What is   RAG? ").content();
+
+        assertSame(embedding, first);
+        assertSame(embedding, second);
+        verify(delegate, times(1)).embedAll(anyList());
+        assertEquals(1.0, meterRegistry.get("rag.query.embedding.cache").tag("result", "hit").counter().count());
+        assertEquals(1.0, meterRegistry.get("rag.query.embedding.cache").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    void embed_shouldReloadEntryAfterTtlExpires() {
+        when(delegate.embedAll(anyList()))
+            .thenReturn(Response.from(List.of(Embedding.from(new float[]{1f}))))
+            .thenReturn(Response.from(List.of(Embedding.from(new float[]{2f}))));
+
+        cachingModel.embed("question");
+        clock.addAndGet(Duration.ofMinutes(2).toNanos());
+        Embedding reloaded = cachingModel.embed("question").content();
+
+        assertEquals(2f, reloaded.vector()[0]);
+        verify(delegate, times(2)).embedAll(anyList());
+    }
+
+    @Test
+    void embed_shouldEvictLeastRecentlyUsedEntryWhenFull() {
+        when(delegate.embedAll(anyList())).thenReturn(Response.from(List.of(Embedding.from(new float[]{1f}))));
+
+        cachingModel.embed("a");
+        cachingModel.embed("b");
+        cachingModel.embed("a");
+        cachingModel.embed("c");
+
+        assertEquals(2, cachingModel.size());
+        cachingModel.embed("a");
+        verify(delegate, times(3)).embedAll(anyList());
+    }
+
+    @Test
+    void embedAll_shouldOnlySendMissingTextsToModel() {
+        when(delegate.embedAll(anyList()))
+            .thenReturn(Response.from(List.of(Embedding.from(new float[]{1f}))))
+            .thenReturn(Response.from(List.of(Embedding.from(new float[]{2f}))));
+
+        cachingModel.embed("cached");
+        List<Embedding> result = cachingModel.embedAll(List.of(TextSegment.from("cached"), TextSegment.from("fresh"))).content();
+
+        assertEquals(1f, result.get(0).vector()[0]);
+        assertEquals(2f, result.get(1).vector()[0]);
+        verify(delegate).embedAll(List.of(TextSegment.from("fresh")));
+    }
+}
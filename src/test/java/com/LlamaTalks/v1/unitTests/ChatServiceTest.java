@@ -3,39 +3,80 @@ package com.LlamaTalks.v1.unitTests;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.codec.ServerSentEvent;
 
+import com.LlamaTalks.v1.chat.ApproximateTokenCountEstimator;
+import com.LlamaTalks.v1.chat.ConversationCompactor;
+import com.LlamaTalks.v1.chat.ConversationMemoryCache;
+import com.LlamaTalks.v1.chat.GenerationScheduler;
+import com.LlamaTalks.v1.chat.GenerationScheduler.Ticket;
+import com.LlamaTalks.v1.chat.MessagePersister;
+import com.LlamaTalks.v1.chat.OllamaPromptCache;
+import com.LlamaTalks.v1.chat.PromptAssembler;
+import com.LlamaTalks.v1.chat.PromptAssembler.Layout;
+import com.LlamaTalks.v1.chat.TokenCoalescer;
 import com.LlamaTalks.v1.exception.ConversationIdNotFound;
+import com.LlamaTalks.v1.exception.GenerationQueueFull;
+import com.LlamaTalks.v1.exception.InvalidCursor;
+import com.LlamaTalks.v1.exception.InvalidRetrievalFilter;
 import com.LlamaTalks.v1.models.Conversation;
 import com.LlamaTalks.v1.models.MessageRole;
+import com.LlamaTalks.v1.rag.SemanticAnswerCache;
 import com.LlamaTalks.v1.records.ChatRequest;
 import com.LlamaTalks.v1.records.ChatResponse;
+import com.LlamaTalks.v1.records.ChatStreamChunk;
+import com.LlamaTalks.v1.records.ChatStreamStart;
+import com.LlamaTalks.v1.records.ConversationPage;
+import com.LlamaTalks.v1.records.ConversationSummary;
+import com.LlamaTalks.v1.records.MessageDTO;
+import com.LlamaTalks.v1.records.MessagePage;
+import com.LlamaTalks.v1.records.RetrievalFilter;
 import com.LlamaTalks.v1.repository.ConverstaionRepository;
 import com.LlamaTalks.v1.repository.MessageRepository;
 import com.LlamaTalks.v1.service.ChatServiceImpl;
 
 import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
 import dev.langchain4j.model.ollama.OllamaChatModel;
 import dev.langchain4j.model.ollama.OllamaStreamingChatModel;
 import dev.langchain4j.rag.content.retriever.ContentRetriever;
 import dev.langchain4j.rag.query.Query;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 @ExtendWith(MockitoExtension.class)
 public class ChatServiceTest {
@@ -54,6 +95,35 @@ public class ChatServiceTest {
     @Mock
     private ContentRetriever contentRetriever;
 
+    @Mock
+    private ConversationMemoryCache conversationMemory;
+
+    @Mock
+    private MessagePersister messagePersister;
+
+    @Mock
+    private SemanticAnswerCache answerCache;
+
+    @Spy
+    private TokenCoalescer tokenCoalescer = new TokenCoalescer(64, Duration.ofMillis(30));
+
+    @Spy
+    private Scheduler chatScheduler = Schedulers.boundedElastic();
+
+    @Spy
+    private GenerationScheduler generationScheduler =
+        new GenerationScheduler(1, 10, 2, Duration.ofSeconds(5), new SimpleMeterRegistry());
+
+    @Spy
+    private PromptAssembler promptAssembler =
+        new PromptAssembler(new ApproximateTokenCountEstimator(4), 3072, 0.6, 64, Layout.PREFIX_STABLE, 6, new SimpleMeterRegistry());
+
+    @Mock
+    private ConversationCompactor conversationCompactor;
+
+    @Spy
+    private OllamaPromptCache promptCache = new OllamaPromptCache(Duration.ofMinutes(30), new SimpleMeterRegistry());
+
     @InjectMocks
     private ChatServiceImpl chatServiceImpl;
 
@@ -64,24 +134,20 @@ public class ChatServiceTest {
         when(contentRetriever.retrieve(any(Query.class)))
             .thenReturn(List.of());
         
-        when(conversationRepository.findByConversationId(anyString()))
-            .thenReturn(null)
-            .thenReturn(createMockConversation("conv-123"));
         when(conversationRepository.save(any()))
             .thenReturn(createMockConversation("conv-123"));
-        when(messageRepository.findByConversation_ConversationId(anyString()))
-            .thenReturn(List.of());
         
         AiMessage aiMsg = AiMessage.from("2+2 equals 4");
         dev.langchain4j.model.chat.response.ChatResponse mockResp = 
             mock(dev.langchain4j.model.chat.response.ChatResponse.class);
         when(mockResp.aiMessage()).thenReturn(aiMsg);
-        when(ollama.chat(anyList())).thenReturn(mockResp);
+        when(ollama.chat(any(dev.langchain4j.model.chat.request.ChatRequest.class))).thenReturn(mockResp);
         
-        ChatResponse response = chatServiceImpl.chat(request);
+        ChatResponse response = chatServiceImpl.chat(request, "client-1");
         
         assertEquals("2+2 equals 4", response.message());
         assertNotNull(response.conversationId());
+        assertEquals(0, generationScheduler.active());
     }
 
     @Test
@@ -93,16 +159,15 @@ public class ChatServiceTest {
 
         Conversation existingConv = createMockConversation(existingId);
         when(conversationRepository.findByConversationId(existingId)).thenReturn(existingConv);
-        when(messageRepository.findByConversation_ConversationId(existingId)).thenReturn(List.of());
 
         AiMessage aiMsg = AiMessage.from("What is 6+7?");
         dev.langchain4j.model.chat.response.ChatResponse mockResp = 
             mock(dev.langchain4j.model.chat.response.ChatResponse.class);
 
         when(mockResp.aiMessage()).thenReturn(aiMsg);
-        when(ollama.chat(anyList())).thenReturn(mockResp);
+        when(ollama.chat(any(dev.langchain4j.model.chat.request.ChatRequest.class))).thenReturn(mockResp);
 
-        ChatResponse response = chatServiceImpl.chat(request);
+        ChatResponse response = chatServiceImpl.chat(request, "client-1");
 
         assertEquals(existingId, response.conversationId());
         assertEquals("What is 6+7?", response.message());
@@ -114,19 +179,16 @@ public class ChatServiceTest {
 
         when(contentRetriever.retrieve(any())).thenReturn(List.of());
 
-        when(conversationRepository.findByConversationId(anyString())).thenReturn(null)
-                                    .thenReturn(createMockConversation("new-conversation-id"));
         when(conversationRepository.save(any())).thenReturn(createMockConversation("new-conversation-id"));
-        when(messageRepository.findByConversation_ConversationId(anyString())).thenReturn(List.of());
 
         AiMessage aiMsg = AiMessage.from("What is 21+67");
         dev.langchain4j.model.chat.response.ChatResponse mockResp = 
             mock(dev.langchain4j.model.chat.response.ChatResponse.class);
 
         when(mockResp.aiMessage()).thenReturn(aiMsg);
-        when(ollama.chat(anyList())).thenReturn(mockResp);
+        when(ollama.chat(any(dev.langchain4j.model.chat.request.ChatRequest.class))).thenReturn(mockResp);
 
-        ChatResponse response = chatServiceImpl.chat(request);
+        ChatResponse response = chatServiceImpl.chat(request, "client-1");
 
         assertNotNull(response.conversationId());
         assertFalse(response.conversationId().isEmpty());
@@ -138,23 +200,18 @@ public class ChatServiceTest {
         ChatRequest request = new ChatRequest("My test message", null);
         
         when(contentRetriever.retrieve(any())).thenReturn(List.of());
-        when(conversationRepository.findByConversationId(anyString()))
-            .thenReturn(null)
-            .thenReturn(createMockConversation("conv-1"));
         when(conversationRepository.save(any()))
             .thenReturn(createMockConversation("conv-1"));
-        when(messageRepository.findByConversation_ConversationId(anyString()))
-            .thenReturn(List.of());
         
         AiMessage aiMsg = AiMessage.from("Response");
         dev.langchain4j.model.chat.response.ChatResponse mockResp = 
             mock(dev.langchain4j.model.chat.response.ChatResponse.class);
         when(mockResp.aiMessage()).thenReturn(aiMsg);
-        when(ollama.chat(anyList())).thenReturn(mockResp);
+        when(ollama.chat(any(dev.langchain4j.model.chat.request.ChatRequest.class))).thenReturn(mockResp);
         
-        chatServiceImpl.chat(request);
+        chatServiceImpl.chat(request, "client-1");
         
-        verify(messageRepository).save(argThat(message -> 
+        verify(messagePersister).enqueue(argThat(message -> 
             message.getContent().equals("My test message") && 
             message.getRole() == MessageRole.USER
         ));
@@ -165,40 +222,158 @@ public class ChatServiceTest {
         ChatRequest request = new ChatRequest("Question", null);
         
         when(contentRetriever.retrieve(any())).thenReturn(List.of());
-        when(conversationRepository.findByConversationId(anyString()))
-            .thenReturn(null)
-            .thenReturn(createMockConversation("conv-1"));
         when(conversationRepository.save(any()))
             .thenReturn(createMockConversation("conv-1"));
-        when(messageRepository.findByConversation_ConversationId(anyString()))
-            .thenReturn(List.of());
         
         AiMessage aiMsg = AiMessage.from("AI specific answer");
         dev.langchain4j.model.chat.response.ChatResponse mockResp = 
             mock(dev.langchain4j.model.chat.response.ChatResponse.class);
         when(mockResp.aiMessage()).thenReturn(aiMsg);
-        when(ollama.chat(anyList())).thenReturn(mockResp);
+        when(ollama.chat(any(dev.langchain4j.model.chat.request.ChatRequest.class))).thenReturn(mockResp);
         
-        chatServiceImpl.chat(request);
+        chatServiceImpl.chat(request, "client-1");
         
-        verify(messageRepository).save(argThat(message -> 
+        verify(messagePersister).enqueue(argThat(message -> 
             message.getContent().equals("AI specific answer") && 
             message.getRole() == MessageRole.AI
         ));
     }
 
+    @Test
+    void shouldAnswerFirstTurnFromSemanticCacheWithoutCallingModel() {
+        ChatRequest request = new ChatRequest("What is RAG?", null);
+
+        when(contentRetriever.retrieve(any())).thenReturn(List.of());
+        when(conversationRepository.save(any()))
+            .thenReturn(createMockConversation("conv-1"));
+        when(answerCache.lookup(eq("What is RAG?"), anyList())).thenReturn(Optional.of("Cached answer"));
+
+        ChatResponse response = chatServiceImpl.chat(request, "client-1");
+
+        assertEquals("Cached answer", response.message());
+        verifyNoInteractions(ollama);
+        verify(messagePersister).enqueue(argThat(message ->
+            message.getContent().equals("Cached answer") &&
+            message.getRole() == MessageRole.AI
+        ));
+    }
+
+    @Test
+    void streamChatShouldPrepareLazilyThenSendConversationIdOnceAndCoalescedText() {
+        ChatRequest request = new ChatRequest("Hi", null);
+
+        when(contentRetriever.retrieve(any())).thenReturn(List.of());
+        when(conversationRepository.save(any()))
+            .thenReturn(createMockConversation("conv-1"));
+        doAnswer(inv -> {
+            StreamingChatResponseHandler handler = inv.getArgument(1);
+            List.of("Hel", "lo", " there").forEach(handler::onPartialResponse);
+            handler.onCompleteResponse(mock(dev.langchain4j.model.chat.response.ChatResponse.class));
+            return null;
+        }).when(ollamaStream).chat(any(dev.langchain4j.model.chat.request.ChatRequest.class), any(StreamingChatResponseHandler.class));
+
+        Flux<ServerSentEvent<Object>> stream = chatServiceImpl.streamChat(request, "client-1");
+        verifyNoInteractions(conversationRepository, contentRetriever);
+
+        List<ServerSentEvent<Object>> events = stream.collectList().block();
+
+        assertEquals(2, events.size());
+        assertEquals("conversation", events.get(0).event());
+        assertEquals(new ChatStreamStart("conv-1"), events.get(0).data());
+        assertEquals(new ChatStreamChunk("Hello there"), events.get(1).data());
+        assertEquals(0, generationScheduler.active());
+        verify(messagePersister).enqueue(argThat(message ->
+            message.getContent().equals("Hello there") &&
+            message.getRole() == MessageRole.AI
+        ));
+    }
+
+    @Test
+    void streamChatShouldKeepTheSlotUntilOllamaFinishesWhenTheClientLeaves() throws InterruptedException {
+        ChatRequest request = new ChatRequest("Hi", null);
+        CountDownLatch generating = new CountDownLatch(1);
+        AtomicReference<StreamingChatResponseHandler> ollamaHandler = new AtomicReference<>();
+
+        when(contentRetriever.retrieve(any())).thenReturn(List.of());
+        when(conversationRepository.save(any()))
+            .thenReturn(createMockConversation("conv-1"));
+        doAnswer(inv -> {
+            ollamaHandler.set(inv.getArgument(1));
+            generating.countDown();
+            return null;
+        }).when(ollamaStream).chat(any(dev.langchain4j.model.chat.request.ChatRequest.class), any(StreamingChatResponseHandler.class));
+
+        Disposable client = chatServiceImpl.streamChat(request, "client-1").subscribe();
+        assertTrue(generating.await(5, TimeUnit.SECONDS));
+        client.dispose();
+
+        // Ollama is still generating, the slot stays taken
+        assertEquals(1, generationScheduler.active());
+        ollamaHandler.get().onPartialResponse("Hello");
+        ollamaHandler.get().onCompleteResponse(mock(dev.langchain4j.model.chat.response.ChatResponse.class));
+        assertEquals(0, generationScheduler.active());
+    }
+
+    @Test
+    void shouldNotKeepTheQuestionWhenItTimesOutInTheQueue() {
+        ChatRequest request = new ChatRequest("Hi", null);
+        GenerationScheduler busy = new GenerationScheduler(1, 10, 2, Duration.ZERO, new SimpleMeterRegistry());
+        busy.enqueue("client-2");
+
+        when(contentRetriever.retrieve(any())).thenReturn(List.of());
+        when(conversationRepository.save(any()))
+            .thenReturn(createMockConversation("conv-1"));
+        doAnswer(inv -> busy.enqueue(inv.getArgument(0))).when(generationScheduler).enqueue(anyString());
+
+        assertThrows(GenerationQueueFull.class, () -> chatServiceImpl.chat(request, "client-1"));
+        verify(messagePersister, never()).enqueue(any());
+        verify(conversationMemory, never()).append(anyString(), any());
+    }
+
+    @Test
+    void streamChatShouldNotKeepTheQuestionWhenTheClientLeavesTheQueue() throws InterruptedException {
+        ChatRequest request = new ChatRequest("Hi", null);
+        CountDownLatch queued = new CountDownLatch(1);
+        Ticket holder = generationScheduler.enqueue("client-2");
+
+        when(contentRetriever.retrieve(any())).thenReturn(List.of());
+        when(conversationRepository.save(any()))
+            .thenReturn(createMockConversation("conv-1"));
+
+        Disposable client = chatServiceImpl.streamChat(request, "client-1")
+                                            .filter(event -> "queue".equals(event.event()))
+                                            .subscribe(event -> queued.countDown());
+        assertTrue(queued.await(5, TimeUnit.SECONDS));
+        client.dispose();
+        holder.cancel();
+
+        assertEquals(0, generationScheduler.active());
+        verify(messagePersister, never()).enqueue(any());
+        verifyNoInteractions(ollamaStream);
+    }
+
     @Test
     void shouldThrowExceptionWhenMessageIsEmpty() {
         ChatRequest request = new ChatRequest("", null);
         
         IllegalArgumentException exception = assertThrows(
             IllegalArgumentException.class, 
-            () -> chatServiceImpl.chat(request)
+            () -> chatServiceImpl.chat(request, "client-1")
         );
         
         assertEquals("Message cannot be empty", exception.getMessage());
     }
 
+    @Test
+    void streamChatShouldRejectAnEmptyDateRangeBeforeQueueing() {
+        ChatRequest request = new ChatRequest("Hi", null,
+            new RetrievalFilter(null, null, Instant.parse("2025-02-01T00:00:00Z"), Instant.parse("2025-01-01T00:00:00Z")));
+
+        assertThrows(InvalidRetrievalFilter.class, () -> chatServiceImpl.streamChat(request, "client-1"));
+        assertEquals(0, generationScheduler.active());
+        verifyNoInteractions(conversationRepository, contentRetriever);
+    }
+
     @Test
     void shouldThrowExceptionWhenConversationNotFound() {
         ChatRequest request = new ChatRequest("Message", "non-existent-id");
@@ -208,12 +383,75 @@ public class ChatServiceTest {
         
         ConversationIdNotFound exception = assertThrows(
             ConversationIdNotFound.class, 
-            () -> chatServiceImpl.chat(request)
+            () -> chatServiceImpl.chat(request, "client-1")
         );
         
         assertTrue(exception.getMessage().contains("non-existent-id"));
     }
 
+    @Test
+    void getConversationsShouldReturnCursorThatContinuesAfterLastSummary() {
+        LocalDateTime startedAt = LocalDateTime.of(2025, 1, 2, 3, 4, 5, 123456000);
+        ConversationSummary first = new ConversationSummary(9L, "conv-9", "Newest", startedAt.plusHours(1), 4, startedAt.plusHours(2));
+        ConversationSummary second = new ConversationSummary(7L, "conv-7", "Older", startedAt, 2, startedAt);
+        when(conversationRepository.findFirstSummaries(Limit.of(2))).thenReturn(List.of(first, second));
+
+        ConversationPage page = chatServiceImpl.getConversations(null, 2);
+
+        assertEquals(2, page.conversations().size());
+        assertNotNull(page.nextCursor());
+
+        when(conversationRepository.findSummariesBefore(startedAt, 7L, Limit.of(2))).thenReturn(List.of());
+        ConversationPage next = chatServiceImpl.getConversations(page.nextCursor(), 2);
+
+        assertTrue(next.conversations().isEmpty());
+        assertNull(next.nextCursor());
+    }
+
+    @Test
+    void getConversationsShouldRejectMalformedCursor() {
+        assertThrows(InvalidCursor.class, () -> chatServiceImpl.getConversations("not-a-cursor", 20));
+    }
+
+    @Test
+    void getMessagesShouldPageBackwardsFromOldestReturnedId() {
+        when(conversationRepository.findByConversationId("conv-1")).thenReturn(createMockConversation("conv-1"));
+        when(messageRepository.findPageByConversationId("conv-1", Long.MAX_VALUE, Limit.of(2))).thenReturn(List.of(
+            new MessageDTO(12L, MessageRole.AI, "answer", LocalDateTime.now()),
+            new MessageDTO(11L, MessageRole.USER, "question", LocalDateTime.now())));
+
+        MessagePage page = chatServiceImpl.getMessages("conv-1", null, 2);
+
+        assertEquals(2, page.messages().size());
+        assertEquals(11L, page.nextCursor());
+    }
+
+    @Test
+    void getMessagesShouldContinueBeforeTheCursorsId() {
+        when(conversationRepository.findByConversationId("conv-1")).thenReturn(createMockConversation("conv-1"));
+        when(messageRepository.findPageByConversationId("conv-1", 11L, Limit.of(2))).thenReturn(List.of(
+            new MessageDTO(10L, MessageRole.AI, "older answer", LocalDateTime.now())));
+
+        MessagePage page = chatServiceImpl.getMessages("conv-1", "11", 2);
+
+        assertEquals(1, page.messages().size());
+        assertNull(page.nextCursor());
+    }
+
+    @Test
+    void getMessagesShouldRejectNonNumericCursor() {
+        when(conversationRepository.findByConversationId("conv-1")).thenReturn(createMockConversation("conv-1"));
+
+        assertThrows(InvalidCursor.class, () -> chatServiceImpl.getMessages("conv-1", "abc", 20));
+    }
+
+    @Test
+    void getMessagesShouldThrowWhenConversationNotFound() {
+        when(conversationRepository.findByConversationId("missing")).thenReturn(null);
+
+        assertThrows(ConversationIdNotFound.class, () -> chatServiceImpl.getMessages("missing", null, 20));
+    }
+
     private Conversation createMockConversation(String id) {
         Conversation conv = new Conversation();
         conv.setConversationId(id);
@@ -0,0 +1,53 @@
+package com.LlamaTalks.v1.unitTests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.mock.env.MockEnvironment;
+
+import com.LlamaTalks.v1.configuration.ConnectionPoolConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+class ConnectionPoolConfigTest {
+    private final HikariDataSource dataSource = new HikariDataSource();
+
+    @AfterEach
+    void tearDown(){
+        this.dataSource.close();
+    }
+
+    @Test
+    void shouldSizeThePoolFromTheConcurrencyLimits(){
+        MockEnvironment environment = limits(2, 32, 1);
+
+        BeanPostProcessor sizer = ConnectionPoolConfig.connectionPoolSizer(environment);
+        sizer.postProcessAfterInitialization(this.dataSource, "dataSource");
+
+        // 2 generations + 32 preparing streams + 1 store thread + the message writer
+        assertEquals(36, this.dataSource.getMaximumPoolSize());
+    }
+
+    @Test
+    void shouldLetDbPoolSizeOverrideTheComputedSize(){
+        MockEnvironment environment = limits(2, 32, 1).withProperty("DB_POOL_SIZE", "12");
+
+        BeanPostProcessor sizer = ConnectionPoolConfig.connectionPoolSizer(environment);
+        sizer.postProcessAfterInitialization(this.dataSource, "dataSource");
+
+        assertEquals(12, this.dataSource.getMaximumPoolSize());
+    }
+
+    @Test
+    void poolSize_shouldCountEveryStageAtLeastOnce(){
+        assertEquals(4, ConnectionPoolConfig.poolSize(0, 0, 0));
+    }
+
+    private static MockEnvironment limits(int maxConcurrent, int prepareThreads, int storeThreads){
+        return new MockEnvironment()
+                    .withProperty("chat.generation.max-concurrent", String.valueOf(maxConcurrent))
+                    .withProperty("chat.stream.prepare-threads", String.valueOf(prepareThreads))
+                    .withProperty("ingestion.pipeline.store-threads", String.valueOf(storeThreads));
+    }
+}
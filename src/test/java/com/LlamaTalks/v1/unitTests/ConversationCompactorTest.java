@@ -0,0 +1,181 @@
+package com.LlamaTalks.v1.unitTests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+
+import com.LlamaTalks.v1.chat.ApproximateTokenCountEstimator;
+import com.LlamaTalks.v1.chat.ConversationCompactor;
+import com.LlamaTalks.v1.chat.ConversationMemoryCache;
+import com.LlamaTalks.v1.chat.GenerationScheduler;
+import com.LlamaTalks.v1.models.Conversation;
+import com.LlamaTalks.v1.models.MessageRole;
+import com.LlamaTalks.v1.records.MessageDTO;
+import com.LlamaTalks.v1.repository.ConverstaionRepository;
+import com.LlamaTalks.v1.repository.MessageRepository;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.ollama.OllamaChatModel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+class ConversationCompactorTest {
+    private static final long CONVERSATION = 7L;
+
+    @Mock
+    private ConverstaionRepository conversationRepository;
+
+    @Mock
+    private MessageRepository messageRepository;
+
+    @Mock
+    private OllamaChatModel ollama;
+
+    private SimpleMeterRegistry meterRegistry;
+    private GenerationScheduler generationScheduler;
+    private ConversationCompactor compactor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        generationScheduler = new GenerationScheduler(1, 10, 2, Duration.ofMinutes(1), meterRegistry);
+        // Window of 4 messages, compacts once 4 have fallen out of it
+        compactor = new ConversationCompactor(conversationRepository, messageRepository, ollama, generationScheduler,
+                        new ApproximateTokenCountEstimator(4), true, 4, 1, 4, 10_000, 10, 100, 10,
+                        Duration.ofMillis(1), Duration.ZERO, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        compactor.shutdown();
+    }
+
+    @Test
+    void compact_shouldFoldMessagesOutsideTheWindowIntoTheSummary() {
+        when(conversationRepository.findById(CONVERSATION)).thenReturn(Optional.of(conversation("User likes Java.", 10L)));
+        when(messageRepository.countAfter(CONVERSATION, 10L)).thenReturn(10L);
+        when(messageRepository.findAfter(CONVERSATION, 10L, Limit.of(6))).thenReturn(messages(11, 6));
+        when(ollama.chat(anyList())).thenReturn(ChatResponse.builder().aiMessage(AiMessage.from(" New summary. ")).build());
+        when(conversationRepository.updateSummary(CONVERSATION, "New summary.", 16L)).thenReturn(1);
+
+        assertTrue(compactor.compact(CONVERSATION));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<ChatMessage>> request = ArgumentCaptor.forClass(List.class);
+        verify(ollama).chat(request.capture());
+        String transcript = ((UserMessage) request.getValue().get(1)).singleText();
+        assertTrue(transcript.contains("User likes Java."));
+        assertTrue(transcript.contains("User: message 11\nAssistant: message 12\n"));
+        assertEquals(6.0, meterRegistry.get("chat.compaction.messages").counter().count());
+        assertEquals(0, generationScheduler.active());
+    }
+
+    @Test
+    void compact_shouldLeaveNoMessageBetweenTheSummaryAndTheTrimmedWindow() {
+        // The defaults: a window of 20 trimmed 6 at a time, compacting as soon as one message is out
+        compactor = new ConversationCompactor(conversationRepository, messageRepository, ollama, generationScheduler,
+                        new ApproximateTokenCountEstimator(4), true, 20, 6, 1, 10_000, 100, 100, 10,
+                        Duration.ofMillis(1), Duration.ZERO, meterRegistry);
+        when(conversationRepository.findById(CONVERSATION)).thenReturn(Optional.of(conversation(null, null)));
+        when(ollama.chat(anyList())).thenReturn(ChatResponse.builder().aiMessage(AiMessage.from("Summary.")).build());
+        when(conversationRepository.updateSummary(eq(CONVERSATION), eq("Summary."), anyLong())).thenReturn(1);
+
+        for (int count = 21; count <= 26; count++) {
+            ConversationMemoryCache window = new ConversationMemoryCache(messageRepository, 20, 6, 10,
+                                                Duration.ofMinutes(30), meterRegistry, System::nanoTime);
+            window.updateMessages("conv-1", List.of());
+            for (long id = 1; id <= count; id++) {
+                window.append("conv-1", UserMessage.from("message " + id));
+            }
+            long oldestInWindow = count - window.getMessages("conv-1").size() + 1;
+            when(messageRepository.countAfter(CONVERSATION, 0L)).thenReturn((long) count);
+            when(messageRepository.findAfter(eq(CONVERSATION), eq(0L), any(Limit.class)))
+                .thenAnswer(inv -> messages(1, inv.<Limit>getArgument(2).max()));
+
+            assertTrue(compactor.compact(CONVERSATION));
+
+            ArgumentCaptor<Long> through = ArgumentCaptor.forClass(Long.class);
+            verify(conversationRepository, atLeastOnce()).updateSummary(eq(CONVERSATION), eq("Summary."), through.capture());
+            assertTrue(through.getValue() >= oldestInWindow - 1, count + " messages: summarized through "
+                        + through.getValue() + ", window starts at " + oldestInWindow);
+        }
+    }
+
+    @Test
+    void compact_shouldWaitForMoreMessagesBelowTheThresholds() {
+        when(conversationRepository.findById(CONVERSATION)).thenReturn(Optional.of(conversation(null, null)));
+        when(messageRepository.countAfter(CONVERSATION, 0L)).thenReturn(6L);
+        when(messageRepository.findAfter(CONVERSATION, 0L, Limit.of(2))).thenReturn(messages(1, 2));
+
+        assertFalse(compactor.compact(CONVERSATION));
+
+        verify(ollama, never()).chat(anyList());
+    }
+
+    @Test
+    void compact_shouldStepAsideWhileChatRequestsAreGenerating() {
+        when(conversationRepository.findById(CONVERSATION)).thenReturn(Optional.of(conversation(null, null)));
+        when(messageRepository.countAfter(CONVERSATION, 0L)).thenReturn(12L);
+        when(messageRepository.findAfter(CONVERSATION, 0L, Limit.of(8))).thenReturn(messages(1, 8));
+        generationScheduler.enqueue("client-1");
+
+        assertFalse(compactor.compact(CONVERSATION));
+
+        verify(ollama, never()).chat(anyList());
+        verify(conversationRepository, never()).updateSummary(anyLong(), anyString(), anyLong());
+        assertEquals(1.0, meterRegistry.get("chat.compaction.runs").tag("result", "no-idle-slot").counter().count());
+    }
+
+    @Test
+    void schedule_shouldIgnoreConversationsThatWereNeverSaved() {
+        compactor.schedule(new Conversation());
+
+        assertEquals(0, compactor.pending());
+        verify(conversationRepository, never()).findById(any());
+    }
+
+    private static Conversation conversation(String summary, Long summarizedThrough) {
+        Conversation conversation = new Conversation();
+        conversation.setId(CONVERSATION);
+        conversation.setConversationId("conv-1");
+        conversation.setSummary(summary);
+        conversation.setSummarizedThrough(summarizedThrough);
+        return conversation;
+    }
+
+    private static List<MessageDTO> messages(long firstId, int count) {
+        List<MessageDTO> messages = new ArrayList<>();
+        for (long id = firstId; id < firstId + count; id++) {
+            MessageRole role = (id - firstId) % 2 == 0 ? MessageRole.USER : MessageRole.AI;
+            messages.add(new MessageDTO(id, role, "message " + id, LocalDateTime.now()));
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,154 @@
+package com.LlamaTalks.v1.unitTests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+
+import com.LlamaTalks.v1.chat.ConversationMemoryCache;
+import com.LlamaTalks.v1.models.MessageRole;
+import com.LlamaTalks.v1.records.StoredMessage;
+import com.LlamaTalks.v1.repository.MessageRepository;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+class ConversationMemoryCacheTest {
+
+    @Mock
+    private MessageRepository messageRepository;
+
+    private MeterRegistry meterRegistry;
+    private AtomicLong clock;
+    private ConversationMemoryCache cache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        clock = new AtomicLong();
+        cache = new ConversationMemoryCache(messageRepository, 3, 1, 2, Duration.ofMinutes(30), meterRegistry, clock::get);
+    }
+
+    @Test
+    void getMessages_shouldLoadNewestWindowOnceAndServeItFromMemory() {
+        when(messageRepository.findRecentByConversationId("conv-1", Limit.of(3))).thenReturn(List.of(
+            new StoredMessage(MessageRole.AI, "third"),
+            new StoredMessage(MessageRole.USER, "second"),
+            new StoredMessage(MessageRole.AI, "first")));
+
+        List<ChatMessage> first = cache.getMessages("conv-1");
+        List<ChatMessage> second = cache.getMessages("conv-1");
+
+        assertEquals(List.of(AiMessage.from("first"), UserMessage.from("second"), AiMessage.from("third")), first);
+        assertEquals(first, second);
+        verify(messageRepository, times(1)).findRecentByConversationId(eq("conv-1"), any(Limit.class));
+        assertEquals(1.0, meterRegistry.get("chat.memory.cache").tag("result", "hit").counter().count());
+    }
+
+    @Test
+    void append_shouldKeepCachedWindowBoundedWithoutQuerying() {
+        when(messageRepository.findRecentByConversationId("conv-1", Limit.of(3))).thenReturn(List.of());
+        cache.getMessages("conv-1");
+
+        for (int i = 0; i < 5; i++) {
+            cache.append("conv-1", UserMessage.from("message " + i));
+        }
+
+        assertEquals(List.of(UserMessage.from("message 2"), UserMessage.from("message 3"), UserMessage.from("message 4")),
+            cache.getMessages("conv-1"));
+        verify(messageRepository, times(1)).findRecentByConversationId(eq("conv-1"), any(Limit.class));
+    }
+
+    @Test
+    void append_shouldTrimTheOldestMessagesABlockAtATime() {
+        cache = new ConversationMemoryCache(messageRepository, 4, 2, 2, Duration.ofMinutes(30), meterRegistry, clock::get);
+        cache.updateMessages("conv-1", List.of());
+
+        for (int i = 0; i < 5; i++) {
+            cache.append("conv-1", UserMessage.from("message " + i));
+        }
+        // Only grown at the end since the trim
+        assertEquals(List.of(UserMessage.from("message 2"), UserMessage.from("message 3"), UserMessage.from("message 4")),
+            cache.getMessages("conv-1"));
+
+        cache.append("conv-1", UserMessage.from("message 5"));
+        cache.append("conv-1", UserMessage.from("message 6"));
+        assertEquals(List.of(UserMessage.from("message 4"), UserMessage.from("message 5"), UserMessage.from("message 6")),
+            cache.getMessages("conv-1"));
+    }
+
+    @Test
+    void append_shouldKeepMessagesNotYetWrittenForTheNextLoad() {
+        cache.append("conv-1", UserMessage.from("question"));
+        cache.append("conv-1", AiMessage.from("answer"));
+        verify(messageRepository, never()).findRecentByConversationId(any(), any());
+
+        // The writer has saved the question so far, not the answer
+        when(messageRepository.findRecentByConversationId("conv-1", Limit.of(3))).thenReturn(List.of(
+            new StoredMessage(MessageRole.USER, "question"),
+            new StoredMessage(MessageRole.AI, "earlier")));
+
+        assertEquals(List.of(AiMessage.from("earlier"), UserMessage.from("question"), AiMessage.from("answer")),
+            cache.getMessages("conv-1"));
+        assertEquals(0.0, meterRegistry.get("chat.memory.cache").tag("result", "hit").counter().count());
+    }
+
+    @Test
+    void getMessages_shouldKeepMessagesAppendedWhileItLoads() {
+        when(messageRepository.findRecentByConversationId("conv-1", Limit.of(3))).thenAnswer(inv -> {
+            cache.append("conv-1", UserMessage.from("new question"));
+            return List.of(new StoredMessage(MessageRole.AI, "earlier"));
+        });
+
+        assertEquals(List.of(AiMessage.from("earlier"), UserMessage.from("new question")), cache.getMessages("conv-1"));
+        assertEquals(List.of(AiMessage.from("earlier"), UserMessage.from("new question")), cache.getMessages("conv-1"));
+        verify(messageRepository, times(1)).findRecentByConversationId(eq("conv-1"), any(Limit.class));
+    }
+
+    @Test
+    void getMessages_shouldReloadAfterIdleTimeAndEvictLeastRecentlyUsed() {
+        when(messageRepository.findRecentByConversationId(any(), any(Limit.class))).thenReturn(List.of());
+        cache.getMessages("conv-1");
+        cache.getMessages("conv-2");
+        cache.getMessages("conv-1");
+        cache.getMessages("conv-3");
+
+        assertEquals(2, cache.size());
+        cache.getMessages("conv-2");
+        verify(messageRepository, times(2)).findRecentByConversationId(eq("conv-2"), any(Limit.class));
+
+        clock.addAndGet(Duration.ofMinutes(31).toNanos());
+        cache.getMessages("conv-2");
+        verify(messageRepository, times(3)).findRecentByConversationId(eq("conv-2"), any(Limit.class));
+    }
+
+    @Test
+    void updateMessages_shouldNotKeepSystemMessages() {
+        cache.updateMessages("conv-1", List.of(
+            SystemMessage.from("context"),
+            UserMessage.from("question"),
+            AiMessage.from("answer")));
+
+        assertEquals(List.of(UserMessage.from("question"), AiMessage.from("answer")), cache.getMessages("conv-1"));
+        verify(messageRepository, never()).findRecentByConversationId(any(), any());
+    }
+}
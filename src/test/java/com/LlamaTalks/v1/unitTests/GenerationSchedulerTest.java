@@ -0,0 +1,126 @@
+package com.LlamaTalks.v1.unitTests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import com.LlamaTalks.v1.chat.GenerationScheduler;
+import com.LlamaTalks.v1.chat.GenerationScheduler.Permit;
+import com.LlamaTalks.v1.chat.GenerationScheduler.Ticket;
+import com.LlamaTalks.v1.exception.GenerationQueueFull;
+import com.LlamaTalks.v1.exception.TooManyClientRequests;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class GenerationSchedulerTest {
+
+    private GenerationScheduler scheduler(int maxConcurrent, int queueCapacity, int perClient, Duration maxWait) {
+        return new GenerationScheduler(maxConcurrent, queueCapacity, perClient, maxWait, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void enqueue_shouldGrantRightAwayWhileSlotsAreFree() {
+        GenerationScheduler scheduler = scheduler(2, 10, 2, Duration.ofMinutes(1));
+
+        Ticket first = scheduler.enqueue("a");
+        Ticket second = scheduler.enqueue("a");
+
+        assertTrue(first.granted().isDone());
+        assertTrue(second.granted().isDone());
+        assertEquals(0, first.position());
+        assertEquals(2, scheduler.active());
+    }
+
+    @Test
+    void release_shouldGrantWaitingClientsRoundRobin() {
+        GenerationScheduler scheduler = scheduler(1, 10, 3, Duration.ofMinutes(1));
+        Permit running = scheduler.enqueue("busy").await();
+        Ticket busy1 = scheduler.enqueue("busy");
+        Ticket busy2 = scheduler.enqueue("busy");
+        Ticket quiet = scheduler.enqueue("quiet");
+
+        assertEquals(1, busy1.position());
+        assertEquals(2, quiet.position());
+        assertEquals(3, busy2.position());
+
+        running.release();
+        assertTrue(busy1.granted().isDone());
+        busy1.await().release();
+        assertTrue(quiet.granted().isDone());
+        assertFalse(busy2.granted().isDone());
+        assertEquals(1, busy2.position());
+    }
+
+    @Test
+    void enqueue_shouldRejectClientOverItsShareWith429AndFullQueueWith503() {
+        GenerationScheduler scheduler = scheduler(1, 2, 1, Duration.ofMinutes(1));
+        scheduler.enqueue("a");
+        scheduler.enqueue("a");
+
+        assertThrows(TooManyClientRequests.class, () -> scheduler.enqueue("a"));
+        scheduler.enqueue("b");
+        assertThrows(GenerationQueueFull.class, () -> scheduler.enqueue("c"));
+    }
+
+    @Test
+    void await_shouldFailWhenNoSlotFreesUpInTime() {
+        GenerationScheduler scheduler = scheduler(1, 10, 2, Duration.ofMillis(50));
+        scheduler.enqueue("a");
+        Ticket waiting = scheduler.enqueue("b");
+
+        assertThrows(GenerationQueueFull.class, waiting::await);
+        assertEquals(0, scheduler.queued());
+    }
+
+    @Test
+    void cancel_shouldLeaveQueueAndGiveBackGrantedSlot() {
+        GenerationScheduler scheduler = scheduler(1, 10, 2, Duration.ofMinutes(1));
+        Ticket running = scheduler.enqueue("a");
+        Ticket waiting = scheduler.enqueue("b");
+
+        waiting.cancel();
+        assertEquals(0, scheduler.queued());
+
+        running.cancel();
+        assertEquals(0, scheduler.active());
+    }
+
+    @Test
+    void cancel_shouldDoNothingOnceTheTicketExpired() {
+        GenerationScheduler scheduler = scheduler(1, 10, 2, Duration.ofMillis(50));
+        Ticket running = scheduler.enqueue("a");
+        Ticket expired = scheduler.enqueue("b");
+        assertThrows(GenerationQueueFull.class, expired::await);
+
+        expired.cancel();
+
+        assertEquals(1, scheduler.active());
+        assertEquals(0, scheduler.queued());
+        running.cancel();
+        assertEquals(0, scheduler.active());
+    }
+
+    @Test
+    void tryAcquireIdle_shouldOnlyGrantWhileNothingElseRuns() {
+        GenerationScheduler scheduler = scheduler(2, 10, 2, Duration.ofMinutes(1));
+        Ticket chat = scheduler.enqueue("a");
+
+        assertNull(scheduler.tryAcquireIdle());
+
+        chat.cancel();
+        Permit background = scheduler.tryAcquireIdle();
+        assertNotNull(background);
+        assertEquals(1, scheduler.active());
+        assertTrue(scheduler.enqueue("a").granted().isDone());
+
+        background.release();
+        assertEquals(1, scheduler.active());
+    }
+}
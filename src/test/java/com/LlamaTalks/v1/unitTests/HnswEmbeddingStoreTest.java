@@ -0,0 +1,165 @@
+package com.LlamaTalks.v1.unitTests;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import com.LlamaTalks.v1.rag.HnswEmbeddingStore;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
+
+@ExtendWith(MockitoExtension.class)
+class HnswEmbeddingStoreTest {
+
+    @Mock
+    private EmbeddingStore<TextSegment> pgvector;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @TempDir
+    private Path dir;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void fingerprint() {
+        // Same row count and checksum every time, as if nothing else writes to the table
+        when(jdbcTemplate.queryForObject(anyString(), any(RowMapper.class))).thenAnswer(inv -> {
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getLong(1)).thenReturn(3L);
+            when(rs.getLong(2)).thenReturn(42L);
+            return ((RowMapper<?>) inv.getArgument(1)).mapRow(rs, 0);
+        });
+    }
+
+    private HnswEmbeddingStore store() throws Exception {
+        HnswEmbeddingStore store = new HnswEmbeddingStore(pgvector, jdbcTemplate, 3, 8, 32, 16,
+                                                        dir.resolve("hnsw.snapshot"), Duration.ofHours(1), 0.5, false);
+        store.start().get();
+        return store;
+    }
+
+    @Test
+    void search_shouldAnswerFromTheGraphAndWriteThroughToPgvector() throws Exception {
+        HnswEmbeddingStore store = store();
+        addChunks(store);
+
+        List<EmbeddingMatch<TextSegment>> matches = store.search(request(new float[]{0.9f, 0.1f, 0f}, null)).matches();
+
+        assertEquals(List.of("a1", "a2", "b1"), matches.stream().map(EmbeddingMatch::embeddingId).toList());
+        assertEquals("first chunk of a", matches.get(0).embedded().text());
+        assertEquals(0, matches.get(0).embedded().metadata().getInteger("chunkIndex"));
+        verify(pgvector).addAll(any(), any(), any());
+        verify(pgvector, never()).search(any());
+        store.close();
+    }
+
+    @Test
+    void removeAll_shouldDropTheChunksOfAFileFromBoth() throws Exception {
+        HnswEmbeddingStore store = store();
+        addChunks(store);
+        Filter fileA = metadataKey("filePath").isEqualTo("/docs/a.txt");
+
+        store.removeAll(fileA);
+
+        verify(pgvector).removeAll(fileA);
+        assertEquals(List.of("b1"), ids(store, new float[]{1f, 0f, 0f}, null));
+        store.close();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void snapshot_shouldCompactTheGraphOnceEnoughChunksAreDeleted() throws Exception {
+        HnswEmbeddingStore store = store();
+        addChunks(store);
+        store.removeAll(List.of("b1"));
+
+        store.snapshot();
+        assertEquals(1, store.tombstones());
+
+        store.removeAll(List.of("a2"));
+        store.snapshot();
+        assertEquals(0, store.tombstones());
+        assertEquals(List.of("a1"), ids(store, new float[]{0f, 1f, 0f}, null));
+        store.close();
+
+        // The snapshot holds the compacted graph
+        HnswEmbeddingStore reopened = store();
+        assertEquals(0, reopened.tombstones());
+        assertEquals(List.of("a1"), ids(reopened, new float[]{0f, 1f, 0f}, null));
+        verify(jdbcTemplate, times(1)).execute(any(ConnectionCallback.class));
+        reopened.close();
+    }
+
+    @Test
+    void search_shouldOnlyReturnChunksMatchingTheFilter() throws Exception {
+        HnswEmbeddingStore store = store();
+        addChunks(store);
+
+        assertEquals(List.of("b1"), ids(store, new float[]{1f, 0f, 0f}, metadataKey("fileName").isEqualTo("b.txt")));
+        store.close();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void start_shouldMapTheSnapshotInsteadOfRebuildingFromPgvector() throws Exception {
+        HnswEmbeddingStore first = store();
+        addChunks(first);
+        first.close();
+
+        HnswEmbeddingStore second = store();
+
+        assertEquals(List.of("a2", "b1", "a1"), ids(second, new float[]{0f, 1f, 0f}, null));
+        // Only the first store, which found no snapshot, read the table
+        verify(jdbcTemplate, times(1)).execute(any(ConnectionCallback.class));
+        second.close();
+    }
+
+    private void addChunks(HnswEmbeddingStore store) {
+        store.addAll(
+            List.of("a1", "a2", "b1"),
+            List.of(Embedding.from(new float[]{1f, 0f, 0f}), Embedding.from(new float[]{0.7f, 0.7f, 0f}), Embedding.from(new float[]{0f, 0.6f, 0.8f})),
+            List.of(chunk("first chunk of a", "/docs/a.txt", "a.txt", 0),
+                    chunk("second chunk of a", "/docs/a.txt", "a.txt", 1),
+                    chunk("only chunk of b", "/docs/b.txt", "b.txt", 0)));
+    }
+
+    private static TextSegment chunk(String text, String filePath, String fileName, int chunkIndex) {
+        return TextSegment.from(text, new Metadata().put("filePath", filePath).put("fileName", fileName).put("chunkIndex", chunkIndex));
+    }
+
+    private static EmbeddingSearchRequest request(float[] vector, Filter filter) {
+        return EmbeddingSearchRequest.builder().queryEmbedding(Embedding.from(vector)).maxResults(3).minScore(0.0).filter(filter).build();
+    }
+
+    private static List<String> ids(HnswEmbeddingStore store, float[] vector, Filter filter) {
+        return store.search(request(vector, filter)).matches().stream().map(EmbeddingMatch::embeddingId).toList();
+    }
+}
@@ -0,0 +1,106 @@
+package com.LlamaTalks.v1.unitTests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.LlamaTalks.v1.rag.HnswIndex;
+import com.LlamaTalks.v1.rag.HnswIndex.Neighbor;
+
+class HnswIndexTest {
+    private static final int DIMENSION = 24;
+
+    @Test
+    void search_shouldFindNearlyAllExactNeighbours() {
+        Random random = new Random(7);
+        float[][] vectors = randomVectors(random, 2000);
+        HnswIndex index = new HnswIndex(DIMENSION, 16, 100);
+        for (float[] vector : vectors) {
+            index.add(vector);
+        }
+
+        double recall = 0;
+        for (int q = 0; q < 50; q++) {
+            float[] query = randomVectors(random, 1)[0];
+            List<Integer> exact = IntStream.range(0, vectors.length).boxed()
+                .sorted(Comparator.comparingDouble(node -> -cosine(query, vectors[node])))
+                .limit(10)
+                .toList();
+            List<Integer> found = index.search(query, 10, 64, null).stream().map(Neighbor::node).toList();
+            recall += found.stream().filter(exact::contains).count() / 10.0;
+        }
+
+        assertTrue(recall / 50 >= 0.95, "recall was " + recall / 50);
+    }
+
+    @Test
+    void search_shouldSkipDeletedAndRejectedNodes() {
+        HnswIndex index = new HnswIndex(DIMENSION, 8, 50);
+        float[][] vectors = randomVectors(new Random(3), 200);
+        for (float[] vector : vectors) {
+            index.add(vector);
+        }
+        index.delete(0);
+
+        List<Neighbor> found = index.search(vectors[0], 5, 40, node -> node % 2 == 0);
+
+        assertEquals(5, found.size());
+        assertFalse(found.stream().anyMatch(neighbor -> neighbor.node() == 0 || neighbor.node() % 2 != 0));
+        assertEquals(199, index.liveSize());
+    }
+
+    @Test
+    void readFrom_shouldRestoreTheGraphAndKeepAcceptingNodes(@TempDir Path dir) throws Exception {
+        float[][] vectors = randomVectors(new Random(5), 300);
+        HnswIndex index = new HnswIndex(DIMENSION, 8, 50);
+        for (int i = 0; i < 250; i++) {
+            index.add(vectors[i]);
+        }
+        Path file = dir.resolve("index.bin");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            index.writeTo(channel);
+        }
+
+        HnswIndex restored;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            restored = HnswIndex.readFrom(channel);
+        }
+        assertEquals(index.search(vectors[10], 5, 40, null), restored.search(vectors[10], 5, 40, null));
+
+        for (int i = 250; i < 300; i++) {
+            restored.add(vectors[i]);
+        }
+        assertEquals(299, restored.search(vectors[299], 1, 40, null).get(0).node());
+    }
+
+    private static float[][] randomVectors(Random random, int count) {
+        float[][] vectors = new float[count][DIMENSION];
+        for (float[] vector : vectors) {
+            for (int i = 0; i < DIMENSION; i++) {
+                vector[i] = (float) random.nextGaussian();
+            }
+        }
+        return vectors;
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0, normA = 0, normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return dot / Math.sqrt(normA * normB);
+    }
+}
@@ -0,0 +1,159 @@
+package com.LlamaTalks.v1.unitTests;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import com.LlamaTalks.v1.rag.HybridContentRetriever;
+import com.LlamaTalks.v1.rag.HybridContentRetriever.Mode;
+import com.LlamaTalks.v1.rag.RetrievalFilters;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.ContentMetadata;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.query.Query;
+
+@ExtendWith(MockitoExtension.class)
+class HybridContentRetrieverTest {
+
+    @Mock
+    private ContentRetriever vectorRetriever;
+
+    @Mock
+    private EmbeddingModel queryEmbeddingModel;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private HybridContentRetriever retriever(Mode mode) {
+        return new HybridContentRetriever(vectorRetriever, queryEmbeddingModel, jdbcTemplate, Runnable::run,
+                                        mode, 3, 10, 200, 0.75, 0.3);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void retrieve_shouldFuseBothRankingsAndKeepKeywordOnlyHits() {
+        Query query = Query.from("What does ERR-4021 mean?");
+        when(vectorRetriever.retrieve(query)).thenReturn(List.of(chunk("a"), chunk("b"), chunk("c"), chunk("d")));
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), eq(query.text()), eq(query.text()), eq(10)))
+            .thenReturn(List.of(keywordHit("err", 0.5), keywordHit("c", 0.1)));
+
+        List<Content> contents = retriever(Mode.HYBRID).retrieve(query);
+
+        // c is in both lists, err tops the keyword list, a tops the vector list
+        assertEquals(List.of("c", "a", "err"), ids(contents));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void retrieve_shouldDropKeywordOnlyHitsWithTooFewOfTheQuestionsTerms() {
+        Query query = Query.from("How do I configure the retry policy of the billing service?");
+        when(vectorRetriever.retrieve(query)).thenReturn(List.of(chunk("a")));
+        // configur, retri, polici, bill, servic: "service" alone, however often, is 1 of 5
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), eq(query.text()), eq(query.text()), eq(10)))
+            .thenReturn(List.of(keywordHit("retry-policy", 0.4), keywordHit("service", 0.2)));
+
+        assertEquals(List.of("a", "retry-policy"), ids(retriever(Mode.HYBRID).retrieve(query)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void retrieve_shouldKeepAKeywordOnlyHitThatMentionsTheIdentifierOnce() {
+        Query query = Query.from("Why does PaymentGateway throw on startup?");
+        when(vectorRetriever.retrieve(query)).thenReturn(List.of());
+        // paymentgateway, throw, startup: the chunk names the class once and nothing else
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), eq(query.text()), eq(query.text()), eq(10)))
+            .thenReturn(List.of(keywordHit("payment-gateway", 1.0 / 3)));
+
+        assertEquals(List.of("payment-gateway"), ids(retriever(Mode.HYBRID).retrieve(query)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void retrieve_shouldUseVectorResultsWhenKeywordSearchFails() {
+        Query query = Query.from("question");
+        when(vectorRetriever.retrieve(query)).thenReturn(List.of(chunk("a"), chunk("b")));
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), eq(query.text()), eq(query.text()), eq(10)))
+            .thenThrow(new IllegalStateException("no text_search column"));
+
+        assertEquals(List.of("a", "b"), ids(retriever(Mode.HYBRID).retrieve(query)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void retrieve_shouldFallBackToVectorSearchWhenPrefilterFindsNothing() {
+        Query query = Query.from("question");
+        when(queryEmbeddingModel.embed("question")).thenReturn(Response.from(Embedding.from(new float[]{1f, 0f})));
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), anyString(), anyString(), anyInt(), anyString(), anyInt()))
+            .thenReturn(List.of());
+        when(vectorRetriever.retrieve(query)).thenReturn(List.of(chunk("a")));
+
+        assertEquals(List.of("a"), ids(retriever(Mode.PREFILTER).retrieve(query)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void retrieve_shouldFallBackToVectorSearchWhileTheTextSearchColumnIsMissing() {
+        Query query = Query.from("question");
+        when(queryEmbeddingModel.embed("question")).thenReturn(Response.from(Embedding.from(new float[]{1f, 0f})));
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), anyString(), anyString(), anyInt(), anyString(), anyInt()))
+            .thenThrow(new BadSqlGrammarException("prefilter", "SELECT ...", new SQLException("column \"text_search\" does not exist")));
+        when(vectorRetriever.retrieve(query)).thenReturn(List.of(chunk("a")));
+
+        assertEquals(List.of("a"), ids(retriever(Mode.PREFILTER).retrieve(query)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void retrieve_shouldScopeKeywordSearchToTheQueryFilter() {
+        Query query = RetrievalFilters.query("What does ERR-4021 mean?", metadataKey("batchId").isEqualTo("batch-1"));
+        when(vectorRetriever.retrieve(query)).thenReturn(List.of(chunk("a")));
+        when(jdbcTemplate.query(contains("AND (metadata->>'batchId') = ?"), any(RowMapper.class), eq(query.text()), eq(query.text()), eq("batch-1"), eq(10)))
+            .thenReturn(List.of(keywordHit("err", 0.5)));
+
+        assertEquals(List.of("a", "err"), ids(retriever(Mode.HYBRID).retrieve(query)));
+    }
+
+    @Test
+    void retrieve_shouldOnlySearchVectorsInVectorMode() {
+        Query query = Query.from("question");
+        when(vectorRetriever.retrieve(query)).thenReturn(List.of(chunk("a"), chunk("b"), chunk("c"), chunk("d")));
+
+        assertEquals(List.of("a", "b", "c"), ids(retriever(Mode.VECTOR).retrieve(query)));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    private static Content chunk(String id) {
+        return Content.from(TextSegment.from("text of " + id), Map.of(ContentMetadata.EMBEDDING_ID, id));
+    }
+
+    private static Content keywordHit(String id, double matched) {
+        return Content.from(TextSegment.from("text of " + id), Map.of(ContentMetadata.EMBEDDING_ID, id, ContentMetadata.SCORE, matched));
+    }
+
+    private static List<Object> ids(List<Content> contents) {
+        return contents.stream().map(content -> content.metadata().get(ContentMetadata.EMBEDDING_ID)).toList();
+    }
+}
@@ -0,0 +1,115 @@
+package com.LlamaTalks.v1.unitTests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.LlamaTalks.v1.exception.IngestionQueueFull;
+import com.LlamaTalks.v1.ingestion.IngestionJob;
+import com.LlamaTalks.v1.ingestion.IngestionJobs;
+import com.LlamaTalks.v1.records.IngestionJobStatus;
+
+class IngestionJobsTest {
+
+    private final IngestionJobs jobs = new IngestionJobs(1, 1, 1, false);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        jobs.shutdown();
+    }
+
+    @Test
+    void submit_shouldRejectOnceWorkerAndQueueAreTaken() {
+        jobs.submit("/a", job -> await(release));
+        jobs.submit("/b", job -> await(release));
+
+        assertThrows(IngestionQueueFull.class, () -> jobs.submit("/c", job -> {}));
+    }
+
+    @Test
+    void cancel_shouldEndQueuedJobWithoutRunningIt() {
+        jobs.submit("/a", job -> await(release));
+        IngestionJob queued = jobs.submit("/b", job -> { throw new AssertionError("should not run"); });
+
+        queued.cancel();
+        release.countDown();
+
+        assertThrows(CancellationException.class, () -> queued.completion().join());
+        assertEquals(IngestionJob.Status.CANCELLED, queued.snapshot().status());
+    }
+
+    @Test
+    void execute_shouldMarkTheJobFailedWhenTheTaskThrowsAnError() {
+        IngestionJob job = jobs.submit("/a", j -> { throw new OutOfMemoryError("Java heap space"); });
+
+        assertThrows(CompletionException.class, () -> job.completion().join());
+        assertEquals(IngestionJob.Status.FAILED, job.snapshot().status());
+        assertEquals("Java heap space", job.snapshot().error());
+    }
+
+    @Test
+    void snapshot_shouldReportThroughputAndEta() {
+        CountDownLatch progressed = new CountDownLatch(1);
+        IngestionJob job = jobs.submit("/a", j -> {
+            j.setFilesTotal(4);
+            j.fileStored(10);
+            j.chunksEmbedded(10);
+            j.stageCompleted("embed", 5_000_000);
+            sleep(50);
+            progressed.countDown();
+            await(release);
+        });
+        await(progressed);
+
+        IngestionJobStatus status = job.snapshot();
+        assertEquals(IngestionJob.Status.RUNNING, status.status());
+        assertTrue(status.chunksPerSecond() > 0);
+        assertNotNull(status.etaSeconds());
+        assertEquals(5L, status.stageMillis().get("embed"));
+
+        release.countDown();
+        job.completion().join();
+        assertNull(job.snapshot().etaSeconds());
+        assertEquals(IngestionJob.Status.COMPLETED, job.snapshot().status());
+    }
+
+    @Test
+    void submit_shouldForgetOldestFinishedJobsBeyondRetention() {
+        IngestionJob first = jobs.submit("/a", job -> {});
+        first.completion().join();
+        IngestionJob second = jobs.submit("/b", job -> {});
+        second.completion().join();
+
+        jobs.submit("/c", job -> {}).completion().join();
+
+        assertTrue(jobs.find(first.id()).isEmpty());
+        assertTrue(jobs.find(second.id()).isPresent());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.LlamaTalks.v1.unitTests;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import com.LlamaTalks.v1.ingestion.ChunksRemovedEvent;
+import com.LlamaTalks.v1.ingestion.IngestionManifest;
+import com.LlamaTalks.v1.models.IngestedFile;
+import com.LlamaTalks.v1.repository.EmbeddingRepository;
+import com.LlamaTalks.v1.repository.IngestedFileRepository;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.logical.And;
+
+@ExtendWith(MockitoExtension.class)
+class IngestionManifestTest {
+
+    @Mock
+    private IngestedFileRepository ingestedFileRepository;
+
+    @Mock
+    private EmbeddingRepository embeddingRepository;
+
+    @Mock
+    private EmbeddingStore<TextSegment> embeddingStore;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private IngestionManifest manifest;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void checkForChanges_shouldReturnEntryForNewFile() throws IOException {
+        Path file = Files.writeString(dir.resolve("new.txt"), "hello");
+
+        IngestedFile entry = manifest.checkForChanges(file, null);
+
+        assertNotNull(entry);
+        assertEquals(IngestionManifest.key(file), entry.getPath());
+        assertEquals("new.txt", entry.getFileName());
+        assertEquals(5, entry.getSize());
+        assertEquals(64, entry.getContentHash().length());
+    }
+
+    @Test
+    void checkForChanges_shouldSkipFileWithSameSizeAndModificationTime() throws IOException {
+        Path file = Files.writeString(dir.resolve("same.txt"), "hello");
+        IngestedFile existing = manifest.checkForChanges(file, null);
+        existing.setContentHash("not-even-looked-at");
+
+        assertNull(manifest.checkForChanges(file, existing));
+        verifyNoInteractions(ingestedFileRepository);
+    }
+
+    @Test
+    void checkForChanges_shouldOnlyRefreshStatWhenContentIsIdentical() throws IOException {
+        Path file = Files.writeString(dir.resolve("touched.txt"), "hello");
+        IngestedFile existing = manifest.checkForChanges(file, null);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(existing.getLastModified() + 60_000));
+
+        assertNull(manifest.checkForChanges(file, existing));
+        assertEquals(existing.getLastModified(), Files.getLastModifiedTime(file).toMillis());
+        verify(ingestedFileRepository).save(existing);
+    }
+
+    @Test
+    void checkForChanges_shouldReturnUpdatedEntryWhenContentChanged() throws IOException {
+        Path file = Files.writeString(dir.resolve("edited.txt"), "hello");
+        IngestedFile existing = manifest.checkForChanges(file, null);
+        String oldHash = existing.getContentHash();
+        Files.writeString(file, "hello, world");
+
+        IngestedFile entry = manifest.checkForChanges(file, existing);
+
+        assertNotNull(entry);
+        assertNotEquals(oldHash, entry.getContentHash());
+        verify(ingestedFileRepository, never()).save(any());
+    }
+
+    @Test
+    void removeDeleted_shouldDropChunksAndManifestRow() {
+        IngestedFile gone = new IngestedFile(1L, "/docs/gone.txt", "gone.txt", 3, 0, "hash", 1, "batch-1", null);
+
+        manifest.removeDeleted(List.of(gone));
+
+        verify(embeddingStore).removeAll(any(Filter.class));
+        verify(ingestedFileRepository).delete(gone);
+        verify(eventPublisher).publishEvent(new ChunksRemovedEvent("/docs/gone.txt", "gone.txt"));
+    }
+
+    @Test
+    void replaceChunks_shouldOnlyDropChunksOfEarlierBatches() {
+        IngestedFile changed = new IngestedFile(1L, "/docs/rag.md", "rag.md", 3, 0, "hash", 1, "batch-1", null);
+
+        manifest.replaceChunks(changed, "batch-2");
+
+        verify(embeddingStore).removeAll(new And(metadataKey("filePath").isEqualTo("/docs/rag.md"),
+                                                metadataKey("batchId").isNotEqualTo("batch-2")));
+        verifyNoInteractions(embeddingRepository);
+        verify(eventPublisher).publishEvent(new ChunksRemovedEvent("/docs/rag.md", "rag.md"));
+    }
+
+    @Test
+    void replaceChunks_shouldScopeLegacyChunksToTheFilesDirectory() {
+        IngestedFile first = new IngestedFile();
+        first.setPath("/docs/a/notes.txt");
+        first.setFileName("notes.txt");
+
+        manifest.replaceChunks(first, "batch-2");
+
+        verify(embeddingRepository).deleteLegacyChunks("notes.txt", "/docs/a");
+    }
+}
@@ -0,0 +1,113 @@
+package com.LlamaTalks.v1.unitTests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
+
+import com.LlamaTalks.v1.ingestion.IngestionPipeline;
+import com.LlamaTalks.v1.ingestion.PipelineResult;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+
+@ExtendWith(MockitoExtension.class)
+class IngestionPipelineTest {
+
+    @Mock
+    private EmbeddingModel embeddingModel;
+
+    @Mock
+    private EmbeddingStore<TextSegment> embeddingStore;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void run_shouldStoreEveryFileThroughSmallQueuesInBatches() {
+        List<Path> files = IntStream.range(0, 10)
+            .mapToObj(i -> write("doc" + i + ".txt", "Content of document " + i))
+            .toList();
+        when(embeddingModel.embedAll(anyList()))
+            .thenAnswer(inv -> Response.from(List.of(Embedding.from(new float[]{1f}))));
+
+        IngestionPipeline pipeline = new IngestionPipeline(embeddingModel, embeddingStore, 2, 2, 2, 1, 1, 4, Duration.ofMinutes(1), DataSize.ofMegabytes(1), false);
+        PipelineResult result = pipeline.run(files.iterator(), "batch-1");
+
+        assertEquals(10, result.filesStored());
+        assertEquals(0, result.filesFailed());
+        assertEquals(10, result.chunksStored());
+        verify(embeddingStore, times(3)).addAll(anyList(), anyList());
+    }
+
+    @Test
+    void run_shouldCountUnparseableFilesAsFailedAndContinue() {
+        Path good = write("good.txt", "Some content");
+        Path missing = dir.resolve("missing.txt");
+        when(embeddingModel.embedAll(anyList()))
+            .thenAnswer(inv -> Response.from(List.of(Embedding.from(new float[]{1f}))));
+
+        IngestionPipeline pipeline = new IngestionPipeline(embeddingModel, embeddingStore, 1, 1, 1, 1, 4, 100, Duration.ofMinutes(1), DataSize.ofMegabytes(1), false);
+        PipelineResult result = pipeline.run(List.of(missing, good).iterator(), "batch-1");
+
+        assertEquals(1, result.filesStored());
+        assertEquals(1, result.filesFailed());
+    }
+
+    @Test
+    void run_shouldAbortWhenStoreFails() {
+        Path file = write("doc.txt", "Some content");
+        when(embeddingModel.embedAll(anyList()))
+            .thenAnswer(inv -> Response.from(List.of(Embedding.from(new float[]{1f}))));
+        doThrow(new IllegalStateException("database down")).when(embeddingStore).addAll(anyList(), anyList());
+
+        IngestionPipeline pipeline = new IngestionPipeline(embeddingModel, embeddingStore, 1, 1, 1, 1, 4, 100, Duration.ofMinutes(1), DataSize.ofMegabytes(1), false);
+
+        assertThrows(IllegalStateException.class, () -> pipeline.run(List.of(file).iterator(), "batch-1"));
+    }
+
+    @Test
+    void run_shouldSkipFilesOverTheSizeLimitWithoutParsingThem() {
+        Path small = write("small.txt", "Some content");
+        Path large = write("large.txt", "x".repeat(2048));
+        when(embeddingModel.embedAll(anyList()))
+            .thenAnswer(inv -> Response.from(List.of(Embedding.from(new float[]{1f}))));
+
+        IngestionPipeline pipeline = new IngestionPipeline(embeddingModel, embeddingStore, 1, 1, 1, 1, 4, 100, Duration.ofMinutes(1), DataSize.ofBytes(1024), false);
+        PipelineResult result = pipeline.run(List.of(large, small).iterator(), "batch-1");
+
+        assertEquals(1, result.filesStored());
+        assertEquals(1, result.filesSkipped());
+        assertEquals(0, result.filesFailed());
+        verify(embeddingModel, times(1)).embedAll(anyList());
+    }
+
+    private Path write(String name, String content) {
+        try {
+            return Files.writeString(dir.resolve(name), content);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -2,22 +2,38 @@ package com.LlamaTalks.v1.unitTests;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
 
-import com.LlamaTalks.v1.records.FileNameDTO;
-import com.LlamaTalks.v1.repository.EmbeddingRepository;
+import com.LlamaTalks.v1.exception.IngestionDirectoryNotFound;
+import com.LlamaTalks.v1.exception.IngestionJobNotFound;
+import com.LlamaTalks.v1.ingestion.IngestionCompletedEvent;
+import com.LlamaTalks.v1.ingestion.IngestionJob;
+import com.LlamaTalks.v1.ingestion.IngestionJobs;
+import com.LlamaTalks.v1.ingestion.IngestionManifest;
+import com.LlamaTalks.v1.ingestion.IngestionPipeline;
+import com.LlamaTalks.v1.ingestion.PipelineListener;
+import com.LlamaTalks.v1.ingestion.PipelineResult;
+import com.LlamaTalks.v1.models.IngestedFile;
+import com.LlamaTalks.v1.records.IngestedFilePage;
+import com.LlamaTalks.v1.records.IngestionJobStatus;
+import com.LlamaTalks.v1.repository.IngestedFileRepository;
 import com.LlamaTalks.v1.service.IngestionServiceImpl;
 
-import dev.langchain4j.data.document.DocumentSplitter;
-import dev.langchain4j.data.segment.TextSegment;
-import dev.langchain4j.model.embedding.EmbeddingModel;
-import dev.langchain4j.store.embedding.EmbeddingStore;
-
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CompletionException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -26,16 +42,19 @@ import static org.mockito.Mockito.*;
 class IngestionServiceTest {
 
     @Mock
-    private DocumentSplitter splitter;
-    
+    private IngestionPipeline ingestionPipeline;
+
     @Mock
-    private EmbeddingModel embeddingModel;
+    private IngestionManifest ingestionManifest;
     
+    @Spy
+    private IngestionJobs ingestionJobs = new IngestionJobs(1, 4, 10, false);
+
     @Mock
-    private EmbeddingStore<TextSegment> embeddingStore;
-    
+    private IngestedFileRepository ingestedFileRepository;
+
     @Mock
-    private EmbeddingRepository embeddingRepository;
+    private ApplicationEventPublisher eventPublisher;
     
     @InjectMocks
     private IngestionServiceImpl service;
@@ -44,42 +63,118 @@ class IngestionServiceTest {
     void ingestDirectory_shouldThrowExceptionForNonExistentDirectory() {
         String fakePath = "/writing/tests/isnt/enjoyable/";
 
-        CompletableFuture<String> future = service.ingestDirectory(fakePath);
+        IngestionDirectoryNotFound e = assertThrows(IngestionDirectoryNotFound.class, () -> service.ingestDirectory(fakePath));
 
-        CompletionException e = assertThrows(CompletionException.class, () -> {
-            future.join(); 
-        });
-        
-        Throwable cause = e.getCause();
-        assertInstanceOf(IllegalArgumentException.class, cause);
-        assertEquals("Directory does not exist: " + fakePath, cause.getMessage());
+        assertEquals("Directory does not exist: " + fakePath, e.getMessage());
+        verify(ingestionJobs, never()).submit(anyString(), any());
     }
     
     @Test
-    void getAllFileNames_shouldReturnListOfFiles() {
-        UUID id1 = UUID.randomUUID();
-        UUID id2 = UUID.randomUUID();
-        Object[] row1 = {id1, "document1.pdf"};
-        Object[] row2 = {id2, "document2.pdf"};
-        List<Object[]> mockData = Arrays.asList(row1, row2);
-        
-        when(embeddingRepository.findAllFileNames()).thenReturn(mockData);
-        
-        List<FileNameDTO> result = service.getAllFileNames();
-        
-        assertNotNull(result);
-        assertEquals(2, result.size());
-        assertEquals("document1.pdf", result.get(0).fileName());
-        assertEquals("document2.pdf", result.get(1).fileName());
+    void ingestDirectory_shouldCheckFilesOnlyAsThePipelinePullsThem(@TempDir Path dir) throws IOException {
+        for (int i = 0; i < 5; i++) {
+            Files.writeString(dir.resolve("doc" + i + ".txt"), "content " + i);
+        }
+        when(ingestionManifest.entriesUnder(dir)).thenReturn(new HashMap<>());
+        when(ingestionPipeline.maxFileSizeBytes()).thenReturn(1024L);
+        when(ingestionManifest.checkForChanges(any(Path.class), any(BasicFileAttributes.class), isNull())).thenAnswer(inv -> new IngestedFile());
+        when(ingestionPipeline.run(any(), anyString(), any(PipelineListener.class))).thenAnswer(inv -> {
+            Iterator<Path> files = inv.getArgument(0);
+            files.next();
+            verify(ingestionManifest, times(1)).checkForChanges(any(Path.class), any(BasicFileAttributes.class), isNull());
+            files.forEachRemaining(file -> {});
+            return new PipelineResult(5, 0, 0, 5);
+        });
+
+        IngestionJob job = service.ingestDirectory(dir.toString());
+        job.completion().join();
+
+        verify(ingestionManifest, times(5)).checkForChanges(any(Path.class), any(BasicFileAttributes.class), isNull());
+        verify(ingestionManifest).removeDeleted(argThat(Collection::isEmpty));
+        IngestionJobStatus status = service.getJob(job.id());
+        assertEquals(IngestionJob.Status.COMPLETED, status.status());
+        assertEquals(5, status.filesTotal());
+        assertEquals(5, status.filesScanned());
+        verify(eventPublisher).publishEvent(new IngestionCompletedEvent(job.id(), 5));
     }
-    
+
+    @Test
+    void ingestDirectory_shouldSkipFilesOverTheSizeLimitBeforeHashingAndKeepTheirChunks(@TempDir Path dir) throws IOException {
+        Path large = Files.writeString(dir.resolve("large.txt"), "x".repeat(2048));
+        Files.writeString(dir.resolve("small.txt"), "content");
+        IngestedFile stored = new IngestedFile(1L, IngestionManifest.key(large), "large.txt", 10, 0, "h1", 4, "batch-0", LocalDateTime.now());
+        when(ingestionManifest.entriesUnder(dir)).thenReturn(new HashMap<>(Map.of(stored.getPath(), stored)));
+        when(ingestionPipeline.maxFileSizeBytes()).thenReturn(1024L);
+        when(ingestionManifest.checkForChanges(any(Path.class), any(BasicFileAttributes.class), isNull())).thenAnswer(inv -> new IngestedFile());
+        when(ingestionPipeline.run(any(), anyString(), any(PipelineListener.class))).thenAnswer(inv -> {
+            Iterator<Path> files = inv.getArgument(0);
+            List<Path> pulled = new ArrayList<>();
+            files.forEachRemaining(pulled::add);
+            assertEquals(List.of(dir.resolve("small.txt")), pulled);
+            return new PipelineResult(1, 0, 0, 1);
+        });
+
+        IngestionJob job = service.ingestDirectory(dir.toString());
+        job.completion().join();
+
+        verify(ingestionManifest, never()).checkForChanges(eq(large), any(BasicFileAttributes.class), any());
+        verify(ingestionManifest).removeDeleted(argThat(Collection::isEmpty));
+        assertEquals(1, service.getJob(job.id()).filesSkipped());
+    }
+
     @Test
-    void getAllFileNames_shouldReturnEmptyListWhenNoFiles() {
-        when(embeddingRepository.findAllFileNames()).thenReturn(Collections.emptyList());
-        
-        List<FileNameDTO> result = service.getAllFileNames();
-        
-        assertNotNull(result);
-        assertTrue(result.isEmpty());
+    void cancelJob_shouldStopThePipelineAndKeepDeletedFiles(@TempDir Path dir) throws IOException {
+        Files.writeString(dir.resolve("doc.txt"), "content");
+        CountDownLatch running = new CountDownLatch(1);
+        when(ingestionManifest.entriesUnder(dir)).thenReturn(new HashMap<>());
+        when(ingestionPipeline.run(any(), anyString(), any(PipelineListener.class))).thenAnswer(inv -> {
+            PipelineListener listener = inv.getArgument(2);
+            running.countDown();
+            while (!listener.isCancelled()) {
+                Thread.onSpinWait();
+            }
+            throw new CancellationException("Ingestion cancelled");
+        });
+
+        IngestionJob job = service.ingestDirectory(dir.toString());
+        assertDoesNotThrow(() -> running.await());
+        service.cancelJob(job.id());
+
+        assertThrows(CancellationException.class, () -> job.completion().join());
+        assertEquals(IngestionJob.Status.CANCELLED, service.getJob(job.id()).status());
+        verify(ingestionManifest, never()).removeDeleted(any());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void getJob_shouldThrowForUnknownId() {
+        assertThrows(IngestionJobNotFound.class, () -> service.getJob("nope"));
+    }
+
+    @Test
+    void getIngestedFiles_shouldReturnPageOfRegistryRows() {
+        IngestedFile file1 = new IngestedFile(1L, "/docs/document1.pdf", "document1.pdf", 10, 0, "h1", 4, "batch-1", LocalDateTime.now());
+        IngestedFile file2 = new IngestedFile(2L, "/docs/document2.pdf", "document2.pdf", 20, 0, "h2", 7, "batch-1", LocalDateTime.now());
+        when(ingestedFileRepository.findAll(any(Pageable.class)))
+            .thenAnswer(inv -> new PageImpl<>(List.of(file1, file2), inv.getArgument(0), 12));
+
+        IngestedFilePage result = service.getIngestedFiles(1, 2);
+
+        assertEquals(2, result.files().size());
+        assertEquals("document1.pdf", result.files().get(0).fileName());
+        assertEquals(7, result.files().get(1).chunkCount());
+        assertEquals(1, result.page());
+        assertEquals(12, result.totalFiles());
+    }
+
+    @Test
+    void getIngestedFiles_shouldClampPageSize() {
+        when(ingestedFileRepository.findAll(any(Pageable.class)))
+            .thenAnswer(inv -> new PageImpl<>(Collections.<IngestedFile>emptyList(), inv.getArgument(0), 0));
+
+        IngestedFilePage result = service.getIngestedFiles(-3, 100_000);
+
+        verify(ingestedFileRepository).findAll(argThat((Pageable p) -> p.getPageSize() == 200 && p.getPageNumber() == 0));
+        assertTrue(result.files().isEmpty());
+        assertEquals(0, result.totalFiles());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,90 @@
+package com.LlamaTalks.v1.unitTests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.LlamaTalks.v1.chat.MessagePersister;
+import com.LlamaTalks.v1.models.Conversation;
+import com.LlamaTalks.v1.models.Message;
+import com.LlamaTalks.v1.models.MessageRole;
+
+@ExtendWith(MockitoExtension.class)
+class MessagePersisterTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void shutdown_shouldFlushEveryQueuedMessageInOrder() {
+        MessagePersister persister = new MessagePersister(jdbcTemplate, 100, 3);
+        Conversation conversation = conversation(7L);
+
+        for (int i = 0; i < 10; i++) {
+            persister.enqueue(message(conversation, "message " + i));
+        }
+        persister.shutdown();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> batches = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, atLeastOnce()).batchUpdate(anyString(), batches.capture());
+        List<Object> written = new ArrayList<>();
+        for (List<Object[]> batch : batches.getAllValues()) {
+            assertEquals(true, batch.size() <= 3);
+            batch.forEach(row -> {
+                assertEquals(7L, row[1]);
+                written.add(row[0]);
+            });
+        }
+        assertEquals(List.of("message 0", "message 1", "message 2", "message 3", "message 4",
+                            "message 5", "message 6", "message 7", "message 8", "message 9"), written);
+    }
+
+    @Test
+    void write_shouldRetryRowByRowWhenBatchFails() {
+        doThrow(new DataIntegrityViolationException("conversation deleted"))
+            .when(jdbcTemplate).batchUpdate(anyString(), anyList());
+        when(jdbcTemplate.update(anyString(), any(Object[].class))).thenReturn(1);
+        MessagePersister persister = new MessagePersister(jdbcTemplate, 100, 10);
+        persister.shutdown();
+
+        persister.enqueue(message(conversation(1L), "after shutdown"));
+        persister.enqueue(message(conversation(2L), "also after shutdown"));
+
+        verify(jdbcTemplate, times(2)).update(anyString(), any(Object[].class));
+    }
+
+    private static Conversation conversation(Long id) {
+        Conversation conversation = new Conversation();
+        conversation.setId(id);
+        conversation.setConversationId("conv-" + id);
+        return conversation;
+    }
+
+    private static Message message(Conversation conversation, String content) {
+        Message message = new Message();
+        message.setConversation(conversation);
+        message.setContent(content);
+        message.setRole(MessageRole.USER);
+        message.setGeneratedAt(LocalDateTime.now());
+        return message;
+    }
+}
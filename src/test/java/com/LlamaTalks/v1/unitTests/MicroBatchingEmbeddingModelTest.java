@@ -0,0 +1,88 @@
+package com.LlamaTalks.v1.unitTests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.LlamaTalks.v1.rag.MicroBatchingEmbeddingModel;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class MicroBatchingEmbeddingModelTest {
+
+    @Test
+    void embed_shouldSendConcurrentQueriesAsOneBatchAndHandEachCallerItsOwnEmbedding() throws Exception {
+        CountingModel delegate = new CountingModel();
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        MicroBatchingEmbeddingModel model = new MicroBatchingEmbeddingModel(delegate, 8, Duration.ofSeconds(5), meterRegistry);
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Future<Embedding>> results = new ArrayList<>();
+        try (ExecutorService callers = Executors.newFixedThreadPool(8)) {
+            for (int i = 0; i < 8; i++) {
+                String question = "q".repeat(i + 1);
+                results.add(callers.submit(() -> {
+                    start.await();
+                    return model.embed(question).content();
+                }));
+            }
+            start.countDown();
+            for (int i = 0; i < 8; i++) {
+                assertEquals(i + 1, results.get(i).get().vector()[0]);
+            }
+        }
+
+        assertEquals(1, delegate.calls.get());
+        assertEquals(8.0, meterRegistry.get("rag.query.embedding.batch.size").summary().max());
+        assertEquals(1.0, meterRegistry.get("rag.query.embedding.batch.fill").summary().max());
+    }
+
+    @Test
+    void embed_shouldSendLoneQueryOnceMaxWaitPasses() {
+        CountingModel delegate = new CountingModel();
+        MicroBatchingEmbeddingModel model = new MicroBatchingEmbeddingModel(delegate, 8, Duration.ofMillis(20), new SimpleMeterRegistry());
+
+        Embedding embedding = model.embed("hello").content();
+
+        assertEquals(5f, embedding.vector()[0]);
+        assertEquals(1, delegate.calls.get());
+    }
+
+    @Test
+    void embed_shouldFailEveryCallerOfAFailedBatch() {
+        EmbeddingModel failing = segments -> {
+            throw new IllegalStateException("ollama down");
+        };
+        MicroBatchingEmbeddingModel model = new MicroBatchingEmbeddingModel(failing, 8, Duration.ofMillis(5), new SimpleMeterRegistry());
+
+        assertThrows(IllegalStateException.class, () -> model.embed("hello"));
+    }
+
+    // Embeds every text as [text length] and counts embedAll calls
+    private static class CountingModel implements EmbeddingModel {
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public Response<List<Embedding>> embedAll(List<TextSegment> segments) {
+            calls.incrementAndGet();
+            return Response.from(segments.stream()
+                .map(segment -> Embedding.from(new float[]{segment.text().length()}))
+                .toList());
+        }
+    }
+}
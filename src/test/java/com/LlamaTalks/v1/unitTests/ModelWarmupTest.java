@@ -0,0 +1,120 @@
+package com.LlamaTalks.v1.unitTests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.actuate.health.Status;
+
+import com.LlamaTalks.v1.chat.GenerationScheduler;
+import com.LlamaTalks.v1.chat.GenerationScheduler.Ticket;
+import com.LlamaTalks.v1.chat.OllamaPromptCache;
+import com.LlamaTalks.v1.configuration.ModelWarmup;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.ollama.OllamaChatModel;
+import dev.langchain4j.model.ollama.OllamaChatRequestParameters;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+class ModelWarmupTest {
+    private static final Duration PING_INTERVAL = Duration.ofMinutes(4);
+    private static final Duration IDLE_AFTER = Duration.ofMinutes(30);
+
+    @Mock
+    private OllamaChatModel ollama;
+
+    @Mock
+    private EmbeddingModel embeddingModel;
+
+    private final AtomicLong elapsed = new AtomicLong();
+    private SimpleMeterRegistry meterRegistry;
+    private GenerationScheduler generationScheduler;
+    private ModelWarmup warmup;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        generationScheduler = new GenerationScheduler(2, 10, 2, Duration.ofMinutes(1), meterRegistry);
+        OllamaPromptCache promptCache = new OllamaPromptCache(Duration.ofMinutes(30), meterRegistry);
+        warmup = new ModelWarmup(ollama, embeddingModel, generationScheduler, promptCache, true, Duration.ofSeconds(10),
+                                PING_INTERVAL, IDLE_AFTER, false, meterRegistry, () -> System.currentTimeMillis() + elapsed.get());
+    }
+
+    @AfterEach
+    void tearDown() {
+        warmup.shutdown();
+    }
+
+    @Test
+    void warmUp_shouldStayOutOfServiceUntilBothModelsAnswered() {
+        when(embeddingModel.embed("ping"))
+            .thenThrow(new RuntimeException("Connection refused"))
+            .thenReturn(Response.from(Embedding.from(new float[]{1f})));
+
+        assertFalse(warmup.warmUp());
+        assertEquals(Status.OUT_OF_SERVICE, warmup.health().getStatus());
+        assertEquals("warm", warmup.health().getDetails().get("chatModel"));
+
+        assertTrue(warmup.warmUp());
+        assertEquals(Status.UP, warmup.health().getStatus());
+        // The chat model was loaded the first time round and is not asked again
+        ArgumentCaptor<ChatRequest> request = ArgumentCaptor.forClass(ChatRequest.class);
+        verify(ollama, times(1)).chat(request.capture());
+        assertEquals(1, request.getValue().maxOutputTokens());
+        assertEquals(1800, ((OllamaChatRequestParameters) request.getValue().parameters()).keepAlive());
+    }
+
+    @Test
+    void keepAlive_shouldPingOnlyWhileChatTrafficIsPresent() {
+        warmup.keepAlive();
+        verifyNoInteractions(ollama, embeddingModel);
+
+        generationScheduler.enqueue("client-1").cancel();
+        warmup.keepAlive();
+        // The request just now already reset the chat model's keep_alive
+        verify(embeddingModel, times(1)).embed("ping");
+        verify(ollama, never()).chat(any(ChatRequest.class));
+
+        elapsed.set(PING_INTERVAL.toMillis() + 1);
+        warmup.keepAlive();
+        verify(ollama, times(1)).chat(any(ChatRequest.class));
+        assertEquals(0, generationScheduler.active());
+
+        elapsed.set(IDLE_AFTER.toMillis() + 1);
+        warmup.keepAlive();
+        verify(embeddingModel, times(2)).embed("ping");
+        verify(ollama, times(1)).chat(any(ChatRequest.class));
+    }
+
+    @Test
+    void keepAlive_shouldLeaveTheChatModelAloneWhileItIsGenerating() {
+        Ticket generating = generationScheduler.enqueue("client-1");
+        elapsed.set(PING_INTERVAL.toMillis() + 1);
+
+        warmup.keepAlive();
+
+        verify(ollama, never()).chat(any(ChatRequest.class));
+        verify(embeddingModel).embed("ping");
+        generating.cancel();
+    }
+}
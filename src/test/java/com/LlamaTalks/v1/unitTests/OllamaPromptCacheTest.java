@@ -0,0 +1,102 @@
+package com.LlamaTalks.v1.unitTests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.LlamaTalks.v1.chat.OllamaPromptCache;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.ollama.OllamaChatModel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// Against a stub of Ollama's /api/chat: what goes over the wire and what comes back
+class OllamaPromptCacheTest {
+    private static final String RESPONSE = """
+        {"model":"llama3.2","created_at":"2025-01-01T00:00:00Z","message":{"role":"assistant","content":"Hello!"},
+         "done":true,"done_reason":"stop","prompt_eval_count":25,"eval_count":3}
+        """;
+
+    private final AtomicReference<JsonNode> lastRequest = new AtomicReference<>();
+    private SimpleMeterRegistry meterRegistry;
+    private HttpServer ollama;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        meterRegistry = new SimpleMeterRegistry();
+        ollama = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        ollama.createContext("/api/chat", exchange -> {
+            lastRequest.set(new ObjectMapper().readTree(exchange.getRequestBody()));
+            byte[] body = RESPONSE.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        ollama.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        ollama.stop(0);
+    }
+
+    @Test
+    void request_shouldAskOllamaToKeepTheModelLoaded() {
+        OllamaPromptCache promptCache = new OllamaPromptCache(Duration.ofMinutes(30), meterRegistry);
+
+        ChatResponse response = model().chat(promptCache.request(List.of(SystemMessage.from("Summary."), UserMessage.from("Hi"))));
+
+        assertEquals("Hello!", response.aiMessage().text());
+        assertEquals(1800, lastRequest.get().get("keep_alive").asInt());
+        assertEquals("system", lastRequest.get().get("messages").get(0).get("role").asText());
+        assertEquals("Hi", lastRequest.get().get("messages").get(1).get("content").asText());
+    }
+
+    @Test
+    void request_shouldKeepTheModelForGoodWithANegativeKeepAlive() {
+        OllamaPromptCache promptCache = new OllamaPromptCache(Duration.ofSeconds(-1), meterRegistry);
+
+        model().chat(promptCache.request(List.of(UserMessage.from("Hi"))));
+
+        assertEquals(-1, lastRequest.get().get("keep_alive").asInt());
+    }
+
+    @Test
+    void record_shouldReportEvaluatedTokensAndTheShareServedFromCache() {
+        OllamaPromptCache promptCache = new OllamaPromptCache(Duration.ofMinutes(30), meterRegistry);
+        ChatResponse response = model().chat(promptCache.request(List.of(UserMessage.from("Hi"))));
+
+        promptCache.record(100, response);
+
+        assertEquals(25.0, meterRegistry.get("chat.prompt.evaluated").summary().totalAmount());
+        assertEquals(0.75, meterRegistry.get("chat.prompt.cache.reused").summary().totalAmount(), 1e-9);
+        promptCache.record(10, response);
+        assertTrue(meterRegistry.get("chat.prompt.cache.reused").summary().max() <= 0.75);
+    }
+
+    private OllamaChatModel model() {
+        return OllamaChatModel.builder()
+                                .baseUrl("http://127.0.0.1:" + ollama.getAddress().getPort())
+                                .modelName("llama3.2")
+                                .timeout(Duration.ofSeconds(5))
+                                .build();
+    }
+}
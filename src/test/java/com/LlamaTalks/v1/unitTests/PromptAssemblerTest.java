@@ -0,0 +1,143 @@
+package com.LlamaTalks.v1.unitTests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.LlamaTalks.v1.chat.ApproximateTokenCountEstimator;
+import com.LlamaTalks.v1.chat.PromptAssembler;
+import com.LlamaTalks.v1.chat.PromptAssembler.Layout;
+import com.LlamaTalks.v1.chat.PromptAssembler.Prompt;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.rag.content.Content;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class PromptAssemblerTest {
+    private final ApproximateTokenCountEstimator tokenizer = new ApproximateTokenCountEstimator(4);
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        this.meterRegistry = new SimpleMeterRegistry();
+    }
+
+    private PromptAssembler assembler(int maxTokens) {
+        return new PromptAssembler(tokenizer, maxTokens, 0.5, 20, Layout.CONTEXT_FIRST, 6, meterRegistry);
+    }
+
+    @Test
+    void assemble_shouldKeepEverythingThatFitsInOrder() {
+        List<ChatMessage> history = List.of(UserMessage.from("Hi"), AiMessage.from("Hello, how can I help?"));
+
+        Prompt prompt = assembler(1000).assemble(history, List.of(chunk("first chunk"), chunk("second chunk")), "What is RAG?");
+
+        assertEquals(4, prompt.messages().size());
+        assertEquals(SystemMessage.from(PromptAssembler.CONTEXT_PREAMBLE + "first chunk\n\nsecond chunk"), prompt.messages().get(0));
+        assertEquals(history, prompt.messages().subList(1, 3));
+        assertEquals(UserMessage.from("What is RAG?"), prompt.messages().get(3));
+        assertEquals(tokenizer.estimateTokenCountInMessages(prompt.messages()),
+                    prompt.historyTokens() + prompt.contextTokens() + prompt.questionTokens());
+        assertEquals(1, meterRegistry.get("chat.prompt.tokens").tag("part", "total").summary().count());
+    }
+
+    @Test
+    void assemble_shouldTrimTheFirstChunkThatDoesNotFitAndDropTheRest() {
+        String longChunk = "word ".repeat(200).trim();
+
+        Prompt prompt = assembler(200).assemble(List.of(), List.of(chunk("short chunk"), chunk(longChunk), chunk("never used")), "Why?");
+
+        assertEquals(2, prompt.contents().size());
+        String trimmed = prompt.contents().get(1).textSegment().text();
+        assertTrue(trimmed.length() < longChunk.length() && longChunk.startsWith(trimmed) && trimmed.endsWith("word"));
+        assertTrue(prompt.historyTokens() + prompt.contextTokens() + prompt.questionTokens() <= 200);
+        assertEquals(1.0, meterRegistry.get("chat.prompt.trimmed").counter().count());
+        assertEquals(1.0, meterRegistry.get("chat.prompt.dropped").tag("part", "chunks").counter().count());
+    }
+
+    @Test
+    void assemble_shouldDropTheOldestTurnsFirst() {
+        List<ChatMessage> history = List.of(
+            UserMessage.from("old question ".repeat(20)), AiMessage.from("old answer ".repeat(20)),
+            UserMessage.from("recent question"), AiMessage.from("recent answer"));
+
+        Prompt prompt = assembler(120).assemble(history, List.of(chunk("some context ".repeat(10))), "And now?");
+
+        List<ChatMessage> messages = prompt.messages();
+        assertInstanceOf(SystemMessage.class, messages.get(0));
+        assertEquals(history.subList(2, 4), messages.subList(1, 3));
+        assertEquals(2.0, meterRegistry.get("chat.prompt.dropped").tag("part", "messages").counter().count());
+    }
+
+    @Test
+    void assemble_shouldNotStartHistoryWithAnAnswer() {
+        List<ChatMessage> history = List.of(UserMessage.from("question ".repeat(30)), AiMessage.from("short answer"));
+
+        Prompt prompt = assembler(60).assemble(history, List.of(), "Next?");
+
+        assertEquals(List.of(UserMessage.from("Next?")), prompt.messages());
+    }
+
+    @Test
+    void assemble_shouldPutTheSummaryFirstAndTakeItOffTheBudget() {
+        List<ChatMessage> history = List.of(UserMessage.from("recent question"), AiMessage.from("recent answer"));
+
+        Prompt prompt = assembler(1000).assemble("The user asked about pgvector.", history, List.of(chunk("some context")), "And HNSW?");
+
+        assertEquals(SystemMessage.from(PromptAssembler.SUMMARY_PREAMBLE + "The user asked about pgvector."), prompt.messages().get(0));
+        assertEquals(SystemMessage.from(PromptAssembler.CONTEXT_PREAMBLE + "some context"), prompt.messages().get(1));
+        assertEquals(history, prompt.messages().subList(2, 4));
+        assertEquals(tokenizer.estimateTokenCountInMessages(prompt.messages()),
+                    prompt.historyTokens() + prompt.contextTokens() + prompt.questionTokens() + prompt.summaryTokens());
+    }
+
+    @Test
+    void assemble_shouldKeepLastTurnsPromptAsThePrefixOfThisOneWhenPrefixStable() {
+        PromptAssembler assembler = new PromptAssembler(tokenizer, 1000, 0.5, 20, Layout.PREFIX_STABLE, 6, meterRegistry);
+        List<ChatMessage> history = List.of(UserMessage.from("First question"), AiMessage.from("First answer"));
+
+        Prompt first = assembler.assemble("Summary.", history, List.of(chunk("context one")), "Second question");
+        List<ChatMessage> afterAnswer = List.of(history.get(0), history.get(1), UserMessage.from("Second question"), AiMessage.from("Second answer"));
+        Prompt second = assembler.assemble("Summary.", afterAnswer, List.of(chunk("context two")), "Third question");
+
+        assertEquals(SystemMessage.from(PromptAssembler.CONTEXT_PREAMBLE + "context two"), second.messages().get(5));
+        assertEquals(UserMessage.from("Third question"), second.messages().get(6));
+        // Everything but last turn's context and question is shared
+        assertEquals(first.messages().subList(0, 3), second.messages().subList(0, 3));
+    }
+
+    @Test
+    void assemble_shouldKeepTheHistoryStartAcrossTurnsOfALongConversationWhenPrefixStable() {
+        PromptAssembler assembler = new PromptAssembler(tokenizer, 250, 0.5, 20, Layout.PREFIX_STABLE, 6, meterRegistry);
+        List<ChatMessage> history = new ArrayList<>();
+        for (int turn = 0; turn < 11; turn++) {
+            history.add(UserMessage.from("question number " + turn + " about the documents"));
+            history.add(AiMessage.from("answer number " + turn + " with a few more words in it"));
+        }
+
+        Prompt first = assembler.assemble("Summary.", history, List.of(chunk("context one")), "Next question");
+        history.add(UserMessage.from("Next question"));
+        history.add(AiMessage.from("Next answer"));
+        Prompt second = assembler.assemble("Summary.", history, List.of(chunk("context two")), "Last question");
+
+        // Old turns were dropped both times, the same ones
+        int shared = first.messages().size() - 2;
+        assertTrue(meterRegistry.get("chat.prompt.dropped").tag("part", "messages").counter().count() > 0);
+        assertEquals(second.messages().size() - 2, shared + 2);
+        assertEquals(first.messages().subList(0, shared), second.messages().subList(0, shared));
+    }
+
+    private static Content chunk(String text) {
+        return Content.from(TextSegment.from(text));
+    }
+}
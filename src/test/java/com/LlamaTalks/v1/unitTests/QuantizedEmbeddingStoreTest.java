@@ -0,0 +1,98 @@
+package com.LlamaTalks.v1.unitTests;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.sql.ResultSet;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import com.LlamaTalks.v1.rag.QuantizedEmbeddingStore;
+import com.LlamaTalks.v1.rag.VectorIndexManager;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+
+@ExtendWith(MockitoExtension.class)
+class QuantizedEmbeddingStoreTest {
+
+    @Mock
+    private EmbeddingStore<TextSegment> pgvector;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private VectorIndexManager vectorIndexManager;
+
+    private QuantizedEmbeddingStore store;
+
+    @BeforeEach
+    void setUp() {
+        when(vectorIndexManager.rerankSql(anyString())).thenReturn("rerank");
+        when(vectorIndexManager.rerankCandidates()).thenReturn(40);
+        this.store = new QuantizedEmbeddingStore(pgvector, jdbcTemplate, vectorIndexManager);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void search_shouldRerankTheCandidatesAndApplyMinScore() throws Exception {
+        when(jdbcTemplate.query(eq("rerank"), any(RowMapper.class), any(Object[].class))).thenAnswer(inv -> {
+            RowMapper<EmbeddingMatch<TextSegment>> mapper = inv.getArgument(1);
+            return List.of(mapper.mapRow(row("near", 0.1), 0), mapper.mapRow(row("far", 0.9), 1));
+        });
+
+        List<EmbeddingMatch<TextSegment>> matches = store.search(EmbeddingSearchRequest.builder()
+            .queryEmbedding(Embedding.from(new float[]{1f, 0f}))
+            .maxResults(3)
+            .minScore(0.75)
+            .build()).matches();
+
+        assertEquals(1, matches.size());
+        assertEquals("near", matches.get(0).embeddingId());
+        assertEquals(0.95, matches.get(0).score(), 1e-9);
+        assertEquals("text of near", matches.get(0).embedded().text());
+        assertEquals("a.txt", matches.get(0).embedded().metadata().getString("fileName"));
+        verify(jdbcTemplate).query(eq("rerank"), any(RowMapper.class), eq("[1.0, 0.0]"), eq("[1.0, 0.0]"), eq(40), eq("[1.0, 0.0]"), eq(3));
+    }
+
+    @Test
+    void search_shouldLeaveFilteredSearchesToPgvector() {
+        EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
+            .queryEmbedding(Embedding.from(new float[]{1f, 0f}))
+            .filter(metadataKey("fileName").isEqualTo("a.txt"))
+            .build();
+
+        store.search(request);
+
+        verify(pgvector).search(request);
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    private static ResultSet row(String id, double distance) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getString("embedding_id")).thenReturn(id);
+        when(rs.getString("vector")).thenReturn("[1,0]");
+        when(rs.getString("text")).thenReturn("text of " + id);
+        when(rs.getString("metadata")).thenReturn("{\"fileName\":\"a.txt\"}");
+        when(rs.getDouble("distance")).thenReturn(distance);
+        return rs;
+    }
+}
@@ -0,0 +1,68 @@
+package com.LlamaTalks.v1.unitTests;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.LlamaTalks.v1.exception.InvalidRetrievalFilter;
+import com.LlamaTalks.v1.rag.RetrievalFilters;
+import com.LlamaTalks.v1.records.RetrievalFilter;
+
+import dev.langchain4j.rag.query.Query;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.logical.And;
+
+class RetrievalFiltersTest {
+    private static final Instant AFTER = Instant.parse("2025-01-01T00:00:00Z");
+    private static final Instant BEFORE = Instant.parse("2025-02-01T00:00:00Z");
+
+    @Test
+    void toFilter_shouldCombineEveryScopeThatIsSet() {
+        Filter filter = RetrievalFilters.toFilter(new RetrievalFilter(List.of("a.pdf", "b.pdf"), List.of("batch-1"), AFTER, BEFORE));
+
+        Filter expected = new And(new And(new And(
+            metadataKey("fileName").isIn(List.of("a.pdf", "b.pdf")),
+            metadataKey("batchId").isEqualTo("batch-1")),
+            metadataKey("ingestedAt").isGreaterThanOrEqualTo(AFTER.toEpochMilli())),
+            metadataKey("ingestedAt").isLessThan(BEFORE.toEpochMilli()));
+        assertEquals(expected, filter);
+    }
+
+    @Test
+    void toFilter_shouldIgnoreEmptyScopes() {
+        assertNull(RetrievalFilters.toFilter(null));
+        assertNull(RetrievalFilters.toFilter(new RetrievalFilter(List.of(), List.of(" "), null, null)));
+    }
+
+    @Test
+    void toFilter_shouldRejectAnEmptyDateRange() {
+        assertThrows(InvalidRetrievalFilter.class,
+            () -> RetrievalFilters.toFilter(new RetrievalFilter(null, null, BEFORE, AFTER)));
+    }
+
+    @Test
+    void query_shouldCarryTheFilterToTheRetrievers() {
+        Filter filter = metadataKey("batchId").isEqualTo("batch-1");
+
+        assertEquals(filter, RetrievalFilters.filterOf(RetrievalFilters.query("question", filter)));
+        assertNull(RetrievalFilters.filterOf(Query.from("question")));
+    }
+
+    @Test
+    void where_shouldMatchTheExpressionsOfTheMetadataIndexes() {
+        Filter filter = RetrievalFilters.toFilter(new RetrievalFilter(List.of("a.pdf", "b.pdf"), null, AFTER, null));
+        List<Object> params = new ArrayList<>();
+
+        String sql = RetrievalFilters.where(filter, params);
+
+        assertEquals("(metadata->>'fileName') IN (?, ?) AND ((metadata->>'ingestedAt')::bigint) >= ?", sql);
+        assertEquals(List.of("a.pdf", "b.pdf", AFTER.toEpochMilli()), params);
+    }
+}
@@ -0,0 +1,120 @@
+package com.LlamaTalks.v1.unitTests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.LlamaTalks.v1.ingestion.ChunksRemovedEvent;
+import com.LlamaTalks.v1.rag.SemanticAnswerCache;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.ContentMetadata;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+class SemanticAnswerCacheTest {
+
+    // "What is RAG?" and its rephrasing point almost the same way, the unrelated question does not
+    private static final Map<String, float[]> VECTORS = Map.of(
+        "What is RAG?", new float[]{1f, 0f, 0f},
+        "what's RAG", new float[]{0.99f, 0.05f, 0f},
+        "How do I bake bread?", new float[]{0f, 1f, 0f}
+    );
+
+    @Mock
+    private EmbeddingModel queryEmbeddingModel;
+
+    private MeterRegistry meterRegistry;
+    private AtomicLong clock;
+    private SemanticAnswerCache cache;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(queryEmbeddingModel.embed(anyString()))
+            .thenAnswer(inv -> Response.from(Embedding.from(VECTORS.get(inv.<String>getArgument(0)))));
+        meterRegistry = new SimpleMeterRegistry();
+        clock = new AtomicLong();
+        cache = new SemanticAnswerCache(queryEmbeddingModel, true, 0.95, Duration.ofMinutes(10), 2, meterRegistry, clock::get);
+    }
+
+    @Test
+    void lookup_shouldServeRephrasedQuestionGroundedOnSameChunks() {
+        List<Content> contents = List.of(chunk("id-1", "/docs/rag.md"), chunk("id-2", "/docs/rag.md"));
+        cache.store("What is RAG?", contents, "Retrieval augmented generation", Duration.ofSeconds(3));
+
+        Optional<String> answer = cache.lookup("what's RAG", List.of(contents.get(1), contents.get(0)));
+
+        assertEquals(Optional.of("Retrieval augmented generation"), answer);
+        assertEquals(1.0, meterRegistry.get("rag.answer.cache").tag("result", "hit").counter().count());
+        assertEquals(3.0, meterRegistry.get("rag.answer.cache.time.saved").timer().totalTime(TimeUnit.SECONDS));
+    }
+
+    @Test
+    void lookup_shouldMissWhenChunksOrMeaningDiffer() {
+        cache.store("What is RAG?", List.of(chunk("id-1", "/docs/rag.md")), "Retrieval augmented generation", Duration.ofSeconds(1));
+
+        assertTrue(cache.lookup("What is RAG?", List.of(chunk("id-3", "/docs/rag.md"))).isEmpty());
+        assertTrue(cache.lookup("How do I bake bread?", List.of(chunk("id-1", "/docs/rag.md"))).isEmpty());
+        assertEquals(2.0, meterRegistry.get("rag.answer.cache").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    void onChunksRemoved_shouldEvictAnswersGroundedOnThatFile() {
+        cache.store("What is RAG?", List.of(chunk("id-1", "/docs/rag.md")), "answer", Duration.ofSeconds(1));
+        cache.store("How do I bake bread?", List.of(chunk("id-9", "/docs/bread.md")), "knead", Duration.ofSeconds(1));
+
+        cache.onChunksRemoved(new ChunksRemovedEvent("/docs/rag.md", "rag.md"));
+
+        assertEquals(1, cache.size());
+        assertTrue(cache.lookup("What is RAG?", List.of(chunk("id-1", "/docs/rag.md"))).isEmpty());
+    }
+
+    @Test
+    void lookup_shouldExpireAfterTtlAndEvictLeastRecentlyUsed() {
+        cache.store("What is RAG?", List.of(chunk("id-1", "/docs/rag.md")), "first", Duration.ofSeconds(1));
+        cache.store("How do I bake bread?", List.of(chunk("id-2", "/docs/bread.md")), "second", Duration.ofSeconds(1));
+        cache.store("what's RAG", List.of(chunk("id-3", "/docs/other.md")), "third", Duration.ofSeconds(1));
+
+        assertEquals(2, cache.size());
+        assertTrue(cache.lookup("What is RAG?", List.of(chunk("id-1", "/docs/rag.md"))).isEmpty());
+
+        clock.addAndGet(Duration.ofMinutes(11).toNanos());
+        assertTrue(cache.lookup("what's RAG", List.of(chunk("id-3", "/docs/other.md"))).isEmpty());
+    }
+
+    @Test
+    void lookup_shouldDoNothingWhenDisabled() {
+        SemanticAnswerCache disabled = new SemanticAnswerCache(queryEmbeddingModel, false, 0.95, Duration.ofMinutes(10), 2, meterRegistry, clock::get);
+
+        disabled.store("What is RAG?", List.of(chunk("id-1", "/docs/rag.md")), "answer", Duration.ofSeconds(1));
+
+        assertTrue(disabled.lookup("What is RAG?", List.of(chunk("id-1", "/docs/rag.md"))).isEmpty());
+        verifyNoInteractions(queryEmbeddingModel);
+    }
+
+    private static Content chunk(String embeddingId, String filePath) {
+        TextSegment segment = TextSegment.from("chunk " + embeddingId, Metadata.from("filePath", filePath));
+        return Content.from(segment, Map.of(ContentMetadata.EMBEDDING_ID, embeddingId));
+    }
+}
@@ -0,0 +1,59 @@
+package com.LlamaTalks.v1.unitTests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.LlamaTalks.v1.chat.TokenCoalescer;
+
+import reactor.core.publisher.Flux;
+
+class TokenCoalescerTest {
+
+    @Test
+    void coalesce_shouldFlushEachTimeFrameReachesMaxChars() {
+        TokenCoalescer coalescer = new TokenCoalescer(4, Duration.ofMinutes(1));
+
+        List<String> frames = coalescer.coalesce(Flux.just("He", "ll", "o ", "wo", "rld")).collectList().block();
+
+        assertEquals(List.of("Hell", "o wo", "rld"), frames);
+    }
+
+    @Test
+    void coalesce_shouldFlushPartialFrameAfterMaxDelay() {
+        TokenCoalescer coalescer = new TokenCoalescer(64, Duration.ofMillis(30));
+        Flux<String> tokens = Flux.concat(
+            Flux.just("Hel", "lo"),
+            Flux.just(" world").delaySubscription(Duration.ofMillis(300))
+        );
+
+        List<String> frames = coalescer.coalesce(tokens).collectList().block();
+
+        assertEquals(List.of("Hello", " world"), frames);
+    }
+
+    @Test
+    void coalesce_shouldSendBufferedTextBeforeError() {
+        TokenCoalescer coalescer = new TokenCoalescer(64, Duration.ofMinutes(1));
+        Flux<String> tokens = Flux.concat(Flux.just("partial"), Flux.error(new IllegalStateException("model gone")));
+
+        List<String> frames = new ArrayList<>();
+        assertThrows(IllegalStateException.class,
+            () -> coalescer.coalesce(tokens).doOnNext(frames::add).blockLast());
+        assertEquals(List.of("partial"), frames);
+    }
+
+    @Test
+    void coalesce_shouldPassTokensThroughWhenDisabled() {
+        TokenCoalescer coalescer = new TokenCoalescer(1, Duration.ofMillis(30));
+
+        List<String> frames = coalescer.coalesce(Flux.just("a", "b", "c")).collectList().block();
+
+        assertEquals(List.of("a", "b", "c"), frames);
+    }
+}
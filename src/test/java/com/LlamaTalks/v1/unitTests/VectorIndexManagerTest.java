@@ -0,0 +1,145 @@
+package com.LlamaTalks.v1.unitTests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.LlamaTalks.v1.rag.VectorIndexManager;
+import com.LlamaTalks.v1.rag.VectorIndexManager.IndexType;
+import com.LlamaTalks.v1.rag.VectorIndexManager.Quantization;
+
+@ExtendWith(MockitoExtension.class)
+class VectorIndexManagerTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private DataSource dataSource;
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private Statement statement;
+
+    private VectorIndexManager manager;
+
+    private VectorIndexManager manager(IndexType type, int lists) {
+        return manager(type, lists, Quantization.NONE);
+    }
+
+    private VectorIndexManager manager(IndexType type, int lists, Quantization quantization) {
+        this.manager = new VectorIndexManager(jdbcTemplate, type, 768, quantization, 80, 16, 64, 40, lists, 10, 10_000, 0.5, "512MB", List.of(), "off", false);
+        return this.manager;
+    }
+
+    @AfterEach
+    void shutdown() {
+        if (this.manager != null) {
+            this.manager.shutdown();
+        }
+    }
+
+    @Test
+    void createIndexSql_shouldBuildHnswConcurrentlyWithConfiguredParameters() {
+        assertEquals("CREATE INDEX CONCURRENTLY IF NOT EXISTS embeddings_embedding_idx ON embeddings "
+                        + "USING hnsw (embedding vector_cosine_ops) WITH (m = 16, ef_construction = 64)",
+                    manager(IndexType.HNSW, 0).createIndexSql(VectorIndexManager.INDEX_NAME, 0));
+    }
+
+    @Test
+    void createIndexSql_shouldIndexTheQuantizedExpression() {
+        assertEquals("CREATE INDEX CONCURRENTLY IF NOT EXISTS embeddings_embedding_idx ON embeddings "
+                        + "USING hnsw ((embedding::halfvec(768)) halfvec_cosine_ops) WITH (m = 16, ef_construction = 64)",
+                    manager(IndexType.HNSW, 0, Quantization.HALFVEC).createIndexSql(VectorIndexManager.INDEX_NAME, 0));
+        this.manager.shutdown();
+
+        assertEquals("CREATE INDEX CONCURRENTLY IF NOT EXISTS embeddings_embedding_idx ON embeddings "
+                        + "USING ivfflat ((binary_quantize(embedding)::bit(768)) bit_hamming_ops) WITH (lists = 256)",
+                    manager(IndexType.IVFFLAT, 256, Quantization.BIT).createIndexSql(VectorIndexManager.INDEX_NAME, 0));
+    }
+
+    @Test
+    void rerankSql_shouldOrderCandidatesFromTheCompactIndexByExactDistance() {
+        String sql = manager(IndexType.HNSW, 0, Quantization.BIT).rerankSql("embedding_id");
+
+        assertTrue(sql.contains("ORDER BY (binary_quantize(embedding)::bit(768)) <~> binary_quantize(?::vector)"));
+        assertTrue(sql.contains("ORDER BY embedding <=> ?::vector"));
+    }
+
+    @Test
+    void quantization_shouldBeOffWithoutAnIndex() {
+        assertEquals(Quantization.NONE, manager(IndexType.NONE, 0, Quantization.HALFVEC).quantization());
+    }
+
+    @Test
+    void searchTuned_shouldWidenEfSearchToTheRerankCandidates() throws Exception {
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.createStatement()).thenReturn(statement);
+
+        manager(IndexType.HNSW, 0, Quantization.HALFVEC).searchTuned(dataSource).getConnection();
+
+        verify(statement).execute("SET hnsw.ef_search = 80");
+    }
+
+    @Test
+    void createPartialIndexSql_shouldIndexOneMetadataValue() {
+        assertEquals("CREATE INDEX CONCURRENTLY IF NOT EXISTS part ON embeddings USING hnsw (embedding vector_cosine_ops) "
+                        + "WITH (m = 16, ef_construction = 64) WHERE (metadata->>'fileName') = 'O''Brien.pdf'",
+                    manager(IndexType.HNSW, 0).createPartialIndexSql("part", "fileName", "O'Brien.pdf"));
+    }
+
+    @Test
+    void lists_shouldFollowTableSizeUnlessFixed() {
+        VectorIndexManager auto = manager(IndexType.IVFFLAT, 0);
+        assertEquals(10, auto.lists(2_000));
+        assertEquals(500, auto.lists(500_000));
+        assertEquals(2_000, auto.lists(4_000_000));
+        assertEquals(32_768, auto.lists(4_000_000_000L));
+        auto.shutdown();
+
+        assertEquals(256, manager(IndexType.IVFFLAT, 256).lists(4_000_000));
+    }
+
+    @Test
+    void searchTuned_shouldSetEfSearchOncePerPooledConnection() throws Exception {
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.createStatement()).thenReturn(statement);
+        DataSource tuned = manager(IndexType.HNSW, 0).searchTuned(dataSource);
+
+        tuned.getConnection();
+        tuned.getConnection();
+
+        verify(statement, times(1)).execute("SET hnsw.ef_search = 40");
+    }
+
+    @Test
+    void searchTuned_shouldLeaveDataSourceAloneWithoutIndex() {
+        assertSame(dataSource, manager(IndexType.NONE, 0).searchTuned(dataSource));
+        verifyNoInteractions(dataSource);
+    }
+
+    @Test
+    void recall_shouldCountExactNeighboursTheIndexFound() {
+        assertEquals(0.75, VectorIndexManager.recall(List.of("a", "b", "c", "d"), List.of("d", "x", "b", "a")));
+        assertEquals(1.0, VectorIndexManager.recall(List.of(), List.of()));
+    }
+}